@@ -0,0 +1,96 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.set.IndexedSet;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * This is read-only collection of edges of one node. Low degree nodes keep
+ * their edges in compact list and once degree passes threshold edges are
+ * moved to hash indexed set so that removal and lookup of edges in hubs stay
+ * constant time.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+class Adjacency<N, E> extends AbstractCollection<Edge<N, E>> {
+
+    static final int THRESHOLD = 32;
+
+    private ArrayList<Edge<N, E>> list;
+    private IndexedSet<Edge<N, E>> index;
+
+    Adjacency() {
+        list = new ArrayList<>(4);
+    }
+
+    /**
+     * Makes room for more edges before inserting them.
+     *
+     * @param count how many edges are going to be inserted
+     */
+    void reserve(int count) {
+        if (index != null) {
+            index.ensureCapacity(index.size() + count);
+        } else if (list.size() + count > THRESHOLD) {
+            index = new IndexedSet<>(list.size() + count);
+            index.addAll(list);
+            list = null;
+        } else {
+            list.ensureCapacity(list.size() + count);
+        }
+    }
+
+    void insert(Edge<N, E> edge) {
+        if (index != null) {
+            index.add(edge);
+            return;
+        }
+        list.add(edge);
+        if (list.size() > THRESHOLD) {
+            index = new IndexedSet<>(list.size() * 2);
+            index.addAll(list);
+            list = null;
+        }
+    }
+
+    boolean delete(Edge<N, E> edge) {
+        if (index == null) {
+            return list.remove(edge);
+        }
+        boolean removed = index.remove(edge);
+        if (index.size() < THRESHOLD / 2) {
+            list = new ArrayList<>(THRESHOLD);
+            list.addAll(index);
+            index = null;
+        }
+        return removed;
+    }
+
+    Edge<N, E> get(int i) {
+        return index == null ? list.get(i) : index.get(i);
+    }
+
+    boolean isIndexed() {
+        return index != null;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return index == null ? list.contains(object) : index.contains(object);
+    }
+
+    @Override
+    public Iterator<Edge<N, E>> iterator() {
+        return Collections.unmodifiableCollection(index == null ? list : index).iterator();
+    }
+
+    @Override
+    public int size() {
+        return index == null ? list.size() : index.size();
+    }
+}
@@ -0,0 +1,94 @@
+package delma.graph;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * This finds connected components of graphs using all cores.
+ *
+ * @author delma
+ */
+public enum Components {
+
+    INSTANCE;
+
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /**
+     * Labels connected components of graph ignoring edge directions.
+     *
+     * Every edge is processed in parallel by lock-free union-find where root
+     * with bigger id is always hooked under smaller one with compare-and-set,
+     * so each tree is rooted at its smallest node id.
+     *
+     * @param graph graph whose components are labeled
+     * @return array that maps node id to dense component index. Components are
+     * numbered in order of their smallest node id.
+     */
+    public static int[] componentOf(IndexedGraph<?, ?> graph) {
+        int size = graph.size();
+        AtomicIntegerArray parent = new AtomicIntegerArray(size);
+        ids(graph).forEach(id -> parent.set(id, id));
+        ids(graph).forEach(id -> {
+            int out = graph.outDegree(id);
+            for (int i = 0; i < out; i++) {
+                union(parent, id, graph.neighbour(id, i));
+            }
+        });
+
+        int[] result = new int[size];
+        int components = 0;
+        for (int id = 0; id < size; id++) {
+            int root = find(parent, id);
+            result[id] = root == id ? components++ : result[root];
+        }
+        return result;
+    }
+
+    private static IntStream ids(IndexedGraph<?, ?> graph) {
+        IntStream ids = IntStream.range(0, graph.size());
+        if (graph.edgeCount() >= PARALLEL_THRESHOLD) {
+            return ids.parallel();
+        }
+        return ids;
+    }
+
+    /**
+     * @param componentOf labels returned by {@link #componentOf(IndexedGraph)}
+     * @return how many components there are
+     */
+    public static int count(int[] componentOf) {
+        int max = -1;
+        for (int label : componentOf) {
+            max = Math.max(max, label);
+        }
+        return max + 1;
+    }
+
+    private static int find(AtomicIntegerArray parent, int id) {
+        int cur = id;
+        int next = parent.get(cur);
+        while (next != cur) {
+            int grandParent = parent.get(next);
+            parent.compareAndSet(cur, next, grandParent);
+            cur = next;
+            next = parent.get(cur);
+        }
+        return cur;
+    }
+
+    private static void union(AtomicIntegerArray parent, int first, int second) {
+        while (true) {
+            int firstRoot = find(parent, first);
+            int secondRoot = find(parent, second);
+            if (firstRoot == secondRoot) {
+                return;
+            }
+            int high = Math.max(firstRoot, secondRoot);
+            int low = Math.min(firstRoot, secondRoot);
+            if (parent.compareAndSet(high, high, low)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package delma.graph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * This is thread-safe directed graph. Nodes and edges can be added and
+ * removed from many threads while others iterate over it.
+ *
+ * Adjacency of every node is concurrent set so updates to different nodes
+ * don't contend and iteration is weakly consistent: it never throws
+ * {@link java.util.ConcurrentModificationException} and sees every element
+ * that existed when it started and wasn't removed before being reached.
+ * Queries that need whole graph at once work on {@link #snapshot()}.
+ *
+ * Changes to edges lock stripes of both ends and removing node locks stripe
+ * of node, so that edge is never added to adjacency of node that is being
+ * removed. Stripes are always locked in order of their index.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+public class ConcurrentGraph<N, E> implements Graph<N, E> {
+
+    private static final int RANDOM_TRIES = 16;
+    private static final int STRIPES = 64;
+
+    private final ConcurrentMap<Node<N>, Set<Edge<N, E>>> map;
+    private final Set<Edge<N, E>> edges;
+    private final ConcurrentMap<Node<N>, Integer> ids;
+    private final ConcurrentMap<Integer, Node<N>> nodesById;
+    private final AtomicInteger nextId;
+    private final Collection<Node<N>> nodeView;
+    private final Collection<Edge<N, E>> edgeView;
+    private final Object[] stripes;
+    private final Graph<N, E> transpose;
+
+    public ConcurrentGraph() {
+        map = new ConcurrentHashMap<>();
+        edges = ConcurrentHashMap.newKeySet();
+        ids = new ConcurrentHashMap<>();
+        nodesById = new ConcurrentHashMap<>();
+        nextId = new AtomicInteger();
+        nodeView = Collections.unmodifiableSet(map.keySet());
+        edgeView = Collections.unmodifiableSet(edges);
+        transpose = new TransposedGraph<>(this);
+        stripes = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    private static int stripe(Node<?> node) {
+        int hash = node.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Runs action while holding stripes of both ends of edge.
+     */
+    private <T> T locked(Edge<N, E> edge, Supplier<T> action) {
+        int from = stripe(edge.getFrom());
+        int to = stripe(edge.getTo());
+        synchronized (stripes[Math.min(from, to)]) {
+            synchronized (stripes[Math.max(from, to)]) {
+                return action.get();
+            }
+        }
+    }
+
+    private Set<Edge<N, E>> adjacency(Node<N> node) {
+        Set<Edge<N, E>> adjacency = map.get(node);
+        if (adjacency != null) {
+            return adjacency;
+        }
+        ids.computeIfAbsent(node, n -> {
+            int id = nextId.getAndIncrement();
+            nodesById.put(id, n);
+            return id;
+        });
+        return map.computeIfAbsent(node, n -> ConcurrentHashMap.newKeySet());
+    }
+
+    @Override
+    public void add(Node<N> node) {
+        adjacency(node);
+    }
+
+    @Override
+    public void add(Edge<N, E> edge) {
+        locked(edge, () -> {
+            if (edges.add(edge)) {
+                adjacency(edge.getFrom()).add(edge);
+                adjacency(edge.getTo()).add(edge);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void add(Edge<N, E> edge, boolean directionless) {
+        add(edge);
+    }
+
+    @Override
+    public void add(Graph<N, E> graph) {
+        graph.getNodes().forEach(this::add);
+        graph.getEdges().forEach(this::add);
+    }
+
+    /**
+     * Edges are inserted from many threads at once.
+     */
+    @Override
+    public void addAllParallel(List<Node<N>> nodes, int[] from, int[] to, IntFunction<E> labels) {
+        nodes.parallelStream().forEach(this::add);
+        IntStream.range(0, from.length).parallel()
+                .forEach(i -> add(new Edge<>(nodes.get(from[i]), nodes.get(to[i]), labels == null ? null : labels.apply(i))));
+    }
+
+    /**
+     * Only stripe of node is locked: edges of node can't be added or removed
+     * by others while it is held, so other ends can be updated without
+     * locking them.
+     */
+    @Override
+    public boolean remove(Node<N> node) {
+        synchronized (stripes[stripe(node)]) {
+            Set<Edge<N, E>> removed = map.remove(node);
+            if (removed == null) {
+                return false;
+            }
+            removed.forEach(e -> {
+                edges.remove(e);
+                Set<Edge<N, E>> other = map.get(e.getOther(node).get());
+                if (other != null) {
+                    other.remove(e);
+                }
+            });
+            return true;
+        }
+    }
+
+    @Override
+    public boolean remove(Edge<N, E> edge) {
+        return locked(edge, () -> {
+            if (!edges.remove(edge)) {
+                return false;
+            }
+            Set<Edge<N, E>> from = map.get(edge.getFrom());
+            if (from != null) {
+                from.remove(edge);
+            }
+            Set<Edge<N, E>> to = map.get(edge.getTo());
+            if (to != null) {
+                to.remove(edge);
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public boolean remove(Graph<N, E> graph) {
+        boolean changed = false;
+        for (Edge<N, E> edge : graph == this ? new ArrayList<>(edges) : graph.getEdges()) {
+            changed |= remove(edge);
+        }
+        return changed;
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getNeighbourEdges(Node<N> node) {
+        Set<Edge<N, E>> adjacency = map.get(node);
+        if (adjacency == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(adjacency);
+    }
+
+    @Override
+    public Collection<Node<N>> getNeighbourNodes(Node<N> node) {
+        Set<Edge<N, E>> adjacency = map.get(node);
+        if (adjacency == null) {
+            return Collections.emptyList();
+        }
+        List<Node<N>> result = new ArrayList<>();
+        adjacency.forEach(e -> e.getOther(node).ifPresent(result::add));
+        return result;
+    }
+
+    @Override
+    public void setNodes(Collection<Node<N>> nodes) {
+        nodes.forEach(this::add);
+    }
+
+    @Override
+    public Collection<Node<N>> getNodes() {
+        return nodeView;
+    }
+
+    @Override
+    public void setEdges(Collection<Edge<N, E>> edges) {
+        edges.forEach(this::add);
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getEdges() {
+        return edgeView;
+    }
+
+    @Override
+    public int edgeCount() {
+        return edges.size();
+    }
+
+    @Override
+    public Graph<N, E> getTranspose() {
+        return transpose;
+    }
+
+    @Override
+    public boolean contains(Node<N> node) {
+        return map.containsKey(node);
+    }
+
+    @Override
+    public int getId(Node<N> node) {
+        return ids.getOrDefault(node, -1);
+    }
+
+    @Override
+    public Node<N> getNode(int id) {
+        return nodesById.get(id);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Ids aren't reused after clearing so that nodes added concurrently never
+     * share an id.
+     */
+    @Override
+    public void clear() {
+        map.clear();
+        edges.clear();
+        ids.clear();
+        nodesById.clear();
+    }
+
+    /**
+     * Picks random id first and falls back to walking nodes if ids of removed
+     * nodes keep getting hit.
+     */
+    @Override
+    public Node<N> getRandomNode(Random rand) {
+        int bound = nextId.get();
+        for (int i = 0; i < RANDOM_TRIES && bound > 0; i++) {
+            Node<N> node = nodesById.get(rand.nextInt(bound));
+            if (node != null && map.containsKey(node)) {
+                return node;
+            }
+        }
+        return pick(map.keySet(), rand).orElse(null);
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Node<N> node, Random rand) {
+        Set<Edge<N, E>> adjacency = map.get(node);
+        if (adjacency == null) {
+            return Optional.empty();
+        }
+        return pick(adjacency, rand);
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Random rand) {
+        return pick(edges, rand);
+    }
+
+    private static <T> Optional<T> pick(Collection<T> collection, Random rand) {
+        int size = collection.size();
+        if (size == 0) {
+            return Optional.empty();
+        }
+        int skip = rand.nextInt(size);
+        T last = null;
+        Iterator<T> it = collection.iterator();
+        for (int i = 0; i <= skip && it.hasNext(); i++) {
+            last = it.next();
+        }
+        return Optional.ofNullable(last);
+    }
+
+    /**
+     * Copies current state of this graph into immutable snapshot. Concurrent
+     * updates may or may not be visible in it.
+     *
+     * @return snapshot of this graph
+     */
+    public CsrGraph<N, E> snapshot() {
+        return new CsrGraph<>(new ArrayList<>(map.keySet()), new ArrayList<>(edges));
+    }
+
+    @Override
+    public Collection<Graph<N, E>> getSubgraphs() {
+        return snapshot().getSubgraphs();
+    }
+
+    @Override
+    public int componentCount() {
+        return snapshot().componentCount();
+    }
+
+    @Override
+    public Node<N> getComponent(Node<N> node) {
+        return snapshot().getComponent(node);
+    }
+}
@@ -0,0 +1,415 @@
+package delma.graph;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * This is immutable compressed sparse row snapshot of directed graph.
+ *
+ * Nodes are given dense ids in the order they are first seen. Outgoing edges
+ * of node u are in slots [outOffsets[u], outOffsets[u + 1]) of targets and
+ * incoming edges in slots [inOffsets[u], inOffsets[u + 1]) of sources. Slot of
+ * outgoing edge works as its edge id.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+public class CsrGraph<N, E> extends ReadOnlyGraph<N, E> implements IndexedGraph<N, E> {
+
+    private final NodeDictionary<N> nodes;
+    private final int[] outOffsets;
+    private final int[] targets;
+    private final Object[] labels;
+    private final int[] inOffsets;
+    private final int[] sources;
+    private final int[] inEdges;
+    private final Collection<Edge<N, E>> edgeView;
+    private CsrGraph<N, E> transpose;
+    private int[] componentOf;
+    private int[] representatives;
+
+    public CsrGraph(Graph<N, E> graph) {
+        this(graph.getNodes(), graph.getEdges());
+    }
+
+    public CsrGraph(Collection<Node<N>> nodes, Collection<Edge<N, E>> edges) {
+        this.nodes = new NodeDictionary<>(nodes.size());
+        nodes.forEach(this.nodes::intern);
+
+        int edgeCount = edges.size();
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        Object[] edgeLabels = new Object[edgeCount];
+        int i = 0;
+        for (Edge<N, E> edge : edges) {
+            from[i] = this.nodes.intern(edge.getFrom());
+            to[i] = this.nodes.intern(edge.getTo());
+            edgeLabels[i] = edge.getLabel();
+            i++;
+        }
+
+        int size = this.nodes.size();
+        outOffsets = new int[size + 1];
+        inOffsets = new int[size + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            outOffsets[from[e] + 1]++;
+            inOffsets[to[e] + 1]++;
+        }
+        for (int n = 0; n < size; n++) {
+            outOffsets[n + 1] += outOffsets[n];
+            inOffsets[n + 1] += inOffsets[n];
+        }
+
+        targets = new int[edgeCount];
+        labels = new Object[edgeCount];
+        sources = new int[edgeCount];
+        inEdges = new int[edgeCount];
+        int[] outPos = Arrays.copyOf(outOffsets, size);
+        int[] inPos = Arrays.copyOf(inOffsets, size);
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = outPos[from[e]]++;
+            targets[slot] = to[e];
+            labels[slot] = edgeLabels[e];
+            int inSlot = inPos[to[e]]++;
+            sources[inSlot] = from[e];
+            inEdges[inSlot] = slot;
+        }
+        edgeView = new EdgeView();
+    }
+
+    private CsrGraph(CsrGraph<N, E> original) {
+        nodes = original.nodes;
+        outOffsets = original.inOffsets;
+        targets = original.sources;
+        inOffsets = original.outOffsets;
+        sources = original.targets;
+        labels = new Object[targets.length];
+        inEdges = new int[targets.length];
+        for (int slot = 0; slot < targets.length; slot++) {
+            labels[slot] = original.labels[original.inEdges[slot]];
+            inEdges[original.inEdges[slot]] = slot;
+        }
+        edgeView = new EdgeView();
+        transpose = original;
+    }
+
+    @Override
+    public int getId(Node<N> node) {
+        return nodes.getId(node);
+    }
+
+    @Override
+    public Node<N> getNode(int id) {
+        return nodes.getNode(id);
+    }
+
+    @Override
+    public int outDegree(int id) {
+        return outOffsets[id + 1] - outOffsets[id];
+    }
+
+    @Override
+    public int inDegree(int id) {
+        return inOffsets[id + 1] - inOffsets[id];
+    }
+
+    @Override
+    public int degree(int id) {
+        return outOffsets[id + 1] - outOffsets[id] + inOffsets[id + 1] - inOffsets[id];
+    }
+
+    @Override
+    public int neighbour(int id, int i) {
+        int out = outDegree(id);
+        if (i < out) {
+            return targets[outOffsets[id] + i];
+        }
+        return sources[inOffsets[id] + i - out];
+    }
+
+    @Override
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    int[] outOffsets() {
+        return outOffsets;
+    }
+
+    int[] targets() {
+        return targets;
+    }
+
+    int[] inOffsets() {
+        return inOffsets;
+    }
+
+    int[] sources() {
+        return sources;
+    }
+
+    int[] inEdges() {
+        return inEdges;
+    }
+
+    Object label(int slot) {
+        return labels[slot];
+    }
+
+    private Edge<N, E> outEdge(int from, int slot) {
+        return new Edge<>(nodes.getNode(from), nodes.getNode(targets[slot]), (E) labels[slot]);
+    }
+
+    private Edge<N, E> inEdge(int to, int inSlot) {
+        return new Edge<>(nodes.getNode(sources[inSlot]), nodes.getNode(to), (E) labels[inEdges[inSlot]]);
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getNeighbourEdges(Node<N> node) {
+        int id = getId(node);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        List<Edge<N, E>> result = new ArrayList<>(degree(id));
+        for (int slot = outOffsets[id]; slot < outOffsets[id + 1]; slot++) {
+            result.add(outEdge(id, slot));
+        }
+        for (int slot = inOffsets[id]; slot < inOffsets[id + 1]; slot++) {
+            result.add(inEdge(id, slot));
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getOutEdges(Node<N> node) {
+        int id = getId(node);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        List<Edge<N, E>> result = new ArrayList<>(outDegree(id));
+        for (int slot = outOffsets[id]; slot < outOffsets[id + 1]; slot++) {
+            result.add(outEdge(id, slot));
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getInEdges(Node<N> node) {
+        int id = getId(node);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        List<Edge<N, E>> result = new ArrayList<>(inDegree(id));
+        for (int slot = inOffsets[id]; slot < inOffsets[id + 1]; slot++) {
+            result.add(inEdge(id, slot));
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<Node<N>> getNeighbourNodes(Node<N> node) {
+        int id = getId(node);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        int degree = degree(id);
+        List<Node<N>> result = new ArrayList<>(degree);
+        for (int i = 0; i < degree; i++) {
+            result.add(nodes.getNode(neighbour(id, i)));
+        }
+        return result;
+    }
+
+    @Override
+    public void forEachNeighbour(Node<N> node, Consumer<Node<N>> action) {
+        int id = getId(node);
+        if (id < 0) {
+            return;
+        }
+        for (int slot = outOffsets[id]; slot < outOffsets[id + 1]; slot++) {
+            action.accept(nodes.getNode(targets[slot]));
+        }
+        for (int slot = inOffsets[id]; slot < inOffsets[id + 1]; slot++) {
+            action.accept(nodes.getNode(sources[slot]));
+        }
+    }
+
+    @Override
+    public void forEachNeighbour(int id, IntConsumer action) {
+        for (int slot = outOffsets[id]; slot < outOffsets[id + 1]; slot++) {
+            action.accept(targets[slot]);
+        }
+        for (int slot = inOffsets[id]; slot < inOffsets[id + 1]; slot++) {
+            action.accept(sources[slot]);
+        }
+    }
+
+    @Override
+    public Collection<Node<N>> getNodes() {
+        return nodes.getNodes();
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getEdges() {
+        return edgeView;
+    }
+
+    @Override
+    public Graph<N, E> getTranspose() {
+        if (transpose == null) {
+            transpose = new CsrGraph<>(this);
+        }
+        return transpose;
+    }
+
+    @Override
+    public boolean contains(Node<N> node) {
+        return nodes.contains(node);
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public Node<N> getRandomNode(Random rand) {
+        return nodes.getNode(rand.nextInt(nodes.size()));
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Node<N> node, Random rand) {
+        int id = getId(node);
+        if (id < 0 || degree(id) == 0) {
+            return Optional.empty();
+        }
+        int i = rand.nextInt(degree(id));
+        int out = outDegree(id);
+        if (i < out) {
+            return Optional.of(outEdge(id, outOffsets[id] + i));
+        }
+        return Optional.of(inEdge(id, inOffsets[id] + i - out));
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Random rand) {
+        if (targets.length == 0) {
+            return Optional.empty();
+        }
+        int slot = rand.nextInt(targets.length);
+        return Optional.of(outEdge(sourceOf(slot), slot));
+    }
+
+    private int sourceOf(int slot) {
+        int low = 0;
+        int high = nodes.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (outOffsets[mid] <= slot) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Labels connected components once. Graph is immutable so labels never
+     * need to be recomputed.
+     */
+    private void labelComponents() {
+        if (componentOf != null) {
+            return;
+        }
+        int[] labels = Components.componentOf(this);
+        representatives = new int[Components.count(labels)];
+        for (int id = labels.length - 1; id >= 0; id--) {
+            representatives[labels[id]] = id;
+        }
+        componentOf = labels;
+    }
+
+    @Override
+    public int componentCount() {
+        labelComponents();
+        return representatives.length;
+    }
+
+    @Override
+    public Node<N> getComponent(Node<N> node) {
+        int id = getId(node);
+        if (id < 0) {
+            return null;
+        }
+        labelComponents();
+        return nodes.getNode(representatives[componentOf[id]]);
+    }
+
+    @Override
+    public Collection<Graph<N, E>> getSubgraphs() {
+        labelComponents();
+        int size = nodes.size();
+        int components = representatives.length;
+        List<List<Node<N>>> componentNodes = new ArrayList<>(components);
+        List<List<Edge<N, E>>> componentEdges = new ArrayList<>(components);
+        for (int c = 0; c < components; c++) {
+            componentNodes.add(new ArrayList<>());
+            componentEdges.add(new ArrayList<>());
+        }
+        for (int id = 0; id < size; id++) {
+            componentNodes.get(componentOf[id]).add(nodes.getNode(id));
+            for (int slot = outOffsets[id]; slot < outOffsets[id + 1]; slot++) {
+                componentEdges.get(componentOf[id]).add(outEdge(id, slot));
+            }
+        }
+        List<Graph<N, E>> result = new ArrayList<>(components);
+        for (int c = 0; c < components; c++) {
+            result.add(new CsrGraph<>(componentNodes.get(c), componentEdges.get(c)));
+        }
+        return result;
+    }
+
+    private class EdgeView extends AbstractCollection<Edge<N, E>> {
+
+        @Override
+        public Iterator<Edge<N, E>> iterator() {
+            return new Iterator<Edge<N, E>>() {
+                private int from = 0;
+                private int slot = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return slot < targets.length;
+                }
+
+                @Override
+                public Edge<N, E> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    while (slot >= outOffsets[from + 1]) {
+                        from++;
+                    }
+                    return outEdge(from, slot++);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return targets.length;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package delma.graph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This writes edges given as node ids to channel as they come, so edge lists
+ * of any size can be written with fixed amount of memory.
+ *
+ * @author delma
+ */
+public class EdgeListWriter implements EdgeSink, Closeable {
+
+    private static final int BUFFER = 1 << 16;
+
+    /**
+     * Encoding of edges in file.
+     */
+    public enum Format {
+
+        /**
+         * Line of tab separated decimal ids for every edge.
+         */
+        TEXT(2 * 11 + 2) {
+            @Override
+            void encode(ByteBuffer buffer, int from, int to) {
+                putDecimal(buffer, from);
+                buffer.put((byte) '\t');
+                putDecimal(buffer, to);
+                buffer.put((byte) '\n');
+            }
+        },
+        /**
+         * Two big-endian 32-bit ids for every edge.
+         */
+        BINARY(2 * Integer.BYTES) {
+            @Override
+            void encode(ByteBuffer buffer, int from, int to) {
+                buffer.putInt(from);
+                buffer.putInt(to);
+            }
+        };
+
+        /**
+         * Most bytes one edge can take.
+         */
+        final int maxBytes;
+
+        private Format(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        abstract void encode(ByteBuffer buffer, int from, int to);
+
+        private static void putDecimal(ByteBuffer buffer, int value) {
+            long rest = value;
+            if (rest < 0) {
+                buffer.put((byte) '-');
+                rest = -rest;
+            }
+            int digits = 1;
+            for (long limit = 10; limit <= rest; limit *= 10) {
+                digits++;
+            }
+            int position = buffer.position();
+            for (int i = digits - 1; i >= 0; i--) {
+                buffer.put(position + i, (byte) ('0' + rest % 10));
+                rest /= 10;
+            }
+            buffer.position(position + digits);
+        }
+    }
+
+    private final WritableByteChannel channel;
+    private final Format format;
+    private final ByteBuffer buffer;
+    private long count;
+
+    public EdgeListWriter(WritableByteChannel channel, Format format) {
+        this.channel = channel;
+        this.format = format;
+        buffer = ByteBuffer.allocateDirect(BUFFER);
+    }
+
+    /**
+     * Creates writer that replaces contents of file.
+     *
+     * @param path file to write
+     * @param format encoding of edges
+     * @return new writer
+     * @throws IOException if file can't be opened
+     */
+    public static EdgeListWriter open(Path path, Format format) throws IOException {
+        return new EdgeListWriter(FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), format);
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * @return how many edges have been given to this writer
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Writes edge. Failures of channel are thrown as
+     * {@link UncheckedIOException} as sinks can't throw checked exceptions.
+     *
+     * @param from id of source node
+     * @param to id of target node
+     */
+    @Override
+    public void accept(int from, int to) {
+        if (buffer.remaining() < format.maxBytes) {
+            try {
+                drain();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        format.encode(buffer, from, to);
+        count++;
+    }
+
+    /**
+     * Writes edges that have already been encoded in format of this writer.
+     *
+     * @param edges encoded edges
+     * @param edgeCount how many edges there are
+     * @throws IOException if writing fails
+     */
+    void write(ByteBuffer edges, int edgeCount) throws IOException {
+        drain();
+        while (edges.hasRemaining()) {
+            channel.write(edges);
+        }
+        count += edgeCount;
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package delma.graph;
+
+/**
+ * This receives edges as pairs of node ids without creating edge objects.
+ *
+ * @author delma
+ */
+@FunctionalInterface
+public interface EdgeSink {
+
+    void accept(int from, int to);
+}
@@ -7,17 +7,17 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.JsonTypeInfo.Id;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import delma.graph.Graph.Node;
-import delma.graph.visualisation.App;
-import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -36,6 +36,45 @@ public interface Graph<N, E> extends Iterable<Node<N>> {
 
     void add(Graph<N, E> graph);
 
+    /**
+     * Adds batch of edges and their endpoints. Implementations can size their
+     * storage for whole batch up front instead of growing it edge by edge.
+     *
+     * @param edges edges to add
+     */
+    default void addAll(Collection<Edge<N, E>> edges) {
+        edges.forEach(this::add);
+    }
+
+    /**
+     * Adds nodes and edges between them given as parallel arrays of indices
+     * to node list.
+     *
+     * @param nodes nodes to add
+     * @param from index of source node of every edge
+     * @param to index of target node of every edge
+     * @param labels gives label of i:th edge, null if edges have no labels
+     */
+    default void addAll(List<Node<N>> nodes, int[] from, int[] to, IntFunction<E> labels) {
+        nodes.forEach(this::add);
+        for (int i = 0; i < from.length; i++) {
+            add(new Edge<>(nodes.get(from[i]), nodes.get(to[i]), labels == null ? null : labels.apply(i)));
+        }
+    }
+
+    /**
+     * Does the same as {@link #addAll(List, int[], int[], IntFunction)} but
+     * may use many threads. Labels can be asked from any thread.
+     *
+     * @param nodes nodes to add
+     * @param from index of source node of every edge
+     * @param to index of target node of every edge
+     * @param labels gives label of i:th edge, null if edges have no labels
+     */
+    default void addAllParallel(List<Node<N>> nodes, int[] from, int[] to, IntFunction<E> labels) {
+        addAll(nodes, from, to, labels);
+    }
+
     boolean remove(Node<N> node);
 
     boolean remove(Edge<N, E> edge);
@@ -44,8 +83,55 @@ public interface Graph<N, E> extends Iterable<Node<N>> {
 
     Collection<Edge<N, E>> getNeighbourEdges(Node<N> node);
 
+    /**
+     * @param node node of this graph
+     * @return edges that start from node
+     */
+    default Collection<Edge<N, E>> getOutEdges(Node<N> node) {
+        return getNeighbourEdges(node).stream()
+                .filter(e -> e.getFrom().equals(node))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param node node of this graph
+     * @return edges that end to node
+     */
+    default Collection<Edge<N, E>> getInEdges(Node<N> node) {
+        return getNeighbourEdges(node).stream()
+                .filter(e -> e.getTo().equals(node))
+                .collect(Collectors.toList());
+    }
+
     Collection<Node<N>> getNeighbourNodes(Node<N> node);
 
+    /**
+     * Calls action for every neighbour of node without collecting them. Node
+     * that has edge to itself is its own neighbour.
+     *
+     * @param node node of this graph
+     * @param action called for every neighbour
+     */
+    default void forEachNeighbour(Node<N> node, Consumer<Node<N>> action) {
+        for (Edge<N, E> edge : getNeighbourEdges(node)) {
+            action.accept(edge.getFrom().equals(node) ? edge.getTo() : edge.getFrom());
+        }
+    }
+
+    /**
+     * Calls action for id of every neighbour of node. Implementations that
+     * index their nodes do this without creating any objects.
+     *
+     * @param id id of node
+     * @param action called for id of every neighbour
+     */
+    default void forEachNeighbour(int id, IntConsumer action) {
+        Node<N> node = getNode(id);
+        for (Edge<N, E> edge : getNeighbourEdges(node)) {
+            action.accept(getId(edge.getFrom().equals(node) ? edge.getTo() : edge.getFrom()));
+        }
+    }
+
     void setNodes(Collection<Node<N>> nodes);
 
     Collection<Node<N>> getNodes();
@@ -57,13 +143,36 @@ public interface Graph<N, E> extends Iterable<Node<N>> {
 
     void setEdges(Collection<Edge<N, E>> edges);
 
+    /**
+     * @return read-only view of edges of this graph
+     */
     Collection<Edge<N, E>> getEdges();
 
+    /**
+     * @return how many edges there are in this graph
+     */
+    int edgeCount();
+
     @JsonIgnore
     Graph<N, E> getTranspose();
 
     boolean contains(Node<N> node);
 
+    /**
+     * Gets dense id given to node when it was added to this graph. Ids are
+     * stable while graph isn't cleared so they can be used to index arrays.
+     *
+     * @param node node of this graph
+     * @return id of node or -1 if it has never been added
+     */
+    int getId(Node<N> node);
+
+    /**
+     * @param id id returned by {@link #getId(Node)}
+     * @return node with given id
+     */
+    Node<N> getNode(int id);
+
     int size();
 
     @JsonIgnore
@@ -77,28 +186,52 @@ public interface Graph<N, E> extends Iterable<Node<N>> {
 
     Optional<Edge<N, E>> getRandomEdge(Node<N> node, Random rand);
 
+    /**
+     * Gets uniformly random edge of whole graph.
+     *
+     * @param rand source of randomness
+     * @return random edge or empty if graph has no edges
+     */
+    Optional<Edge<N, E>> getRandomEdge(Random rand);
+
     @JsonIgnore
     Collection<Graph<N, E>> getSubgraphs();
 
+    /**
+     * @return how many connected components there are when edge directions
+     * are ignored
+     */
+    int componentCount();
+
+    /**
+     * Gets representative of connected component node belongs to. Two nodes
+     * are in same component exactly when their representatives are equal.
+     *
+     * @param node node of this graph
+     * @return representative node or null if node isn't in this graph
+     */
+    Node<N> getComponent(Node<N> node);
+
     static class Node<N> {
 
         private final N label;
-        private int hash;
-
+        private final int hash;
+
+        /**
+         * Creates node from label encoded by {@link JsonLabelCodec}, as
+         * {@link #toString()} writes it and node maps are keyed.
+         *
+         * @param string encoded label
+         */
         public Node(String string) {
-            N temp = null;
-            try {
-                temp = App.MAPPER.readValue(string, (Class<N>) Object.class);
-            } catch (IOException ex) {
-                Logger.getLogger(Graph.class.getName()).log(Level.SEVERE, null, ex);
-            }
-            label = temp;
+            this((N) JsonLabelCodec.INSTANCE.decode(string));
         }
 
         public Node(@JsonProperty("label") N label) {
             this.label = label;
-            hash = 7;
-            hash = 83 * hash + Objects.hashCode(this.label);
+            int temp = 7;
+            temp = 83 * temp + Objects.hashCode(this.label);
+            hash = temp;
         }
 
         @JsonProperty("label")
@@ -122,12 +255,7 @@ public interface Graph<N, E> extends Iterable<Node<N>> {
 
         @Override
         public String toString() {
-            try {
-                return App.MAPPER.writeValueAsString(label);
-            } catch (JsonProcessingException ex) {
-                Logger.getLogger(Graph.class.getName()).log(Level.SEVERE, null, ex);
-                return null;
-            }
+            return JsonLabelCodec.INSTANCE.encode(label);
         }
     }
 
@@ -137,6 +265,7 @@ public interface Graph<N, E> extends Iterable<Node<N>> {
         private final Node<N> from;
         private final Node<N> to;
         private final E label;
+        private final int hash;
 
         @JsonCreator
         public Edge(@JsonProperty("from") Node<N> from,
@@ -145,6 +274,11 @@ public interface Graph<N, E> extends Iterable<Node<N>> {
             this.from = from;
             this.to = to;
             this.label = label;
+            int temp = 7;
+            temp = 97 * temp + Objects.hashCode(this.from);
+            temp = 97 * temp + Objects.hashCode(this.to);
+            temp = 97 * temp + Objects.hashCode(this.label);
+            hash = temp;
         }
 
         public Node<N> getFrom() {
@@ -175,16 +309,12 @@ public interface Graph<N, E> extends Iterable<Node<N>> {
 
         @Override
         public int hashCode() {
-            int hash = 7;
-            hash = 97 * hash + Objects.hashCode(this.from);
-            hash = 97 * hash + Objects.hashCode(this.to);
-            hash = 97 * hash + Objects.hashCode(this.label);
             return hash;
         }
 
         @Override
         public boolean equals(Object obj) {
-            if (obj == null || getClass() != obj.getClass()) {
+            if (obj == null || getClass() != obj.getClass() || obj.hashCode() != hashCode()) {
                 return false;
             }
             final Edge<?, ?> other = (Edge<?, ?>) obj;
@@ -0,0 +1,98 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.util.Arrays;
+
+/**
+ * This is immutable batch of changes done to graph in order they happened.
+ * Changes are kept in parallel arrays of change types and changed nodes or
+ * edges.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+public class GraphDelta<N, E> {
+
+    public enum Type {
+
+        ADD_NODE, REMOVE_NODE, ADD_EDGE, REMOVE_EDGE, CLEAR;
+
+        private static final Type[] VALUES = values();
+
+        static Type of(byte ordinal) {
+            return VALUES[ordinal];
+        }
+    }
+
+    private final long sequence;
+    private final byte[] types;
+    private final Object[] targets;
+
+    GraphDelta(long sequence, byte[] types, Object[] targets, int size) {
+        this.sequence = sequence;
+        this.types = Arrays.copyOf(types, size);
+        this.targets = Arrays.copyOf(targets, size);
+    }
+
+    /**
+     * @return how many deltas were published before this one
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int size() {
+        return types.length;
+    }
+
+    public Type getType(int i) {
+        return Type.of(types[i]);
+    }
+
+    /**
+     * @param i index of change
+     * @return changed node or null if change isn't about node
+     */
+    public Node<N> getNode(int i) {
+        Object target = targets[i];
+        return target instanceof Node ? (Node<N>) target : null;
+    }
+
+    /**
+     * @param i index of change
+     * @return changed edge or null if change isn't about edge
+     */
+    public Edge<N, E> getEdge(int i) {
+        Object target = targets[i];
+        return target instanceof Edge ? (Edge<N, E>) target : null;
+    }
+
+    /**
+     * Applies changes to graph in order.
+     *
+     * @param graph graph that was in same state as source of this delta
+     */
+    public void replay(Graph<N, E> graph) {
+        for (int i = 0; i < types.length; i++) {
+            switch (getType(i)) {
+                case ADD_NODE:
+                    graph.add(getNode(i));
+                    break;
+                case REMOVE_NODE:
+                    graph.remove(getNode(i));
+                    break;
+                case ADD_EDGE:
+                    graph.add(getEdge(i));
+                    break;
+                case REMOVE_EDGE:
+                    graph.remove(getEdge(i));
+                    break;
+                case CLEAR:
+                    graph.clear();
+                    break;
+            }
+        }
+    }
+}
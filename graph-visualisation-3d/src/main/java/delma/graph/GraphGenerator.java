@@ -1,44 +1,526 @@
 package delma.graph;
 
-import delma.graph.Graph.Edge;
 import delma.graph.Graph.Node;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * This generates randomised graphs for testing and other purposes.
  *
+ * Generators are {@link GraphModel}s that are seeded and reproducible. They
+ * can be streamed to {@link EdgeSink} or file, or added to graph through its
+ * bulk path with chunks generated in parallel.
+ *
  * @author delma
  */
 public enum GraphGenerator {
 
     INSTANCE;
 
+    private static final int CHUNK = 1 << 16;
+    private static final int BUFFERED = 1 << 20;
+
     /**
-     * Generates new random graph
+     * Generates new random graph. Nodes are first connected to random tree
+     * and then random edges are added until there are given amount of them.
      *
      * @param <N> node label
      * @param <E> edge label
      * @param graph Graph to which new graph is generated
      * @param directionless
-     * @param nodes Approximately how many nodes there will be
-     * @param edges How many vertices there will be
+     * @param nodes How many nodes there will be
+     * @param edges At least how many edges there will be
      * @param nodeLabels
      * @param edgeLabels
      */
     public static <N, E> void generate(Graph<N, E> graph, boolean directionless, int nodes, double edges, Function<Integer, N> nodeLabels, Function<Integer, E> edgeLabels) {
         graph.clear();
-        Random rand = new Random();
+        long seed = new Random().nextLong();
+        GraphModel tree = recursiveTree(nodes, seed);
+        generate(graph, tree, nodeLabels::apply, edgeLabels::apply);
+        long extra = (long) edges - tree.edgeCount();
+        if (extra > 0 && nodes > 1) {
+            int offset = (int) tree.edgeCount();
+            generate(graph, gnm(nodes, extra, seed + 1), nodeLabels::apply, i -> edgeLabels.apply(offset + i));
+        }
+    }
+
+    /**
+     * Generates all chunks of model in parallel and adds result to graph in
+     * one bulk operation.
+     *
+     * @param <N> node label
+     * @param <E> edge label
+     * @param graph graph to add nodes and edges to
+     * @param model model to generate
+     * @param nodeLabels gives label of node with given id
+     * @param edgeLabels gives label of i:th edge, null if edges have no labels
+     */
+    public static <N, E> void generate(Graph<N, E> graph, GraphModel model, IntFunction<N> nodeLabels, IntFunction<E> edgeLabels) {
+        if (model.edgeCount() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Model has too many edges to be added at once");
+        }
+        int chunks = model.chunkCount();
+        int[] offsets = new int[chunks + 1];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            offsets[chunk + 1] = offsets[chunk] + model.chunkSize(chunk);
+        }
+        int[] from = new int[offsets[chunks]];
+        int[] to = new int[offsets[chunks]];
+        IntStream.range(0, chunks).parallel()
+                .forEach(chunk -> model.generate(chunk, new ArraySink(from, to, offsets[chunk])));
+        List<Node<N>> nodes = IntStream.range(0, model.nodeCount()).parallel()
+                .mapToObj(i -> new Node<>(nodeLabels.apply(i)))
+                .collect(Collectors.toList());
+        graph.addAllParallel(nodes, from, to, edgeLabels);
+    }
+
+    /**
+     * Generates chunks of model one after another.
+     *
+     * @param model model to generate
+     * @param sink receives edges in same order every time
+     */
+    public static void generate(GraphModel model, EdgeSink sink) {
+        for (int chunk = 0; chunk < model.chunkCount(); chunk++) {
+            model.generate(chunk, sink);
+        }
+    }
+
+    /**
+     * Generates model straight to file without building the graph. Few
+     * chunks at a time are generated in parallel and written in order, so
+     * file is same as when generated sequentially and memory use doesn't grow
+     * with size of graph. Large chunks are streamed to file one edge at a
+     * time. Only models that need to remember earlier edges, such as
+     * {@link #barabasiAlbert(int, int, long)}, use memory in proportion to
+     * their size.
+     *
+     * @param model model to generate
+     * @param path file to write, replaced if it exists
+     * @param format encoding of edges
+     * @throws IOException if writing fails
+     */
+    public static void write(GraphModel model, Path path, EdgeListWriter.Format format) throws IOException {
+        int window = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        int chunks = model.chunkCount();
+        try (EdgeListWriter writer = EdgeListWriter.open(path, format)) {
+            int chunk = 0;
+            while (chunk < chunks) {
+                if (model.chunkSize(chunk) > BUFFERED) {
+                    model.generate(chunk, writer);
+                    chunk++;
+                    continue;
+                }
+                int first = chunk;
+                while (chunk < chunks && chunk - first < window && model.chunkSize(chunk) <= BUFFERED) {
+                    chunk++;
+                }
+                List<ByteBuffer> encoded = IntStream.range(first, chunk).parallel()
+                        .mapToObj(c -> encode(model, c, format))
+                        .collect(Collectors.toList());
+                for (int c = first; c < chunk; c++) {
+                    writer.write(encoded.get(c - first), model.chunkSize(c));
+                }
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static ByteBuffer encode(GraphModel model, int chunk, EdgeListWriter.Format format) {
+        ByteBuffer buffer = ByteBuffer.allocate(model.chunkSize(chunk) * format.maxBytes);
+        model.generate(chunk, (from, to) -> format.encode(buffer, from, to));
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Erdős–Rényi graph with m edges picked uniformly at random. There are no
+     * self-loops, but same edge can be picked twice in which case graph gets
+     * slightly less edges.
+     *
+     * @param nodes how many nodes there are
+     * @param edges how many edges are picked
+     * @param seed seed of random generator
+     * @return model of the graph
+     */
+    public static GraphModel gnm(int nodes, long edges, long seed) {
+        if (nodes < 2 && edges > 0) {
+            throw new IllegalArgumentException("Edges without self-loops need at least two nodes");
+        }
+        return new EdgeChunks(nodes, edges) {
+            @Override
+            public void generate(int chunk, EdgeSink sink) {
+                SplittableRandom rand = random(seed, chunk);
+                for (int i = chunkSize(chunk); i > 0; i--) {
+                    int from = rand.nextInt(nodes);
+                    int to = rand.nextInt(nodes - 1);
+                    sink.accept(from, to >= from ? to + 1 : to);
+                }
+            }
+        };
+    }
+
+    /**
+     * R-MAT graph with commonly used skewed quadrant probabilities.
+     *
+     * @param scale there are 2^scale nodes
+     * @param edges how many edges are picked
+     * @param seed seed of random generator
+     * @return model of the graph
+     * @see #rmat(int, long, double, double, double, long)
+     */
+    public static GraphModel rmat(int scale, long edges, long seed) {
+        return rmat(scale, edges, 0.57, 0.19, 0.19, seed);
+    }
+
+    /**
+     * R-MAT graph where every edge is placed by recursively picking quadrant
+     * of adjacency matrix with given probabilities. Produces power-law degrees
+     * and community structure similar to real networks. Self-loops and
+     * repeated edges are possible.
+     *
+     * @param scale there are 2^scale nodes
+     * @param edges how many edges are picked
+     * @param a probability of top left quadrant
+     * @param b probability of top right quadrant
+     * @param c probability of bottom left quadrant
+     * @param seed seed of random generator
+     * @return model of the graph
+     */
+    public static GraphModel rmat(int scale, long edges, double a, double b, double c, long seed) {
+        if (scale < 0 || scale > 30) {
+            throw new IllegalArgumentException("Scale has to be between 0 and 30");
+        }
+        if (a < 0 || b < 0 || c < 0 || a + b + c > 1) {
+            throw new IllegalArgumentException("Quadrant probabilities have to be between 0 and 1");
+        }
+        return new EdgeChunks(1 << scale, edges) {
+            @Override
+            public void generate(int chunk, EdgeSink sink) {
+                SplittableRandom rand = random(seed, chunk);
+                for (int i = chunkSize(chunk); i > 0; i--) {
+                    int from = 0;
+                    int to = 0;
+                    for (int bit = 1 << (scale - 1); bit > 0; bit >>>= 1) {
+                        double r = rand.nextDouble();
+                        if (r >= a) {
+                            if (r < a + b) {
+                                to |= bit;
+                            } else if (r < a + b + c) {
+                                from |= bit;
+                            } else {
+                                from |= bit;
+                                to |= bit;
+                            }
+                        }
+                    }
+                    sink.accept(from, to);
+                }
+            }
+        };
+    }
+
+    /**
+     * Watts–Strogatz small world graph. Nodes are put on ring and connected to
+     * k nearest of them, after which every edge is rewired to random node with
+     * probability beta.
+     *
+     * @param nodes how many nodes there are
+     * @param k how many neighbours every node has on ring, even
+     * @param beta probability of rewiring edge
+     * @param seed seed of random generator
+     * @return model of the graph
+     */
+    public static GraphModel wattsStrogatz(int nodes, int k, double beta, long seed) {
+        if (k % 2 != 0 || k < 0 || k >= nodes) {
+            throw new IllegalArgumentException("k has to be even and smaller than count of nodes");
+        }
+        int half = k / 2;
+        return new NodeChunks(nodes, Math.max(1, CHUNK / Math.max(1, half))) {
+            @Override
+            int edgesOf(int node) {
+                return half;
+            }
+
+            @Override
+            public void generate(int chunk, EdgeSink sink) {
+                SplittableRandom rand = random(seed, chunk);
+                for (int node = first(chunk); node < last(chunk); node++) {
+                    for (int j = 1; j <= half; j++) {
+                        int to = (node + j) % nodes;
+                        if (rand.nextDouble() < beta) {
+                            to = rand.nextInt(nodes - 1);
+                            if (to >= node) {
+                                to++;
+                            }
+                        }
+                        sink.accept(node, to);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Barabási–Albert graph grown by preferential attachment: every new node
+     * is connected to m distinct earlier nodes picked proportionally to their
+     * degree. Every node depends on the ones before it so this model is
+     * generated as single chunk.
+     *
+     * @param nodes how many nodes there are
+     * @param m how many edges every new node gets
+     * @param seed seed of random generator
+     * @return model of the graph
+     */
+    public static GraphModel barabasiAlbert(int nodes, int m, long seed) {
+        if (m < 1 || m >= nodes) {
+            throw new IllegalArgumentException("m has to be between 1 and count of nodes");
+        }
+        long size = (long) (nodes - m) * m;
+        if (size * 2 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Barabási–Albert graph is too large");
+        }
+        return new GraphModel() {
+            @Override
+            public int nodeCount() {
+                return nodes;
+            }
+
+            @Override
+            public int chunkCount() {
+                return 1;
+            }
+
+            @Override
+            public int chunkSize(int chunk) {
+                return (int) size;
+            }
 
-        int e = 0;
-        for (int i = 0; i < nodes; i++) {
-            Node curNode = new Node(nodeLabels.apply(i));
-            graph.add(curNode);
-            Node<N> node = graph.getRandomNode(rand);
-            if (!node.equals(curNode)) {
-                graph.add(new Edge(curNode, node, edgeLabels.apply(e)), directionless);
-                e++;
+            @Override
+            public void generate(int chunk, EdgeSink sink) {
+                SplittableRandom rand = random(seed, chunk);
+                int[] endpoints = new int[(int) size * 2];
+                int count = 0;
+                int[] targets = new int[m];
+                for (int node = m; node < nodes; node++) {
+                    for (int j = 0; j < m; j++) {
+                        int target = j;
+                        if (count > 0) {
+                            do {
+                                target = endpoints[rand.nextInt(count)];
+                            } while (contains(targets, j, target));
+                        }
+                        targets[j] = target;
+                    }
+                    for (int j = 0; j < m; j++) {
+                        sink.accept(node, targets[j]);
+                        endpoints[count++] = node;
+                        endpoints[count++] = targets[j];
+                    }
+                }
             }
+        };
+    }
+
+    private static boolean contains(int[] array, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (array[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Grid where every node is connected to node right and below of it. Torus
+     * also connects last row and column to first ones when that doesn't
+     * duplicate edges.
+     *
+     * @param width how many columns there are
+     * @param height how many rows there are
+     * @param torus whether edges wrap around
+     * @return model of the graph
+     */
+    public static GraphModel grid(int width, int height, boolean torus) {
+        if (width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Grid has to have between 1 and 2^31 - 1 nodes");
+        }
+        boolean wrapRows = torus && width > 2;
+        boolean wrapColumns = torus && height > 2;
+        return new NodeChunks(width * height, CHUNK) {
+            @Override
+            int edgesOf(int node) {
+                int x = node % width;
+                int y = node / width;
+                return (x < width - 1 || wrapRows ? 1 : 0) + (y < height - 1 || wrapColumns ? 1 : 0);
+            }
+
+            @Override
+            public void generate(int chunk, EdgeSink sink) {
+                for (int node = first(chunk); node < last(chunk); node++) {
+                    int x = node % width;
+                    int y = node / width;
+                    if (x < width - 1 || wrapRows) {
+                        sink.accept(node, y * width + (x + 1) % width);
+                    }
+                    if (y < height - 1 || wrapColumns) {
+                        sink.accept(node, ((y + 1) % height) * width + x);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Random recursive tree where every node is connected to uniformly random
+     * node before it.
+     *
+     * @param nodes how many nodes there are
+     * @param seed seed of random generator
+     * @return model of the graph
+     */
+    public static GraphModel recursiveTree(int nodes, long seed) {
+        return new NodeChunks(nodes, CHUNK) {
+            @Override
+            int edgesOf(int node) {
+                return node == 0 ? 0 : 1;
+            }
+
+            @Override
+            public void generate(int chunk, EdgeSink sink) {
+                SplittableRandom rand = random(seed, chunk);
+                for (int node = Math.max(1, first(chunk)); node < last(chunk); node++) {
+                    sink.accept(node, rand.nextInt(node));
+                }
+            }
+        };
+    }
+
+    /**
+     * Gives every chunk its own random generator. Seeds are scrambled so that
+     * generators of neighbouring chunks aren't correlated.
+     */
+    private static SplittableRandom random(long seed, int chunk) {
+        long z = seed + chunk * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return new SplittableRandom(z ^ (z >>> 33));
+    }
+
+    /**
+     * Model whose edges are independent of each other and split into chunks
+     * of equal size.
+     */
+    private static abstract class EdgeChunks implements GraphModel {
+
+        private final int nodes;
+        private final long edges;
+
+        EdgeChunks(int nodes, long edges) {
+            if (nodes < 0 || edges < 0) {
+                throw new IllegalArgumentException("Counts of nodes and edges can't be negative");
+            }
+            this.nodes = nodes;
+            this.edges = edges;
+        }
+
+        @Override
+        public int nodeCount() {
+            return nodes;
+        }
+
+        @Override
+        public int chunkCount() {
+            return (int) ((edges + CHUNK - 1) / CHUNK);
+        }
+
+        @Override
+        public int chunkSize(int chunk) {
+            return (int) Math.min(CHUNK, edges - (long) chunk * CHUNK);
+        }
+
+        @Override
+        public long edgeCount() {
+            return edges;
+        }
+    }
+
+    /**
+     * Model whose edges are generated node by node and nodes are split into
+     * chunks of equal size.
+     */
+    private static abstract class NodeChunks implements GraphModel {
+
+        private final int nodes;
+        private final int nodesPerChunk;
+
+        NodeChunks(int nodes, int nodesPerChunk) {
+            if (nodes < 0) {
+                throw new IllegalArgumentException("Count of nodes can't be negative");
+            }
+            this.nodes = nodes;
+            this.nodesPerChunk = nodesPerChunk;
+        }
+
+        abstract int edgesOf(int node);
+
+        int first(int chunk) {
+            return chunk * nodesPerChunk;
+        }
+
+        int last(int chunk) {
+            return (int) Math.min(nodes, (long) (chunk + 1) * nodesPerChunk);
+        }
+
+        @Override
+        public int nodeCount() {
+            return nodes;
+        }
+
+        @Override
+        public int chunkCount() {
+            return (int) (((long) nodes + nodesPerChunk - 1) / nodesPerChunk);
+        }
+
+        @Override
+        public int chunkSize(int chunk) {
+            long size = 0;
+            for (int node = first(chunk); node < last(chunk); node++) {
+                size += edgesOf(node);
+            }
+            return (int) size;
+        }
+    }
+
+    private static class ArraySink implements EdgeSink {
+
+        private final int[] from;
+        private final int[] to;
+        private int position;
+
+        ArraySink(int[] from, int[] to, int position) {
+            this.from = from;
+            this.to = to;
+            this.position = position;
+        }
+
+        @Override
+        public void accept(int from, int to) {
+            this.from[position] = from;
+            this.to[position] = to;
+            position++;
         }
     }
 }
@@ -0,0 +1,450 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * This keeps graph as {@link PackedGraph} snapshot and journal of changes
+ * appended after it, so that save writes only what was changed. Journal is in
+ * file next to snapshot with {@link #EXTENSION} added to its name. When
+ * journal grows larger than snapshot, {@link #needsCompaction()} tells that
+ * they should be compacted to new snapshot.
+ *
+ * Journal is made of frames, one for every {@link #append(List, Map)}. Frame
+ * has its length and CRC32 before its records, so frame that was cut short
+ * by crash is noticed and dropped when journal is opened. Records are
+ * changes of {@link GraphDelta} and layouts of nodes. Labels are encoded with
+ * same {@link LabelCodec} as snapshot.
+ *
+ * Replaying journal again on top of snapshot that already contains it gives
+ * same graph, because every record sets state of one node or edge and
+ * implicit changes are recorded explicitly by {@link ObservableGraph}. That
+ * makes crash between writing snapshot and emptying journal harmless.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+public class GraphJournal<N, E> implements Closeable {
+
+    /**
+     * Added to name of snapshot to get name of its journal.
+     */
+    public static final String EXTENSION = ".journal";
+    private static final int MAGIC = 0x47564a4c;
+    private static final int VERSION = 1;
+    private static final int HEADER = 2 * Integer.BYTES;
+    private static final int FRAME_HEADER = 2 * Integer.BYTES;
+    private static final byte LAYOUT = 16;
+    private static final int TYPES = GraphDelta.Type.values().length;
+    private static final long MIN_COMPACTION = 1 << 20;
+
+    private final Path snapshot;
+    private final Path path;
+    private final FileChannel channel;
+    private final LabelCodec codec;
+    private volatile long snapshotSize;
+    private volatile long size;
+    private volatile boolean damaged;
+
+    private GraphJournal(Path snapshot, FileChannel channel, long size, LabelCodec codec) throws IOException {
+        this.snapshot = snapshot;
+        this.path = journalOf(snapshot);
+        this.channel = channel;
+        this.codec = codec;
+        this.size = size;
+        snapshotSize = Files.exists(snapshot) ? Files.size(snapshot) : 0;
+    }
+
+    /**
+     * @param snapshot snapshot file
+     * @return journal file of snapshot
+     */
+    public static Path journalOf(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Opens journal whose labels are encoded with {@link JsonLabelCodec}.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param snapshot snapshot file
+     * @param graph graph to add to
+     * @param layout receives layout of nodes as in
+     * {@link #open(Path, Graph, BiConsumer, LabelCodec)}
+     * @return journal to append to
+     * @throws IOException if files can't be read
+     */
+    public static <N, E> GraphJournal<N, E> open(Path snapshot, Graph<N, E> graph, BiConsumer<Node<N>, float[]> layout) throws IOException {
+        return open(snapshot, graph, layout, JsonLabelCodec.INSTANCE);
+    }
+
+    /**
+     * Reads snapshot and journal after it to graph and opens journal for
+     * appending. Missing files are treated as empty and frame cut short at
+     * end of journal is dropped.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param snapshot snapshot file
+     * @param graph graph to add to
+     * @param layout receives layout of nodes that have one, later ones
+     * replacing earlier ones
+     * @param codec codec labels were written with and are appended with
+     * @return journal to append to
+     * @throws IOException if files can't be read
+     */
+    public static <N, E> GraphJournal<N, E> open(Path snapshot, Graph<N, E> graph, BiConsumer<Node<N>, float[]> layout,
+            LabelCodec codec) throws IOException {
+        LabelCodec load = codec.forLoad();
+        if (Files.exists(snapshot)) {
+            PackedGraph<N, E> packed = PackedGraph.open(snapshot, load);
+            packed.addTo(graph);
+            if (packed.hasLayout()) {
+                for (int id = 0; id < packed.size(); id++) {
+                    if (!packed.hasLayout(id)) {
+                        continue;
+                    }
+                    float[] values = new float[PackedGraph.LAYOUT_FLOATS];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = packed.getLayout(id, i);
+                    }
+                    layout.accept(packed.getNode(id), values);
+                }
+            }
+        }
+        FileChannel channel = FileChannel.open(journalOf(snapshot),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long end = replay(channel, graph, layout, load);
+            channel.truncate(end);
+            channel.position(end);
+            return new GraphJournal<>(snapshot, channel, end, codec);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates journal whose labels are encoded with {@link JsonLabelCodec}.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param snapshot snapshot file
+     * @param graph graph to write
+     * @param layout layout of every node as in
+     * {@link PackedGraph#write(Graph, Path, Function, LabelCodec)}
+     * @return journal to append to
+     * @throws IOException if files can't be written
+     */
+    public static <N, E> GraphJournal<N, E> create(Path snapshot, Graph<N, E> graph, Function<Node<N>, float[]> layout) throws IOException {
+        return create(snapshot, graph, layout, JsonLabelCodec.INSTANCE);
+    }
+
+    /**
+     * Writes whole graph as new snapshot and starts empty journal after it.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param snapshot snapshot file
+     * @param graph graph to write
+     * @param layout layout of every node as in
+     * {@link PackedGraph#write(Graph, Path, Function, LabelCodec)}
+     * @param codec encodes labels of snapshot and journal
+     * @return journal to append to
+     * @throws IOException if files can't be written
+     */
+    public static <N, E> GraphJournal<N, E> create(Path snapshot, Graph<N, E> graph, Function<Node<N>, float[]> layout,
+            LabelCodec codec) throws IOException {
+        writeSnapshot(snapshot, graph, layout, codec);
+        FileChannel channel = FileChannel.open(journalOf(snapshot),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            reset(channel);
+            return new GraphJournal<>(snapshot, channel, HEADER, codec);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private static <N, E> void writeSnapshot(Path snapshot, Graph<N, E> graph, Function<Node<N>, float[]> layout,
+            LabelCodec codec) throws IOException {
+        Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        PackedGraph.write(graph, temp, layout, codec);
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void reset(FileChannel channel) throws IOException {
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        long at = 0;
+        while (header.hasRemaining()) {
+            at += channel.write(header, at);
+        }
+        channel.force(true);
+        channel.position(HEADER);
+    }
+
+    /**
+     * @return end of last whole frame
+     */
+    private static <N, E> long replay(FileChannel channel, Graph<N, E> graph, BiConsumer<Node<N>, float[]> layout,
+            LabelCodec codec) throws IOException {
+        long length = channel.size();
+        if (length < HEADER) {
+            reset(channel);
+            return HEADER;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a graph journal");
+        }
+        if (header.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported journal version " + header.getInt(Integer.BYTES));
+        }
+        long position = HEADER;
+        ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER);
+        CRC32 checksum = new CRC32();
+        while (position + FRAME_HEADER <= length) {
+            frameHeader.clear();
+            readFully(channel, frameHeader, position);
+            int frameLength = frameHeader.getInt(0);
+            if (frameLength < 0 || position + FRAME_HEADER + frameLength > length) {
+                break;
+            }
+            ByteBuffer frame = ByteBuffer.allocate(frameLength);
+            readFully(channel, frame, position + FRAME_HEADER);
+            checksum.reset();
+            checksum.update(frame.array());
+            if ((int) checksum.getValue() != frameHeader.getInt(Integer.BYTES)) {
+                break;
+            }
+            frame.flip();
+            apply(frame, graph, layout, codec);
+            position += FRAME_HEADER + frameLength;
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of journal");
+            }
+        }
+    }
+
+    private static <N, E> void apply(ByteBuffer frame, Graph<N, E> graph, BiConsumer<Node<N>, float[]> layout,
+            LabelCodec codec) throws IOException {
+        while (frame.hasRemaining()) {
+            byte type = frame.get();
+            if (type == LAYOUT) {
+                Node<N> node = node(frame, codec);
+                float[] values = new float[getVarint(frame)];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = frame.getFloat();
+                }
+                layout.accept(node, values);
+                continue;
+            }
+            if (type < 0 || type >= TYPES) {
+                throw new IOException("Unknown journal record " + type);
+            }
+            switch (GraphDelta.Type.of(type)) {
+                case ADD_NODE:
+                    graph.add(node(frame, codec));
+                    break;
+                case REMOVE_NODE:
+                    graph.remove(node(frame, codec));
+                    break;
+                case ADD_EDGE:
+                    graph.add(edge(frame, codec));
+                    break;
+                case REMOVE_EDGE:
+                    graph.remove(edge(frame, codec));
+                    break;
+                case CLEAR:
+                    graph.clear();
+                    break;
+            }
+        }
+    }
+
+    private static <N> Node<N> node(ByteBuffer frame, LabelCodec codec) {
+        return new Node<>((N) codec.decode(getString(frame)));
+    }
+
+    private static <N, E> Edge<N, E> edge(ByteBuffer frame, LabelCodec codec) {
+        Node<N> from = node(frame, codec);
+        Node<N> to = node(frame, codec);
+        return new Edge<>(from, to, (E) codec.decode(getString(frame)));
+    }
+
+    private static String getString(ByteBuffer frame) {
+        byte[] bytes = new byte[getVarint(frame)];
+        frame.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int getVarint(ByteBuffer frame) {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = frame.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Appends changes as one frame and waits until it is on disk.
+     *
+     * @param deltas changes to graph since last append, in order
+     * @param layout nodes whose layout changed since last append
+     * @throws IOException if journal can't be written
+     */
+    public void append(List<GraphDelta<N, E>> deltas, Map<Node<N>, float[]> layout) throws IOException {
+        Frame frame = new Frame(codec);
+        for (GraphDelta<N, E> delta : deltas) {
+            for (int i = 0; i < delta.size(); i++) {
+                GraphDelta.Type type = delta.getType(i);
+                frame.out.writeByte(type.ordinal());
+                switch (type) {
+                    case ADD_NODE:
+                    case REMOVE_NODE:
+                        frame.putLabel(delta.getNode(i).getLabel());
+                        break;
+                    case ADD_EDGE:
+                    case REMOVE_EDGE:
+                        Edge<N, E> edge = delta.getEdge(i);
+                        frame.putLabel(edge.getFrom().getLabel());
+                        frame.putLabel(edge.getTo().getLabel());
+                        frame.putLabel(edge.getLabel());
+                        break;
+                    default:
+                }
+            }
+        }
+        for (Map.Entry<Node<N>, float[]> entry : layout.entrySet()) {
+            frame.out.writeByte(LAYOUT);
+            frame.putLabel(entry.getKey().getLabel());
+            frame.putVarint(entry.getValue().length);
+            for (float value : entry.getValue()) {
+                frame.out.writeFloat(value);
+            }
+        }
+        if (frame.bytes.size() == 0) {
+            return;
+        }
+        byte[] payload = frame.bytes.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER + payload.length);
+        buffer.putInt(payload.length).putInt((int) checksum.getValue()).put(payload).flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException ex) {
+            damaged = true;
+            throw ex;
+        }
+        size = channel.position();
+    }
+
+    /**
+     * @return whether journal is larger than its snapshot, so that compacting
+     * would make loading faster and files smaller, or appending to it has
+     * failed and changes may have been lost
+     */
+    public boolean needsCompaction() {
+        return damaged || size - HEADER > Math.max(MIN_COMPACTION, snapshotSize);
+    }
+
+    /**
+     * @return bytes in journal
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Writes graph as new snapshot and empties journal. Graph has to be
+     * same as snapshot with journal replayed.
+     *
+     * @param graph graph to write
+     * @param layout layout of every node as in
+     * {@link PackedGraph#write(Graph, Path, Function, LabelCodec)}
+     * @throws IOException if files can't be written
+     */
+    public void compact(Graph<N, E> graph, Function<Node<N>, float[]> layout) throws IOException {
+        writeSnapshot(snapshot, graph, layout, codec);
+        reset(channel);
+        size = HEADER;
+        snapshotSize = Files.size(snapshot);
+        damaged = false;
+    }
+
+    /**
+     * @return journal file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Records of one frame.
+     */
+    private static class Frame {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final LabelCodec codec;
+
+        Frame(LabelCodec codec) {
+            this.codec = codec;
+        }
+
+        void putLabel(Object label) throws IOException {
+            byte[] encoded = codec.encode(label).getBytes(StandardCharsets.UTF_8);
+            putVarint(encoded.length);
+            out.write(encoded);
+        }
+
+        void putVarint(int value) throws IOException {
+            while ((value & ~0x7f) != 0) {
+                out.writeByte((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package delma.graph;
+
+/**
+ * This is random graph model that produces edges between node ids
+ * [0, nodeCount()) in independent chunks. Every chunk has its own random
+ * generator derived from seed of the model, so same model always produces
+ * same edges regardless of order or thread chunks are generated in.
+ *
+ * @author delma
+ */
+public interface GraphModel {
+
+    int nodeCount();
+
+    int chunkCount();
+
+    /**
+     * @param chunk index of chunk
+     * @return exactly how many edges chunk produces
+     */
+    int chunkSize(int chunk);
+
+    /**
+     * Generates edges of one chunk.
+     *
+     * @param chunk index of chunk
+     * @param sink receives edges
+     */
+    void generate(int chunk, EdgeSink sink);
+
+    /**
+     * @return how many edges all chunks produce together
+     */
+    default long edgeCount() {
+        long count = 0;
+        for (int chunk = 0; chunk < chunkCount(); chunk++) {
+            count += chunkSize(chunk);
+        }
+        return count;
+    }
+}
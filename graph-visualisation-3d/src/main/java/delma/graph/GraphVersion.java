@@ -0,0 +1,288 @@
+package delma.graph;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * This is one version of {@link VersionedGraph}. Published versions are
+ * immutable and share unchanged segments with each other, so they can be read
+ * from any thread without locking.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+public class GraphVersion<N, E> extends ReadOnlyGraph<N, E> {
+
+    static final int SEGMENTS = 64;
+    static final int CHUNK_BITS = 10;
+    static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int RANDOM_TRIES = 16;
+
+    final Map<Node<N>, Slot<N, E>>[] nodes;
+    final Set<Edge<N, E>>[] edges;
+    Node<N>[][] chunks;
+    int idCount;
+    int size;
+    int edgeCount;
+    private final long number;
+    private final boolean frozen;
+    private final Collection<Node<N>> nodeView;
+    private final Collection<Edge<N, E>> edgeView;
+    private volatile CsrGraph<N, E> csr;
+
+    GraphVersion(Map<Node<N>, Slot<N, E>>[] nodes, Set<Edge<N, E>>[] edges, Node<N>[][] chunks, long number, boolean frozen) {
+        this.nodes = nodes;
+        this.edges = edges;
+        this.chunks = chunks;
+        this.number = number;
+        this.frozen = frozen;
+        nodeView = new SegmentView<>(nodes, true);
+        edgeView = new SegmentView<>(edges, false);
+    }
+
+    static int segment(Object object) {
+        int hash = object.hashCode();
+        return (hash ^ (hash >>> 16)) & (SEGMENTS - 1);
+    }
+
+    /**
+     * @return immutable copy of this version sharing all segments with it
+     */
+    GraphVersion<N, E> freeze(long number) {
+        GraphVersion<N, E> result = new GraphVersion<>(nodes.clone(), edges.clone(), chunks.clone(), number, true);
+        result.idCount = idCount;
+        result.size = size;
+        result.edgeCount = edgeCount;
+        return result;
+    }
+
+    /**
+     * @return how many versions were published before this one
+     */
+    @JsonIgnore
+    public long getVersion() {
+        return number;
+    }
+
+    private Slot<N, E> slot(Node<N> node) {
+        return nodes[segment(node)].get(node);
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getNeighbourEdges(Node<N> node) {
+        Slot<N, E> slot = slot(node);
+        if (slot == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(slot.edges);
+    }
+
+    @Override
+    public Collection<Node<N>> getNeighbourNodes(Node<N> node) {
+        Slot<N, E> slot = slot(node);
+        if (slot == null) {
+            return Collections.emptyList();
+        }
+        List<Node<N>> result = new ArrayList<>(slot.edges.size());
+        slot.edges.forEach(e -> e.getOther(node).ifPresent(result::add));
+        return result;
+    }
+
+    @Override
+    public Collection<Node<N>> getNodes() {
+        return nodeView;
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getEdges() {
+        return edgeView;
+    }
+
+    @Override
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Published versions share transpose of their snapshot, working version
+     * is viewed as it is so that view stays up to date.
+     */
+    @Override
+    public Graph<N, E> getTranspose() {
+        return frozen ? csr().getTranspose() : new TransposedGraph<>(this);
+    }
+
+    @Override
+    public boolean contains(Node<N> node) {
+        return slot(node) != null;
+    }
+
+    @Override
+    public int getId(Node<N> node) {
+        Slot<N, E> slot = slot(node);
+        return slot == null ? -1 : slot.id;
+    }
+
+    @Override
+    public Node<N> getNode(int id) {
+        if (id < 0 || id >= idCount) {
+            return null;
+        }
+        return chunks[id >>> CHUNK_BITS][id & (CHUNK - 1)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Node<N> getRandomNode(Random rand) {
+        for (int i = 0; i < RANDOM_TRIES && idCount > 0; i++) {
+            Node<N> node = getNode(rand.nextInt(idCount));
+            if (contains(node)) {
+                return node;
+            }
+        }
+        return pick(nodes, size, rand, true);
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Node<N> node, Random rand) {
+        Slot<N, E> slot = slot(node);
+        if (slot == null || slot.edges.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(slot.edges.get(rand.nextInt(slot.edges.size())));
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Random rand) {
+        return Optional.ofNullable(pick(edges, edgeCount, rand, false));
+    }
+
+    private static <T> T pick(Object[] segments, int total, Random rand, boolean keys) {
+        if (total == 0) {
+            return null;
+        }
+        int skip = rand.nextInt(total);
+        for (Object segment : segments) {
+            Collection<T> collection = keys ? ((Map<T, ?>) segment).keySet() : (Collection<T>) segment;
+            if (skip >= collection.size()) {
+                skip -= collection.size();
+                continue;
+            }
+            Iterator<T> it = collection.iterator();
+            for (int i = 0; i < skip; i++) {
+                it.next();
+            }
+            return it.next();
+        }
+        return null;
+    }
+
+    /**
+     * Versions are immutable so their snapshot is built only once.
+     */
+    private CsrGraph<N, E> csr() {
+        if (!frozen) {
+            return new CsrGraph<>(this);
+        }
+        CsrGraph<N, E> result = csr;
+        if (result == null) {
+            result = new CsrGraph<>(this);
+            csr = result;
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<Graph<N, E>> getSubgraphs() {
+        return csr().getSubgraphs();
+    }
+
+    @Override
+    public int componentCount() {
+        return csr().componentCount();
+    }
+
+    @Override
+    public Node<N> getComponent(Node<N> node) {
+        return csr().getComponent(node);
+    }
+
+    /**
+     * Adjacency of one node. Lists are only mutated by writer before version
+     * that contains them is published.
+     */
+    static class Slot<N, E> {
+
+        final int id;
+        final List<Edge<N, E>> edges;
+
+        Slot(int id, List<Edge<N, E>> edges) {
+            this.id = id;
+            this.edges = edges;
+        }
+    }
+
+    private class SegmentView<T> extends AbstractCollection<T> {
+
+        private final Object[] segments;
+        private final boolean keys;
+
+        SegmentView(Object[] segments, boolean keys) {
+            this.segments = segments;
+            this.keys = keys;
+        }
+
+        private Collection<T> get(int i) {
+            return keys ? ((Map<T, ?>) segments[i]).keySet() : (Collection<T>) segments[i];
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int segment = 0;
+                private Iterator<T> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && segment < segments.length) {
+                        current = get(segment++).iterator();
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            return get(segment(object)).contains(object);
+        }
+
+        @Override
+        public int size() {
+            return keys ? GraphVersion.this.size : edgeCount;
+        }
+    }
+}
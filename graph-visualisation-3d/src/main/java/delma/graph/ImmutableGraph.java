@@ -0,0 +1,274 @@
+package delma.graph;
+
+import java.nio.IntBuffer;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * This is base of read-only graphs that keep their structure by node ids
+ * outside of node and edge objects. Subclasses decode nodes and edges of one
+ * node at a time and everything else is built on that.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+abstract class ImmutableGraph<N, E> extends ReadOnlyGraph<N, E> implements IndexedGraph<N, E> {
+
+    private final Collection<Node<N>> nodeView = new NodeView();
+    private final Collection<Edge<N, E>> edgeView = new EdgeView();
+    private int[] componentOf;
+    private int[] representatives;
+
+    /**
+     * @param id node id
+     * @return new list of edges starting from node
+     */
+    abstract List<Edge<N, E>> outEdges(int id);
+
+    /**
+     * @param id node id
+     * @return new list of edges ending to node
+     */
+    abstract List<Edge<N, E>> inEdges(int id);
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Builds open addressing table for finding ids of nodes from their hashes.
+     * Entries are ids plus one so that zero marks empty entry.
+     *
+     * @param hashes hash of every node by id
+     * @return table with power of two length
+     */
+    static int[] hashTable(int[] hashes) {
+        int[] table = new int[Math.max(1, Integer.highestOneBit(Math.max(1, hashes.length)) << 2)];
+        for (int id = 0; id < hashes.length; id++) {
+            int i = mix(hashes[id]) & (table.length - 1);
+            while (table[i] != 0) {
+                i = (i + 1) & (table.length - 1);
+            }
+            table[i] = id + 1;
+        }
+        return table;
+    }
+
+    /**
+     * @param table table built by {@link #hashTable(int[])}
+     * @param hashes hash of every node by id
+     * @param node node to look for
+     * @return id of node or -1 if it isn't in this graph
+     */
+    int find(IntBuffer table, IntBuffer hashes, Node<N> node) {
+        int hash = node.hashCode();
+        int mask = table.capacity() - 1;
+        for (int i = mix(hash) & mask;; i = (i + 1) & mask) {
+            int entry = table.get(i);
+            if (entry == 0) {
+                return -1;
+            }
+            int id = entry - 1;
+            if (hashes.get(id) == hash && getNode(id).equals(node)) {
+                return id;
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(Node<N> node) {
+        return getId(node) >= 0;
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getNeighbourEdges(Node<N> node) {
+        int id = getId(node);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        List<Edge<N, E>> result = outEdges(id);
+        result.addAll(inEdges(id));
+        return result;
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getOutEdges(Node<N> node) {
+        int id = getId(node);
+        return id < 0 ? Collections.emptyList() : outEdges(id);
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getInEdges(Node<N> node) {
+        int id = getId(node);
+        return id < 0 ? Collections.emptyList() : inEdges(id);
+    }
+
+    @Override
+    public Collection<Node<N>> getNeighbourNodes(Node<N> node) {
+        int id = getId(node);
+        if (id < 0) {
+            return Collections.emptyList();
+        }
+        List<Node<N>> result = new ArrayList<>(degree(id));
+        forEachNeighbour(id, neighbour -> result.add(getNode(neighbour)));
+        return result;
+    }
+
+    @Override
+    public Collection<Node<N>> getNodes() {
+        return nodeView;
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getEdges() {
+        return edgeView;
+    }
+
+    @Override
+    public Node<N> getRandomNode(Random rand) {
+        return getNode(rand.nextInt(size()));
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Node<N> node, Random rand) {
+        Collection<Edge<N, E>> edges = getNeighbourEdges(node);
+        if (edges.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(((List<Edge<N, E>>) edges).get(rand.nextInt(edges.size())));
+    }
+
+    /**
+     * Component labels are only kept on heap.
+     */
+    private void labelComponents() {
+        if (componentOf != null) {
+            return;
+        }
+        int[] labels = Components.componentOf(this);
+        representatives = new int[Components.count(labels)];
+        for (int id = labels.length - 1; id >= 0; id--) {
+            representatives[labels[id]] = id;
+        }
+        componentOf = labels;
+    }
+
+    @Override
+    public int componentCount() {
+        labelComponents();
+        return representatives.length;
+    }
+
+    @Override
+    public Node<N> getComponent(Node<N> node) {
+        int id = getId(node);
+        if (id < 0) {
+            return null;
+        }
+        labelComponents();
+        return getNode(representatives[componentOf[id]]);
+    }
+
+    /**
+     * Components are copied to heap as {@link CsrGraph}s.
+     */
+    @Override
+    public Collection<Graph<N, E>> getSubgraphs() {
+        labelComponents();
+        int components = representatives.length;
+        List<List<Node<N>>> componentNodes = new ArrayList<>(components);
+        List<List<Edge<N, E>>> componentEdges = new ArrayList<>(components);
+        for (int c = 0; c < components; c++) {
+            componentNodes.add(new ArrayList<>());
+            componentEdges.add(new ArrayList<>());
+        }
+        for (int id = 0; id < size(); id++) {
+            componentNodes.get(componentOf[id]).add(getNode(id));
+            componentEdges.get(componentOf[id]).addAll(outEdges(id));
+        }
+        List<Graph<N, E>> result = new ArrayList<>(components);
+        for (int c = 0; c < components; c++) {
+            result.add(new CsrGraph<>(componentNodes.get(c), componentEdges.get(c)));
+        }
+        return result;
+    }
+
+    private class NodeView extends AbstractCollection<Node<N>> {
+
+        @Override
+        public Iterator<Node<N>> iterator() {
+            return new Iterator<Node<N>>() {
+                private int id = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return id < size();
+                }
+
+                @Override
+                public Node<N> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return getNode(id++);
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            return object instanceof Node && ImmutableGraph.this.contains((Node<N>) object);
+        }
+
+        @Override
+        public int size() {
+            return ImmutableGraph.this.size();
+        }
+    }
+
+    /**
+     * Decodes outgoing edges of one node at a time.
+     */
+    private class EdgeView extends AbstractCollection<Edge<N, E>> {
+
+        @Override
+        public Iterator<Edge<N, E>> iterator() {
+            return new Iterator<Edge<N, E>>() {
+                private int from = -1;
+                private Iterator<Edge<N, E>> edges = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!edges.hasNext() && from + 1 < ImmutableGraph.this.size()) {
+                        from++;
+                        if (outDegree(from) > 0) {
+                            edges = outEdges(from).iterator();
+                        }
+                    }
+                    return edges.hasNext();
+                }
+
+                @Override
+                public Edge<N, E> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return edges.next();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return edgeCount();
+        }
+    }
+}
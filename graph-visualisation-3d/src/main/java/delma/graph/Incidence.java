@@ -0,0 +1,171 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * This is read-only collection of all edges of one node. Outgoing and
+ * incoming edges are kept in separate adjacencies so directed traversals only
+ * touch edges going to right direction. Self-loop is in both adjacencies but
+ * is seen only once through this collection.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+class Incidence<N, E> extends AbstractCollection<Edge<N, E>> {
+
+    final Adjacency<N, E> out;
+    final Adjacency<N, E> in;
+    private int loops;
+
+    Incidence() {
+        out = new Adjacency<>();
+        in = new Adjacency<>();
+    }
+
+    private static boolean isLoop(Edge<?, ?> edge) {
+        return edge.getFrom().equals(edge.getTo());
+    }
+
+    /**
+     * Adds edge to outgoing or incoming edges depending on which end of it
+     * node is.
+     *
+     * @param node node this collection belongs to
+     * @param edge edge of node
+     */
+    void insert(Node<N> node, Edge<N, E> edge) {
+        boolean from = edge.getFrom().equals(node);
+        boolean to = edge.getTo().equals(node);
+        if (from) {
+            out.insert(edge);
+        }
+        if (to) {
+            in.insert(edge);
+        }
+        if (from && to) {
+            loops++;
+        }
+    }
+
+    void delete(Node<N> node, Edge<N, E> edge) {
+        boolean from = edge.getFrom().equals(node) && out.delete(edge);
+        boolean to = edge.getTo().equals(node) && in.delete(edge);
+        if (from && to) {
+            loops--;
+        }
+    }
+
+    void reserve(int outCount, int inCount) {
+        out.reserve(outCount);
+        in.reserve(inCount);
+    }
+
+    /**
+     * Gets uniformly random edge. Self-loops are skipped when they are picked
+     * from incoming edges so they aren't twice as likely as other edges.
+     *
+     * @param rand source of randomness
+     * @return random edge
+     */
+    Edge<N, E> getRandom(Random rand) {
+        while (true) {
+            int i = rand.nextInt(out.size() + in.size());
+            if (i < out.size()) {
+                return out.get(i);
+            }
+            Edge<N, E> edge = in.get(i - out.size());
+            if (loops == 0 || !isLoop(edge)) {
+                return edge;
+            }
+        }
+    }
+
+    /**
+     * Walks edges by index so that no iterators are created.
+     *
+     * @param action called for every neighbour
+     */
+    void forEachNeighbour(Consumer<Node<N>> action) {
+        for (int i = 0; i < out.size(); i++) {
+            action.accept(out.get(i).getTo());
+        }
+        for (int i = 0; i < in.size(); i++) {
+            Edge<N, E> edge = in.get(i);
+            if (loops == 0 || !isLoop(edge)) {
+                action.accept(edge.getFrom());
+            }
+        }
+    }
+
+    /**
+     * @param dictionary dictionary that gave ids to nodes
+     * @param action called for id of every neighbour
+     */
+    void forEachNeighbour(NodeDictionary<N> dictionary, IntConsumer action) {
+        for (int i = 0; i < out.size(); i++) {
+            action.accept(dictionary.getId(out.get(i).getTo()));
+        }
+        for (int i = 0; i < in.size(); i++) {
+            Edge<N, E> edge = in.get(i);
+            if (loops == 0 || !isLoop(edge)) {
+                action.accept(dictionary.getId(edge.getFrom()));
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return out.contains(object) || in.contains(object);
+    }
+
+    @Override
+    public Iterator<Edge<N, E>> iterator() {
+        return new Iterator<Edge<N, E>>() {
+            private final Iterator<Edge<N, E>> outgoing = out.iterator();
+            private final Iterator<Edge<N, E>> incoming = in.iterator();
+            private Edge<N, E> next;
+
+            @Override
+            public boolean hasNext() {
+                if (next != null) {
+                    return true;
+                }
+                if (outgoing.hasNext()) {
+                    next = outgoing.next();
+                    return true;
+                }
+                while (incoming.hasNext()) {
+                    Edge<N, E> edge = incoming.next();
+                    if (loops == 0 || !isLoop(edge)) {
+                        next = edge;
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public Edge<N, E> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Edge<N, E> result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return out.size() + in.size() - loops;
+    }
+}
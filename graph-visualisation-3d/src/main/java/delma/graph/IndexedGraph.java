@@ -0,0 +1,44 @@
+package delma.graph;
+
+import java.util.function.IntConsumer;
+
+/**
+ * This is graph whose structure can be walked using dense node ids without
+ * touching node or edge objects.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+public interface IndexedGraph<N, E> extends Graph<N, E> {
+
+    int outDegree(int id);
+
+    int inDegree(int id);
+
+    /**
+     * @param id node id
+     * @return how many edges, both outgoing and incoming, node has
+     */
+    default int degree(int id) {
+        return outDegree(id) + inDegree(id);
+    }
+
+    /**
+     * Gets neighbour through i:th edge of node. Outgoing edges come before
+     * incoming ones.
+     *
+     * @param id node id
+     * @param i index of edge between 0 and degree(id)
+     * @return id of the neighbour
+     */
+    int neighbour(int id, int i);
+
+    @Override
+    default void forEachNeighbour(int id, IntConsumer action) {
+        int degree = degree(id);
+        for (int i = 0; i < degree; i++) {
+            action.accept(neighbour(id, i));
+        }
+    }
+}
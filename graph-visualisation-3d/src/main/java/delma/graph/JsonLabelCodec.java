@@ -0,0 +1,156 @@
+package delma.graph;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import delma.graph.visualisation.App;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This is label codec that writes same JSON as Jackson does, but handles
+ * ints, longs and strings without going through Jackson. Other labels fall
+ * back to {@link App#MAPPER}. Codec given by {@link #forLoad()} shares
+ * decoded strings so that equal labels of many edges are one instance. It
+ * remembers at most {@link #SHARED_STRINGS} of them and is dropped after the
+ * load together with them.
+ *
+ * String that isn't valid JSON is decoded as string itself.
+ *
+ * @author delma
+ */
+public final class JsonLabelCodec implements LabelCodec {
+
+    /**
+     * Codec that doesn't share strings.
+     */
+    public static final JsonLabelCodec INSTANCE = new JsonLabelCodec(0);
+
+    /**
+     * How many distinct strings codec of one load shares at most.
+     */
+    public static final int SHARED_STRINGS = 1 << 16;
+
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final ConcurrentMap<String, String> strings;
+    private final int limit;
+
+    private JsonLabelCodec(int limit) {
+        this.limit = limit;
+        strings = limit > 0 ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * @return new codec that shares strings it decodes
+     */
+    @Override
+    public LabelCodec forLoad() {
+        return new JsonLabelCodec(SHARED_STRINGS);
+    }
+
+    @Override
+    public String encode(Object label) {
+        if (label == null) {
+            return "null";
+        }
+        if (label instanceof Integer || label instanceof Long) {
+            return label.toString();
+        }
+        if (label instanceof String && isPlain((String) label)) {
+            String string = (String) label;
+            return new StringBuilder(string.length() + 2).append('"').append(string).append('"').toString();
+        }
+        try {
+            return App.MAPPER.writeValueAsString(label);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Label can't be written as JSON: " + label, ex);
+        }
+    }
+
+    /**
+     * @return true if string doesn't need escaping in JSON
+     */
+    private static boolean isPlain(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object decode(String string) {
+        int length = string.length();
+        if (length == 0) {
+            return string;
+        }
+        char first = string.charAt(0);
+        if (first == '"') {
+            if (length > 1 && string.indexOf('"', 1) == length - 1 && string.indexOf('\\') < 0) {
+                return share(string.substring(1, length - 1));
+            }
+        } else if (first == '-' || (first >= '0' && first <= '9')) {
+            Number number = parseInteger(string);
+            if (number != null) {
+                return number;
+            }
+        } else if (string.equals("null")) {
+            return null;
+        }
+        try {
+            Object label = App.MAPPER.readValue(string, Object.class);
+            return label instanceof String ? share((String) label) : label;
+        } catch (IOException ex) {
+            return share(string);
+        }
+    }
+
+    /**
+     * @return equal string decoded earlier or given one
+     */
+    private String share(String string) {
+        if (strings == null) {
+            return string;
+        }
+        String shared = strings.get(string);
+        if (shared != null) {
+            return shared;
+        }
+        if (strings.size() >= limit) {
+            return string;
+        }
+        shared = strings.putIfAbsent(string, string);
+        return shared != null ? shared : string;
+    }
+
+    /**
+     * Parses integer the same way Jackson does: values that fit in int become
+     * Integers and others Longs. Leading zeros aren't allowed.
+     *
+     * @return parsed number or null if string isn't short integer
+     */
+    private static Number parseInteger(String string) {
+        int start = string.charAt(0) == '-' ? 1 : 0;
+        int digits = string.length() - start;
+        if (digits == 0 || digits > MAX_LONG_DIGITS || (digits > 1 && string.charAt(start) == '0')) {
+            return null;
+        }
+        long value = 0;
+        for (int i = start; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (start == 1) {
+            value = -value;
+        }
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int) value;
+        }
+        return value;
+    }
+}
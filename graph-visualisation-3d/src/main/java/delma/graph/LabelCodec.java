@@ -0,0 +1,33 @@
+package delma.graph;
+
+/**
+ * This turns labels of nodes to strings and back. Encoded labels are used as
+ * keys of saved node maps so they have to be valid JSON.
+ *
+ * @author delma
+ */
+public interface LabelCodec {
+
+    /**
+     * @param label label to encode, may be null
+     * @return label as JSON
+     * @throws IllegalArgumentException if label can't be encoded
+     */
+    String encode(Object label);
+
+    /**
+     * @param string encoded label
+     * @return decoded label
+     */
+    Object decode(String string);
+
+    /**
+     * Gives codec to decode one load with, so that state kept while decoding
+     * is dropped with it.
+     *
+     * @return codec for one load, this by default
+     */
+    default LabelCodec forLoad() {
+        return this;
+    }
+}
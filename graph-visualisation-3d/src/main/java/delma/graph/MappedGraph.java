@@ -0,0 +1,406 @@
+package delma.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * This is immutable graph stored in file and read through memory mapping.
+ *
+ * Structure is kept in same compressed sparse row form as in
+ * {@link CsrGraph}, but arrays are views of mapped file instead of heap
+ * arrays. Opening graph only maps the file: operating system pages parts of
+ * it in when they are first touched and shares the pages between processes
+ * that map the same file. Nodes and edges are decoded from stored labels only
+ * when they are asked for, so walking graph by ids allocates nothing.
+ *
+ * Every section of file is mapped separately and has to be smaller than 2GB,
+ * which limits graph to about 500 million edges.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+public class MappedGraph<N, E> extends ImmutableGraph<N, E> {
+
+    private static final int MAGIC = 0x47564d47;
+    private static final int VERSION = 1;
+
+    private static final int OUT_OFFSETS = 0;
+    private static final int TARGETS = 1;
+    private static final int OUT_LABELS = 2;
+    private static final int IN_OFFSETS = 3;
+    private static final int SOURCES = 4;
+    private static final int IN_LABELS = 5;
+    private static final int NODE_HASHES = 6;
+    private static final int NODE_TABLE = 7;
+    private static final int NODE_OFFSETS = 8;
+    private static final int NODE_BYTES = 9;
+    private static final int LABEL_OFFSETS = 10;
+    private static final int LABEL_BYTES = 11;
+    private static final int SECTIONS = 12;
+
+    private static final int HEADER = 5 * Integer.BYTES + SECTIONS * 2 * Long.BYTES;
+    private static final int LABEL_CACHE = 1024;
+
+    private final int size;
+    private final int edgeCount;
+    private final IntBuffer outOffsets;
+    private final IntBuffer targets;
+    private final IntBuffer outLabels;
+    private final IntBuffer inOffsets;
+    private final IntBuffer sources;
+    private final IntBuffer inLabels;
+    private final IntBuffer nodeHashes;
+    private final IntBuffer nodeTable;
+    private final IntBuffer nodeOffsets;
+    private final ByteBuffer nodeBytes;
+    private final IntBuffer labelOffsets;
+    private final ByteBuffer labelBytes;
+    private final Object[] labelCache;
+    private final LabelCodec codec;
+    private MappedGraph<N, E> transpose;
+
+    private MappedGraph(FileChannel channel, LabelCodec codec) throws IOException {
+        this.codec = codec;
+        long fileSize = channel.size();
+        if (fileSize < HEADER) {
+            throw new IOException("File is too short to be mapped graph");
+        }
+        ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("File isn't mapped graph");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported mapped graph version " + version);
+        }
+        size = header.getInt();
+        edgeCount = header.getInt();
+        int labelCount = header.getInt();
+        ByteBuffer[] sections = new ByteBuffer[SECTIONS];
+        for (int i = 0; i < SECTIONS; i++) {
+            long position = header.getLong();
+            long length = header.getLong();
+            if (position < HEADER || length > Integer.MAX_VALUE || position + length > fileSize) {
+                throw new IOException("Section " + i + " of mapped graph is out of file");
+            }
+            sections[i] = channel.map(MapMode.READ_ONLY, position, length);
+        }
+        outOffsets = sections[OUT_OFFSETS].asIntBuffer();
+        targets = sections[TARGETS].asIntBuffer();
+        outLabels = sections[OUT_LABELS].asIntBuffer();
+        inOffsets = sections[IN_OFFSETS].asIntBuffer();
+        sources = sections[SOURCES].asIntBuffer();
+        inLabels = sections[IN_LABELS].asIntBuffer();
+        nodeHashes = sections[NODE_HASHES].asIntBuffer();
+        nodeTable = sections[NODE_TABLE].asIntBuffer();
+        nodeOffsets = sections[NODE_OFFSETS].asIntBuffer();
+        nodeBytes = sections[NODE_BYTES];
+        labelOffsets = sections[LABEL_OFFSETS].asIntBuffer();
+        labelBytes = sections[LABEL_BYTES];
+        if (outOffsets.capacity() != size + 1 || targets.capacity() != edgeCount
+                || labelOffsets.capacity() != labelCount + 1) {
+            throw new IOException("Mapped graph is corrupted");
+        }
+        labelCache = labelCount <= LABEL_CACHE ? new Object[labelCount] : null;
+    }
+
+    private MappedGraph(MappedGraph<N, E> original) {
+        size = original.size;
+        edgeCount = original.edgeCount;
+        outOffsets = original.inOffsets;
+        targets = original.sources;
+        outLabels = original.inLabels;
+        inOffsets = original.outOffsets;
+        sources = original.targets;
+        inLabels = original.outLabels;
+        nodeHashes = original.nodeHashes;
+        nodeTable = original.nodeTable;
+        nodeOffsets = original.nodeOffsets;
+        nodeBytes = original.nodeBytes;
+        labelOffsets = original.labelOffsets;
+        labelBytes = original.labelBytes;
+        labelCache = original.labelCache;
+        codec = original.codec;
+        transpose = original;
+    }
+
+    /**
+     * Maps graph written with {@link JsonLabelCodec}.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param path file to map
+     * @return graph backed by the file
+     * @throws IOException if file can't be read or isn't mapped graph
+     */
+    public static <N, E> MappedGraph<N, E> open(Path path) throws IOException {
+        return open(path, JsonLabelCodec.INSTANCE);
+    }
+
+    /**
+     * Maps graph written by {@link #write(Graph, Path, LabelCodec)}. Mapping
+     * stays valid after file is closed.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param path file to map
+     * @param codec codec labels were written with
+     * @return graph backed by the file
+     * @throws IOException if file can't be read or isn't mapped graph
+     */
+    public static <N, E> MappedGraph<N, E> open(Path path, LabelCodec codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedGraph<>(channel, codec.forLoad());
+        }
+    }
+
+    /**
+     * Writes graph with labels encoded by {@link JsonLabelCodec}.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param graph graph to write
+     * @param path file to write to
+     * @throws IOException if writing fails or graph is too large
+     */
+    public static <N, E> void write(Graph<N, E> graph, Path path) throws IOException {
+        write(graph, path, JsonLabelCodec.INSTANCE);
+    }
+
+    /**
+     * Writes graph to file in format that can be mapped by
+     * {@link #open(Path, LabelCodec)}.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param graph graph to write
+     * @param path file to write to
+     * @param codec encodes labels of nodes and edges
+     * @throws IOException if writing fails or graph is too large
+     */
+    public static <N, E> void write(Graph<N, E> graph, Path path, LabelCodec codec) throws IOException {
+        CsrGraph<N, E> csr = graph instanceof CsrGraph ? (CsrGraph<N, E>) graph : new CsrGraph<>(graph);
+        int size = csr.size();
+        int edgeCount = csr.edgeCount();
+
+        Map<Object, Integer> labelIds = new HashMap<>();
+        List<Object> labels = new ArrayList<>();
+        int[] outLabels = new int[edgeCount];
+        for (int slot = 0; slot < edgeCount; slot++) {
+            Object label = csr.label(slot);
+            outLabels[slot] = label == null ? -1 : labelIds.computeIfAbsent(label, l -> {
+                labels.add(l);
+                return labels.size() - 1;
+            });
+        }
+        int[] inEdges = csr.inEdges();
+        int[] inLabels = new int[edgeCount];
+        for (int inSlot = 0; inSlot < edgeCount; inSlot++) {
+            inLabels[inSlot] = outLabels[inEdges[inSlot]];
+        }
+
+        int[] hashes = new int[size];
+        for (int id = 0; id < size; id++) {
+            hashes[id] = csr.getNode(id).hashCode();
+        }
+        int[] table = hashTable(hashes);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SectionOutput out = new SectionOutput(channel, HEADER, SECTIONS);
+            int[] offsets = new int[size + 1];
+            out.begin(NODE_BYTES);
+            for (int id = 0; id < size; id++) {
+                offsets[id] = out.length();
+                out.put(codec.encode(csr.getNode(id).getLabel()).getBytes(StandardCharsets.UTF_8));
+            }
+            offsets[size] = out.length();
+            out.end();
+            out.section(NODE_OFFSETS, offsets);
+
+            offsets = new int[labels.size() + 1];
+            out.begin(LABEL_BYTES);
+            for (int i = 0; i < labels.size(); i++) {
+                offsets[i] = out.length();
+                out.put(codec.encode(labels.get(i)).getBytes(StandardCharsets.UTF_8));
+            }
+            offsets[labels.size()] = out.length();
+            out.end();
+            out.section(LABEL_OFFSETS, offsets);
+
+            out.section(OUT_OFFSETS, csr.outOffsets());
+            out.section(TARGETS, csr.targets());
+            out.section(OUT_LABELS, outLabels);
+            out.section(IN_OFFSETS, csr.inOffsets());
+            out.section(SOURCES, csr.sources());
+            out.section(IN_LABELS, inLabels);
+            out.section(NODE_HASHES, hashes);
+            out.section(NODE_TABLE, table);
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(edgeCount).putInt(labels.size());
+            for (long value : out.sections()) {
+                header.putLong(value);
+            }
+            header.flip();
+            out.finish(header);
+        }
+    }
+
+    private static byte[] read(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return bytes;
+    }
+
+    private E edgeLabel(int index) {
+        if (index < 0) {
+            return null;
+        }
+        if (labelCache == null) {
+            return decodeLabel(index);
+        }
+        Object label = labelCache[index];
+        if (label == null) {
+            label = decodeLabel(index);
+            labelCache[index] = label;
+        }
+        return (E) label;
+    }
+
+    private E decodeLabel(int index) {
+        byte[] bytes = read(labelBytes, labelOffsets.get(index), labelOffsets.get(index + 1));
+        return (E) codec.decode(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private Edge<N, E> outEdge(int from, int slot) {
+        return new Edge<>(getNode(from), getNode(targets.get(slot)), edgeLabel(outLabels.get(slot)));
+    }
+
+    private Edge<N, E> inEdge(int to, int inSlot) {
+        return new Edge<>(getNode(sources.get(inSlot)), getNode(to), edgeLabel(inLabels.get(inSlot)));
+    }
+
+    @Override
+    List<Edge<N, E>> outEdges(int id) {
+        List<Edge<N, E>> result = new ArrayList<>(outDegree(id));
+        for (int slot = outOffsets.get(id); slot < outOffsets.get(id + 1); slot++) {
+            result.add(outEdge(id, slot));
+        }
+        return result;
+    }
+
+    @Override
+    List<Edge<N, E>> inEdges(int id) {
+        List<Edge<N, E>> result = new ArrayList<>(inDegree(id));
+        for (int slot = inOffsets.get(id); slot < inOffsets.get(id + 1); slot++) {
+            result.add(inEdge(id, slot));
+        }
+        return result;
+    }
+
+    @Override
+    public int getId(Node<N> node) {
+        return find(nodeTable, nodeHashes, node);
+    }
+
+    /**
+     * Decodes node from file. Every call creates new node object.
+     */
+    @Override
+    public Node<N> getNode(int id) {
+        byte[] bytes = read(nodeBytes, nodeOffsets.get(id), nodeOffsets.get(id + 1));
+        return new Node<>((N) codec.decode(new String(bytes, StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public int outDegree(int id) {
+        return outOffsets.get(id + 1) - outOffsets.get(id);
+    }
+
+    @Override
+    public int inDegree(int id) {
+        return inOffsets.get(id + 1) - inOffsets.get(id);
+    }
+
+    @Override
+    public int neighbour(int id, int i) {
+        int out = outDegree(id);
+        if (i < out) {
+            return targets.get(outOffsets.get(id) + i);
+        }
+        return sources.get(inOffsets.get(id) + i - out);
+    }
+
+    @Override
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Transpose shares mapped file with this graph.
+     */
+    @Override
+    public Graph<N, E> getTranspose() {
+        if (transpose == null) {
+            transpose = new MappedGraph<>(this);
+        }
+        return transpose;
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Node<N> node, Random rand) {
+        int id = getId(node);
+        if (id < 0 || degree(id) == 0) {
+            return Optional.empty();
+        }
+        int i = rand.nextInt(degree(id));
+        int out = outDegree(id);
+        if (i < out) {
+            return Optional.of(outEdge(id, outOffsets.get(id) + i));
+        }
+        return Optional.of(inEdge(id, inOffsets.get(id) + i - out));
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Random rand) {
+        if (edgeCount == 0) {
+            return Optional.empty();
+        }
+        int slot = rand.nextInt(edgeCount);
+        return Optional.of(outEdge(sourceOf(slot), slot));
+    }
+
+    private int sourceOf(int slot) {
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (outOffsets.get(mid) <= slot) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,97 @@
+package delma.graph;
+
+import delma.graph.Graph.Node;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This gives every distinct node a dense int id in the order they are
+ * interned. Ids stay stable until the dictionary is cleared and first interned
+ * instance of node is kept as canonical one so that equal labels are stored
+ * only once.
+ *
+ * @author delma
+ * @param <N> Node label
+ */
+public class NodeDictionary<N> implements Iterable<Node<N>> {
+
+    private final Map<Node<N>, Integer> ids;
+    private final List<Node<N>> nodes;
+    private final List<Node<N>> view;
+
+    public NodeDictionary() {
+        this(16);
+    }
+
+    public NodeDictionary(int expectedSize) {
+        ids = new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+        nodes = new ArrayList<>(expectedSize);
+        view = Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Gives id to node if it doesn't have one already.
+     *
+     * @param node node to intern
+     * @return id of the node
+     */
+    public int intern(Node<N> node) {
+        Integer id = ids.get(node);
+        if (id == null) {
+            id = nodes.size();
+            ids.put(node, id);
+            nodes.add(node);
+        }
+        return id;
+    }
+
+    /**
+     * @param node node to intern
+     * @return canonical instance equal to node
+     */
+    public Node<N> canonical(Node<N> node) {
+        return nodes.get(intern(node));
+    }
+
+    /**
+     * @param node node to look up
+     * @return id of node or -1 if it hasn't been interned
+     */
+    public int getId(Node<N> node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    public Node<N> getNode(int id) {
+        return nodes.get(id);
+    }
+
+    public boolean contains(Node<N> node) {
+        return ids.containsKey(node);
+    }
+
+    /**
+     * @return read-only list of interned nodes indexed by their ids
+     */
+    public List<Node<N>> getNodes() {
+        return view;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public void clear() {
+        ids.clear();
+        nodes.clear();
+    }
+
+    @Override
+    public Iterator<Node<N>> iterator() {
+        return view.iterator();
+    }
+}
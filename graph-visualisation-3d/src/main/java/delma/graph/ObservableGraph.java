@@ -0,0 +1,276 @@
+package delma.graph;
+
+import delma.graph.GraphDelta.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * This wraps graph and publishes its mutations as batched
+ * {@link GraphDelta}s to subscribers, so they can update their own state in
+ * proportion to changes instead of rebuilding it.
+ *
+ * Only changes that actually modify wrapped graph are recorded. Adding edge
+ * records its new endpoints first and removing node records removal of its
+ * edges first, so replaying delta never relies on implicit changes. Changes
+ * are delivered when {@link #flush()} is called or batch gets full. Nothing is
+ * recorded while there are no subscribers. Changes done through
+ * {@link #getTranspose()} are recorded too.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+public class ObservableGraph<N, E> implements Graph<N, E> {
+
+    private static final int DEFAULT_BATCH = 4096;
+
+    private final Graph<N, E> graph;
+    private final List<Consumer<GraphDelta<N, E>>> subscribers;
+    private final int batch;
+    private final Graph<N, E> transpose;
+    private byte[] types;
+    private Object[] targets;
+    private int pending;
+    private long sequence;
+
+    public ObservableGraph(Graph<N, E> graph) {
+        this(graph, DEFAULT_BATCH);
+    }
+
+    public ObservableGraph(Graph<N, E> graph, int batch) {
+        this.graph = graph;
+        this.batch = batch;
+        subscribers = new CopyOnWriteArrayList<>();
+        transpose = new TransposedGraph<>(this);
+        types = new byte[16];
+        targets = new Object[16];
+    }
+
+    /**
+     * @return graph changes are forwarded to
+     */
+    public Graph<N, E> unwrap() {
+        return graph;
+    }
+
+    public void subscribe(Consumer<GraphDelta<N, E>> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public boolean unsubscribe(Consumer<GraphDelta<N, E>> subscriber) {
+        return subscribers.remove(subscriber);
+    }
+
+    /**
+     * Delivers pending changes to subscribers.
+     */
+    public void flush() {
+        if (pending == 0) {
+            return;
+        }
+        GraphDelta<N, E> delta = new GraphDelta<>(sequence++, types, targets, pending);
+        Arrays.fill(targets, 0, pending, null);
+        pending = 0;
+        subscribers.forEach(s -> s.accept(delta));
+    }
+
+    private void record(Type type, Object target) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        if (pending == types.length) {
+            int length = Math.max(16, Math.min(pending * 2, batch));
+            types = Arrays.copyOf(types, length);
+            targets = Arrays.copyOf(targets, length);
+        }
+        types[pending] = (byte) type.ordinal();
+        targets[pending] = target;
+        pending++;
+        if (pending >= batch) {
+            flush();
+        }
+    }
+
+    @Override
+    public void add(Node<N> node) {
+        if (graph.contains(node)) {
+            return;
+        }
+        graph.add(node);
+        record(Type.ADD_NODE, node);
+    }
+
+    @Override
+    public void add(Edge<N, E> edge) {
+        add(edge.getFrom());
+        add(edge.getTo());
+        int count = graph.edgeCount();
+        graph.add(edge);
+        if (graph.edgeCount() != count) {
+            record(Type.ADD_EDGE, edge);
+        }
+    }
+
+    @Override
+    public void add(Edge<N, E> edge, boolean directionless) {
+        add(edge);
+    }
+
+    @Override
+    public void add(Graph<N, E> graph) {
+        graph.getNodes().forEach(this::add);
+        graph.getEdges().forEach(this::add);
+    }
+
+    @Override
+    public boolean remove(Node<N> node) {
+        if (!graph.contains(node)) {
+            return false;
+        }
+        new ArrayList<>(graph.getNeighbourEdges(node)).forEach(this::remove);
+        graph.remove(node);
+        record(Type.REMOVE_NODE, node);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Edge<N, E> edge) {
+        if (!graph.remove(edge)) {
+            return false;
+        }
+        record(Type.REMOVE_EDGE, edge);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Graph<N, E> graph) {
+        boolean changed = false;
+        for (Edge<N, E> edge : graph == this || graph == this.graph ? new ArrayList<>(graph.getEdges()) : graph.getEdges()) {
+            changed |= remove(edge);
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        graph.clear();
+        record(Type.CLEAR, null);
+    }
+
+    @Override
+    public void setNodes(Collection<Node<N>> nodes) {
+        nodes.forEach(this::add);
+    }
+
+    @Override
+    public void setEdges(Collection<Edge<N, E>> edges) {
+        edges.forEach(this::add);
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getNeighbourEdges(Node<N> node) {
+        return graph.getNeighbourEdges(node);
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getOutEdges(Node<N> node) {
+        return graph.getOutEdges(node);
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getInEdges(Node<N> node) {
+        return graph.getInEdges(node);
+    }
+
+    @Override
+    public Collection<Node<N>> getNeighbourNodes(Node<N> node) {
+        return graph.getNeighbourNodes(node);
+    }
+
+    @Override
+    public void forEachNeighbour(Node<N> node, Consumer<Node<N>> action) {
+        graph.forEachNeighbour(node, action);
+    }
+
+    @Override
+    public void forEachNeighbour(int id, IntConsumer action) {
+        graph.forEachNeighbour(id, action);
+    }
+
+    @Override
+    public Collection<Node<N>> getNodes() {
+        return graph.getNodes();
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getEdges() {
+        return graph.getEdges();
+    }
+
+    @Override
+    public int edgeCount() {
+        return graph.edgeCount();
+    }
+
+    @Override
+    public Graph<N, E> getTranspose() {
+        return transpose;
+    }
+
+    @Override
+    public boolean contains(Node<N> node) {
+        return graph.contains(node);
+    }
+
+    @Override
+    public int getId(Node<N> node) {
+        return graph.getId(node);
+    }
+
+    @Override
+    public Node<N> getNode(int id) {
+        return graph.getNode(id);
+    }
+
+    @Override
+    public int size() {
+        return graph.size();
+    }
+
+    @Override
+    public Node<N> getRandomNode(Random rand) {
+        return graph.getRandomNode(rand);
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Node<N> node, Random rand) {
+        return graph.getRandomEdge(node, rand);
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Random rand) {
+        return graph.getRandomEdge(rand);
+    }
+
+    @Override
+    public Collection<Graph<N, E>> getSubgraphs() {
+        return graph.getSubgraphs();
+    }
+
+    @Override
+    public int componentCount() {
+        return graph.componentCount();
+    }
+
+    @Override
+    public Node<N> getComponent(Node<N> node) {
+        return graph.getComponent(node);
+    }
+}
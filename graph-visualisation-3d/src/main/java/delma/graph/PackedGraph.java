@@ -0,0 +1,601 @@
+package delma.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * This is immutable graph stored compactly in file and read through memory
+ * mapping.
+ *
+ * Labels of nodes and edges are kept in one dictionary where every distinct
+ * label is stored once: node with id i has i:th entry and edge labels follow
+ * nodes. Edges of every node are sorted by neighbour and stored as
+ * differences to previous neighbour followed by dictionary index of label,
+ * both as variable length integers, so most edges take two or three bytes in
+ * each direction. Positions and velocities of nodes can be stored with the
+ * graph along with set of nodes that have them. File has CRC32 checksum of
+ * everything after header which is checked when file is opened.
+ *
+ * Edges of node are decoded from start of its block, so
+ * {@link #neighbour(int, int)} takes time in proportion to i. Walking
+ * neighbours with {@link #forEachNeighbour(int, IntConsumer)} decodes every
+ * edge once and allocates nothing.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+public class PackedGraph<N, E> extends ImmutableGraph<N, E> {
+
+    private static final int MAGIC = 0x47565047;
+    private static final int VERSION = 1;
+    private static final int HAS_LAYOUT = 1;
+
+    private static final int LABEL_OFFSETS = 0;
+    private static final int LABEL_BYTES = 1;
+    private static final int NODE_HASHES = 2;
+    private static final int NODE_TABLE = 3;
+    private static final int OUT_INDEX = 4;
+    private static final int OUT_ADJACENCY = 5;
+    private static final int IN_INDEX = 6;
+    private static final int IN_ADJACENCY = 7;
+    private static final int LAYOUT = 8;
+    private static final int LAID_OUT = 9;
+    private static final int SECTIONS = 10;
+
+    private static final int HEADER = 6 * Integer.BYTES + Long.BYTES + SECTIONS * 2 * Long.BYTES;
+    private static final int LABEL_CACHE = 1024;
+    private static final int CHECKSUM_WINDOW = 1 << 28;
+
+    /**
+     * How many floats layout has for every node: position followed by
+     * velocity.
+     */
+    public static final int LAYOUT_FLOATS = 6;
+
+    private final int size;
+    private final int edgeCount;
+    private final IntBuffer labelOffsets;
+    private final ByteBuffer labelBytes;
+    private final IntBuffer nodeHashes;
+    private final IntBuffer nodeTable;
+    private final IntBuffer outIndex;
+    private final ByteBuffer outAdjacency;
+    private final IntBuffer inIndex;
+    private final ByteBuffer inAdjacency;
+    private final FloatBuffer layout;
+    private final IntBuffer laidOut;
+    private final AtomicReferenceArray<Object> labelCache;
+    private final LabelCodec codec;
+    private PackedGraph<N, E> transpose;
+    private int[] firstSlots;
+
+    private PackedGraph(FileChannel channel, LabelCodec codec) throws IOException {
+        this.codec = codec;
+        long fileSize = channel.size();
+        if (fileSize < HEADER) {
+            throw new IOException("File is too short to be packed graph");
+        }
+        ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("File isn't packed graph");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported packed graph version " + version);
+        }
+        int flags = header.getInt();
+        size = header.getInt();
+        edgeCount = header.getInt();
+        int labelCount = header.getInt();
+        long checksum = header.getLong();
+        if (checksum(channel, fileSize) != checksum) {
+            throw new IOException("Checksum of packed graph doesn't match");
+        }
+        ByteBuffer[] sections = new ByteBuffer[SECTIONS];
+        for (int i = 0; i < SECTIONS; i++) {
+            long position = header.getLong();
+            long length = header.getLong();
+            if (position < HEADER || length > Integer.MAX_VALUE || position + length > fileSize) {
+                throw new IOException("Section " + i + " of packed graph is out of file");
+            }
+            sections[i] = channel.map(MapMode.READ_ONLY, position, length);
+        }
+        labelOffsets = sections[LABEL_OFFSETS].asIntBuffer();
+        labelBytes = sections[LABEL_BYTES];
+        nodeHashes = sections[NODE_HASHES].asIntBuffer();
+        nodeTable = sections[NODE_TABLE].asIntBuffer();
+        outIndex = sections[OUT_INDEX].asIntBuffer();
+        outAdjacency = sections[OUT_ADJACENCY];
+        inIndex = sections[IN_INDEX].asIntBuffer();
+        inAdjacency = sections[IN_ADJACENCY];
+        layout = (flags & HAS_LAYOUT) != 0 ? sections[LAYOUT].asFloatBuffer() : null;
+        laidOut = (flags & HAS_LAYOUT) != 0 ? sections[LAID_OUT].asIntBuffer() : null;
+        if (outIndex.capacity() != size + 1 || inIndex.capacity() != size + 1
+                || labelOffsets.capacity() != labelCount + 1 || labelCount < size
+                || (layout != null && (layout.capacity() != size * LAYOUT_FLOATS
+                || laidOut.capacity() != (size + 31) / 32))) {
+            throw new IOException("Packed graph is corrupted");
+        }
+        int edgeLabels = labelCount - size;
+        labelCache = edgeLabels <= LABEL_CACHE ? new AtomicReferenceArray<>(edgeLabels) : null;
+    }
+
+    private PackedGraph(PackedGraph<N, E> original) {
+        size = original.size;
+        edgeCount = original.edgeCount;
+        labelOffsets = original.labelOffsets;
+        labelBytes = original.labelBytes;
+        nodeHashes = original.nodeHashes;
+        nodeTable = original.nodeTable;
+        outIndex = original.inIndex;
+        outAdjacency = original.inAdjacency;
+        inIndex = original.outIndex;
+        inAdjacency = original.outAdjacency;
+        layout = original.layout;
+        laidOut = original.laidOut;
+        labelCache = original.labelCache;
+        codec = original.codec;
+        transpose = original;
+    }
+
+    private static long checksum(FileChannel channel, long fileSize) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long position = HEADER; position < fileSize; position += CHECKSUM_WINDOW) {
+            crc.update(channel.map(MapMode.READ_ONLY, position, Math.min(CHECKSUM_WINDOW, fileSize - position)));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Maps graph written with {@link JsonLabelCodec}.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param path file to map
+     * @return graph backed by the file
+     * @throws IOException if file can't be read, isn't packed graph or its
+     * checksum doesn't match
+     */
+    public static <N, E> PackedGraph<N, E> open(Path path) throws IOException {
+        return open(path, JsonLabelCodec.INSTANCE);
+    }
+
+    /**
+     * Maps graph written by {@link #write(Graph, Path, Function, LabelCodec)}.
+     * Mapping stays valid after file is closed.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param path file to map
+     * @param codec codec labels were written with
+     * @return graph backed by the file
+     * @throws IOException if file can't be read, isn't packed graph or its
+     * checksum doesn't match
+     */
+    public static <N, E> PackedGraph<N, E> open(Path path, LabelCodec codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new PackedGraph<>(channel, codec.forLoad());
+        }
+    }
+
+    /**
+     * Writes graph without layout.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param graph graph to write
+     * @param path file to write to
+     * @throws IOException if writing fails or graph is too large
+     */
+    public static <N, E> void write(Graph<N, E> graph, Path path) throws IOException {
+        write(graph, path, null);
+    }
+
+    /**
+     * Writes graph with labels encoded by {@link JsonLabelCodec}.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param graph graph to write
+     * @param path file to write to
+     * @param layout layout as in
+     * {@link #write(Graph, Path, Function, LabelCodec)}
+     * @throws IOException if writing fails or graph is too large
+     */
+    public static <N, E> void write(Graph<N, E> graph, Path path, Function<Node<N>, float[]> layout) throws IOException {
+        write(graph, path, layout, JsonLabelCodec.INSTANCE);
+    }
+
+    /**
+     * Writes graph to file in format that can be mapped by
+     * {@link #open(Path, LabelCodec)}.
+     *
+     * @param <N> Node label
+     * @param <E> Edge label
+     * @param graph graph to write
+     * @param path file to write to
+     * @param layout gives position and velocity of node as
+     * {@link #LAYOUT_FLOATS} floats or null if node has none, null if no
+     * layout is stored
+     * @param codec encodes labels of nodes and edges
+     * @throws IOException if writing fails or graph is too large
+     */
+    public static <N, E> void write(Graph<N, E> graph, Path path, Function<Node<N>, float[]> layout,
+            LabelCodec codec) throws IOException {
+        CsrGraph<N, E> csr = graph instanceof CsrGraph ? (CsrGraph<N, E>) graph : new CsrGraph<>(graph);
+        int size = csr.size();
+        int edgeCount = csr.edgeCount();
+
+        Map<Object, Integer> labelIds = new HashMap<>();
+        List<Object> labels = new ArrayList<>();
+        int[] labelCodes = new int[edgeCount];
+        for (int slot = 0; slot < edgeCount; slot++) {
+            Object label = csr.label(slot);
+            labelCodes[slot] = label == null ? 0 : 1 + labelIds.computeIfAbsent(label, l -> {
+                labels.add(l);
+                return labels.size() - 1;
+            });
+        }
+        int[] hashes = new int[size];
+        for (int id = 0; id < size; id++) {
+            hashes[id] = csr.getNode(id).hashCode();
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SectionOutput out = new SectionOutput(channel, HEADER, SECTIONS);
+            int[] offsets = new int[size + labels.size() + 1];
+            out.begin(LABEL_BYTES);
+            for (int id = 0; id < size; id++) {
+                offsets[id] = out.length();
+                out.put(codec.encode(csr.getNode(id).getLabel()).getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < labels.size(); i++) {
+                offsets[size + i] = out.length();
+                out.put(codec.encode(labels.get(i)).getBytes(StandardCharsets.UTF_8));
+            }
+            offsets[size + labels.size()] = out.length();
+            out.end();
+            out.section(LABEL_OFFSETS, offsets);
+            out.section(NODE_HASHES, hashes);
+            out.section(NODE_TABLE, hashTable(hashes));
+
+            writeAdjacency(out, OUT_INDEX, OUT_ADJACENCY, csr.outOffsets(), csr.targets(), slot -> labelCodes[slot]);
+            int[] inEdges = csr.inEdges();
+            writeAdjacency(out, IN_INDEX, IN_ADJACENCY, csr.inOffsets(), csr.sources(), inSlot -> labelCodes[inEdges[inSlot]]);
+
+            out.begin(LAYOUT);
+            int[] laidOut = new int[layout != null ? (size + 31) / 32 : 0];
+            if (layout != null) {
+                for (int id = 0; id < size; id++) {
+                    float[] values = layout.apply(csr.getNode(id));
+                    if (values != null) {
+                        laidOut[id >>> 5] |= 1 << id;
+                    }
+                    for (int i = 0; i < LAYOUT_FLOATS; i++) {
+                        out.putFloat(values == null ? 0 : values[i]);
+                    }
+                }
+            }
+            out.end();
+            out.section(LAID_OUT, laidOut);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putInt(layout != null ? HAS_LAYOUT : 0)
+                    .putInt(size).putInt(edgeCount).putInt(size + labels.size())
+                    .putLong(out.checksum());
+            for (long value : out.sections()) {
+                header.putLong(value);
+            }
+            header.flip();
+            out.finish(header);
+        }
+    }
+
+    /**
+     * Writes block of every node: degree followed by neighbour differences and
+     * label codes sorted by neighbour. Index gets position of every block.
+     */
+    private static void writeAdjacency(SectionOutput out, int index, int adjacency,
+            int[] offsets, int[] neighbours, IntUnaryOperator labelCodes) throws IOException {
+        int size = offsets.length - 1;
+        int[] positions = new int[size + 1];
+        long[] pairs = new long[16];
+        out.begin(adjacency);
+        for (int id = 0; id < size; id++) {
+            positions[id] = out.length();
+            int degree = offsets[id + 1] - offsets[id];
+            if (pairs.length < degree) {
+                pairs = new long[Math.max(degree, pairs.length * 2)];
+            }
+            for (int i = 0; i < degree; i++) {
+                int slot = offsets[id] + i;
+                pairs[i] = (long) neighbours[slot] << 32 | labelCodes.applyAsInt(slot);
+            }
+            Arrays.sort(pairs, 0, degree);
+            out.putVarint(degree);
+            int previous = 0;
+            for (int i = 0; i < degree; i++) {
+                int neighbour = (int) (pairs[i] >>> 32);
+                out.putVarint(neighbour - previous);
+                out.putVarint((int) pairs[i]);
+                previous = neighbour;
+            }
+        }
+        positions[size] = out.length();
+        out.end();
+        out.section(index, positions);
+    }
+
+    /**
+     * Decodes variable length integer.
+     *
+     * @return value in high half and position after it in low half
+     */
+    private static long varint(ByteBuffer buffer, int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (long) value << 32 | position;
+    }
+
+    private static int value(long varint) {
+        return (int) (varint >>> 32);
+    }
+
+    private static int next(long varint) {
+        return (int) varint;
+    }
+
+    private String entry(int index) {
+        int from = labelOffsets.get(index);
+        byte[] bytes = new byte[labelOffsets.get(index + 1) - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = labelBytes.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private E edgeLabel(int code) {
+        if (code == 0) {
+            return null;
+        }
+        if (labelCache == null) {
+            return (E) codec.decode(entry(size + code - 1));
+        }
+        Object label = labelCache.get(code - 1);
+        if (label == null) {
+            label = codec.decode(entry(size + code - 1));
+            if (!labelCache.compareAndSet(code - 1, null, label)) {
+                label = labelCache.get(code - 1);
+            }
+        }
+        return (E) label;
+    }
+
+    private List<Edge<N, E>> edges(ByteBuffer adjacency, IntBuffer index, int id, boolean out) {
+        long varint = varint(adjacency, index.get(id));
+        int degree = value(varint);
+        int position = next(varint);
+        List<Edge<N, E>> result = new ArrayList<>(degree);
+        Node<N> node = getNode(id);
+        int neighbour = 0;
+        for (int i = 0; i < degree; i++) {
+            varint = varint(adjacency, position);
+            neighbour += value(varint);
+            varint = varint(adjacency, next(varint));
+            position = next(varint);
+            Node<N> other = getNode(neighbour);
+            E label = edgeLabel(value(varint));
+            result.add(out ? new Edge<>(node, other, label) : new Edge<>(other, node, label));
+        }
+        return result;
+    }
+
+    @Override
+    List<Edge<N, E>> outEdges(int id) {
+        return edges(outAdjacency, outIndex, id, true);
+    }
+
+    @Override
+    List<Edge<N, E>> inEdges(int id) {
+        return edges(inAdjacency, inIndex, id, false);
+    }
+
+    private static int neighbour(ByteBuffer adjacency, IntBuffer index, int id, int i) {
+        int position = next(varint(adjacency, index.get(id)));
+        int neighbour = 0;
+        for (int k = 0; k <= i; k++) {
+            long varint = varint(adjacency, position);
+            neighbour += value(varint);
+            position = next(varint(adjacency, next(varint)));
+        }
+        return neighbour;
+    }
+
+    private static void forEach(ByteBuffer adjacency, IntBuffer index, int id, IntConsumer action) {
+        long varint = varint(adjacency, index.get(id));
+        int degree = value(varint);
+        int position = next(varint);
+        int neighbour = 0;
+        for (int i = 0; i < degree; i++) {
+            varint = varint(adjacency, position);
+            neighbour += value(varint);
+            position = next(varint(adjacency, next(varint)));
+            action.accept(neighbour);
+        }
+    }
+
+    @Override
+    public int getId(Node<N> node) {
+        return find(nodeTable, nodeHashes, node);
+    }
+
+    /**
+     * Decodes node from file. Every call creates new node object.
+     */
+    @Override
+    public Node<N> getNode(int id) {
+        return new Node<>((N) codec.decode(entry(id)));
+    }
+
+    @Override
+    public int outDegree(int id) {
+        return value(varint(outAdjacency, outIndex.get(id)));
+    }
+
+    @Override
+    public int inDegree(int id) {
+        return value(varint(inAdjacency, inIndex.get(id)));
+    }
+
+    @Override
+    public int neighbour(int id, int i) {
+        int out = outDegree(id);
+        if (i < out) {
+            return neighbour(outAdjacency, outIndex, id, i);
+        }
+        return neighbour(inAdjacency, inIndex, id, i - out);
+    }
+
+    @Override
+    public void forEachNeighbour(int id, IntConsumer action) {
+        forEach(outAdjacency, outIndex, id, action);
+        forEach(inAdjacency, inIndex, id, action);
+    }
+
+    @Override
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return whether positions and velocities of nodes were stored
+     */
+    public boolean hasLayout() {
+        return layout != null;
+    }
+
+    /**
+     * @param id node id
+     * @return whether position and velocity were stored for node, false for
+     * nodes that had none when written
+     */
+    public boolean hasLayout(int id) {
+        return laidOut != null && (laidOut.get(id >>> 5) & 1 << id) != 0;
+    }
+
+    /**
+     * @param id node id
+     * @param i index between 0 and {@link #LAYOUT_FLOATS}: x, y and z of
+     * position followed by x, y and z of velocity
+     * @return stored value, zero for nodes without layout
+     */
+    public float getLayout(int id, int i) {
+        return layout.get(id * LAYOUT_FLOATS + i);
+    }
+
+    /**
+     * Adds all nodes and edges to graph through its bulk path. Structure is
+     * decoded straight to id arrays without creating edge objects here, so
+     * this costs about as much as bulk add of graph itself, unlike
+     * {@link #open(Path)} which only maps file. Edge labels may be decoded
+     * from several threads at once.
+     *
+     * @param graph graph to add to
+     */
+    public void addTo(Graph<N, E> graph) {
+        List<Node<N>> nodes = new ArrayList<>(size);
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        int[] codes = new int[edgeCount];
+        int slot = 0;
+        for (int id = 0; id < size; id++) {
+            nodes.add(getNode(id));
+            long varint = varint(outAdjacency, outIndex.get(id));
+            int degree = value(varint);
+            int position = next(varint);
+            int neighbour = 0;
+            for (int i = 0; i < degree; i++) {
+                varint = varint(outAdjacency, position);
+                neighbour += value(varint);
+                varint = varint(outAdjacency, next(varint));
+                position = next(varint);
+                from[slot] = id;
+                to[slot] = neighbour;
+                codes[slot++] = value(varint);
+            }
+        }
+        graph.addAllParallel(nodes, from, to, i -> edgeLabel(codes[i]));
+    }
+
+    /**
+     * Transpose shares mapped file with this graph.
+     */
+    @Override
+    public Graph<N, E> getTranspose() {
+        if (transpose == null) {
+            transpose = new PackedGraph<>(this);
+        }
+        return transpose;
+    }
+
+    /**
+     * Position of first edge of every node is kept on heap after first call.
+     */
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Random rand) {
+        if (edgeCount == 0) {
+            return Optional.empty();
+        }
+        if (firstSlots == null) {
+            int[] slots = new int[size + 1];
+            for (int id = 0; id < size; id++) {
+                slots[id + 1] = slots[id] + outDegree(id);
+            }
+            firstSlots = slots;
+        }
+        int slot = rand.nextInt(edgeCount);
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firstSlots[mid] <= slot) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return Optional.of(outEdges(low).get(slot - firstSlots[low]));
+    }
+}
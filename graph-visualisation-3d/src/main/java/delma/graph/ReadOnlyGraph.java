@@ -0,0 +1,64 @@
+package delma.graph;
+
+import java.util.Collection;
+
+/**
+ * This is base of graphs that can't be changed. Every mutation throws
+ * {@link UnsupportedOperationException}.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+abstract class ReadOnlyGraph<N, E> implements Graph<N, E> {
+
+    @Override
+    public void add(Node<N> node) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    @Override
+    public void add(Edge<N, E> edge) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    @Override
+    public void add(Edge<N, E> edge, boolean directionless) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    @Override
+    public void add(Graph<N, E> graph) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    @Override
+    public boolean remove(Node<N> node) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    @Override
+    public boolean remove(Edge<N, E> edge) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    @Override
+    public boolean remove(Graph<N, E> graph) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    @Override
+    public void setNodes(Collection<Node<N>> nodes) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    @Override
+    public void setEdges(Collection<Edge<N, E>> edges) {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Graph is immutable");
+    }
+}
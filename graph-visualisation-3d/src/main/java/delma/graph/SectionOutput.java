@@ -0,0 +1,173 @@
+package delma.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * This writes file made of sections that are mapped separately when file is
+ * read. Sections go through one reused buffer and header is written last,
+ * when positions of all sections are known. Sections are aligned to 8 bytes
+ * and everything after header is checksummed while written.
+ *
+ * @author delma
+ */
+class SectionOutput {
+
+    private static final int BUFFER = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CRC32 checksum;
+    private final int header;
+    private final long[] sections;
+    private long position;
+    private int current;
+
+    /**
+     * @param channel file to write to
+     * @param header how many bytes are reserved for header
+     * @param sections how many sections there are
+     * @throws IOException if file can't be positioned
+     */
+    SectionOutput(FileChannel channel, int header, int sections) throws IOException {
+        this.channel = channel;
+        this.header = header;
+        buffer = ByteBuffer.allocateDirect(BUFFER);
+        checksum = new CRC32();
+        this.sections = new long[sections * 2];
+        position = header;
+        channel.position(header);
+    }
+
+    void begin(int section) throws IOException {
+        while (position % Long.BYTES != 0) {
+            put((byte) 0);
+        }
+        current = section;
+        sections[section * 2] = position;
+    }
+
+    int length() throws IOException {
+        long length = position - sections[current * 2];
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Graph is too large to be mapped");
+        }
+        return (int) length;
+    }
+
+    void end() throws IOException {
+        sections[current * 2 + 1] = length();
+    }
+
+    void section(int section, int[] values) throws IOException {
+        begin(section);
+        for (int value : values) {
+            putInt(value);
+        }
+        end();
+    }
+
+    void put(byte value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put(value);
+        position++;
+    }
+
+    void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+        position += bytes.length;
+    }
+
+    void putInt(int value) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            drain();
+        }
+        buffer.putInt(value);
+        position += Integer.BYTES;
+    }
+
+    void putFloat(float value) throws IOException {
+        if (buffer.remaining() < Float.BYTES) {
+            drain();
+        }
+        buffer.putFloat(value);
+        position += Float.BYTES;
+    }
+
+    /**
+     * Writes non-negative value in as few bytes as possible, seven bits in
+     * every byte starting from the lowest ones. High bit tells whether more
+     * bytes follow.
+     *
+     * @param value value to write
+     * @throws IOException if writing fails
+     */
+    void putVarint(int value) throws IOException {
+        if (buffer.remaining() < 5) {
+            drain();
+        }
+        int start = buffer.position();
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+        position += buffer.position() - start;
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return position and length of every section one after another
+     */
+    long[] sections() {
+        return sections;
+    }
+
+    /**
+     * Writes rest of sections and given header to start of file.
+     *
+     * @param header header that fills space reserved for it
+     * @throws IOException if writing fails
+     */
+    void finish(ByteBuffer header) throws IOException {
+        drain();
+        if (header.remaining() != this.header) {
+            throw new IllegalArgumentException("Header has to be " + this.header + " bytes");
+        }
+        long at = 0;
+        while (header.hasRemaining()) {
+            at += channel.write(header, at);
+        }
+    }
+
+    /**
+     * Writes buffered bytes so that checksum covers all of them.
+     *
+     * @return CRC32 of everything written after header
+     * @throws IOException if writing fails
+     */
+    long checksum() throws IOException {
+        drain();
+        return checksum.getValue();
+    }
+}
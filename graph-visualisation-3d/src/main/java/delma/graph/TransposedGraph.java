@@ -0,0 +1,241 @@
+package delma.graph;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * This is view of graph with directions of all edges reversed. View costs
+ * nothing to create: outgoing edges of it are incoming edges of the wrapped
+ * graph and edges are flipped only when they are read. Changes done through
+ * view are flipped and done to the wrapped graph.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+public class TransposedGraph<N, E> implements Graph<N, E> {
+
+    private final Graph<N, E> graph;
+
+    public TransposedGraph(Graph<N, E> graph) {
+        this.graph = graph;
+    }
+
+    @Override
+    public void add(Node<N> node) {
+        graph.add(node);
+    }
+
+    @Override
+    public void add(Edge<N, E> edge) {
+        graph.add(Edge.flip(edge));
+    }
+
+    @Override
+    public void add(Edge<N, E> edge, boolean directionless) {
+        graph.add(Edge.flip(edge), directionless);
+    }
+
+    @Override
+    public void add(Graph<N, E> graph) {
+        graph.getNodes().forEach(this::add);
+        addAll(graph.getEdges());
+    }
+
+    @Override
+    public void addAll(Collection<Edge<N, E>> edges) {
+        graph.addAll(new Flipped<>(edges));
+    }
+
+    @Override
+    public void addAll(List<Node<N>> nodes, int[] from, int[] to, IntFunction<E> labels) {
+        graph.addAll(nodes, to, from, labels);
+    }
+
+    @Override
+    public void addAllParallel(List<Node<N>> nodes, int[] from, int[] to, IntFunction<E> labels) {
+        graph.addAllParallel(nodes, to, from, labels);
+    }
+
+    @Override
+    public boolean remove(Node<N> node) {
+        return graph.remove(node);
+    }
+
+    @Override
+    public boolean remove(Edge<N, E> edge) {
+        return graph.remove(Edge.flip(edge));
+    }
+
+    @Override
+    public boolean remove(Graph<N, E> graph) {
+        if (graph == this) {
+            return this.graph.remove(this.graph);
+        }
+        boolean changed = false;
+        for (Edge<N, E> edge : graph.getEdges()) {
+            changed |= remove(edge);
+        }
+        return changed;
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getNeighbourEdges(Node<N> node) {
+        return new Flipped<>(graph.getNeighbourEdges(node));
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getOutEdges(Node<N> node) {
+        return new Flipped<>(graph.getInEdges(node));
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getInEdges(Node<N> node) {
+        return new Flipped<>(graph.getOutEdges(node));
+    }
+
+    @Override
+    public Collection<Node<N>> getNeighbourNodes(Node<N> node) {
+        return graph.getNeighbourNodes(node);
+    }
+
+    @Override
+    public void forEachNeighbour(Node<N> node, Consumer<Node<N>> action) {
+        graph.forEachNeighbour(node, action);
+    }
+
+    @Override
+    public void forEachNeighbour(int id, IntConsumer action) {
+        graph.forEachNeighbour(id, action);
+    }
+
+    @Override
+    public void setNodes(Collection<Node<N>> nodes) {
+        graph.setNodes(nodes);
+    }
+
+    @Override
+    public Collection<Node<N>> getNodes() {
+        return graph.getNodes();
+    }
+
+    @Override
+    public void setEdges(Collection<Edge<N, E>> edges) {
+        graph.setEdges(new Flipped<>(edges));
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getEdges() {
+        return new Flipped<>(graph.getEdges());
+    }
+
+    @Override
+    public int edgeCount() {
+        return graph.edgeCount();
+    }
+
+    @Override
+    public Graph<N, E> getTranspose() {
+        return graph;
+    }
+
+    @Override
+    public boolean contains(Node<N> node) {
+        return graph.contains(node);
+    }
+
+    @Override
+    public int getId(Node<N> node) {
+        return graph.getId(node);
+    }
+
+    @Override
+    public Node<N> getNode(int id) {
+        return graph.getNode(id);
+    }
+
+    @Override
+    public int size() {
+        return graph.size();
+    }
+
+    @Override
+    public void clear() {
+        graph.clear();
+    }
+
+    @Override
+    public Node<N> getRandomNode(Random rand) {
+        return graph.getRandomNode(rand);
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Node<N> node, Random rand) {
+        return graph.getRandomEdge(node, rand).map(Edge::flip);
+    }
+
+    @Override
+    public Optional<Edge<N, E>> getRandomEdge(Random rand) {
+        return graph.getRandomEdge(rand).map(Edge::flip);
+    }
+
+    @Override
+    public Collection<Graph<N, E>> getSubgraphs() {
+        return graph.getSubgraphs().stream()
+                .map(g -> g.getTranspose())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public int componentCount() {
+        return graph.componentCount();
+    }
+
+    @Override
+    public Node<N> getComponent(Node<N> node) {
+        return graph.getComponent(node);
+    }
+
+    private static class Flipped<N, E> extends AbstractCollection<Edge<N, E>> {
+
+        private final Collection<Edge<N, E>> edges;
+
+        Flipped(Collection<Edge<N, E>> edges) {
+            this.edges = edges;
+        }
+
+        @Override
+        public Iterator<Edge<N, E>> iterator() {
+            Iterator<Edge<N, E>> it = edges.iterator();
+            return new Iterator<Edge<N, E>>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Edge<N, E> next() {
+                    return Edge.flip(it.next());
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            return object instanceof Edge && edges.contains(Edge.flip((Edge<N, E>) object));
+        }
+
+        @Override
+        public int size() {
+            return edges.size();
+        }
+    }
+}
@@ -0,0 +1,548 @@
+package delma.graph;
+
+import delma.graph.GraphVersion.Slot;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * This is directed graph that publishes its state as immutable versions.
+ *
+ * Writer mutates this graph like any other and calls {@link #publish()} when
+ * it wants readers to see changes. Readers pin version with
+ * {@link #current()} for one frame or layout pass and never see torn state.
+ *
+ * Nodes and edges are split in segments by hash. Publishing only copies
+ * arrays of segments, but first change to a segment after publish copies
+ * whole segment and first change to edges of a node copies its adjacency
+ * list. Few changes between publishes copy only segments they touch, a
+ * fraction of the graph each, while changes spread over every segment copy
+ * all of it.
+ *
+ * Mutations and publishing synchronize on this graph, reading current version
+ * doesn't. Collections returned by this graph are read-only views that
+ * synchronize too, and their iterators go through copy taken at once.
+ *
+ * @author delma
+ * @param <N> Node label
+ * @param <E> Edge label
+ */
+public class VersionedGraph<N, E> implements Graph<N, E> {
+
+    private GraphVersion<N, E> working;
+    private volatile GraphVersion<N, E> published;
+    private final boolean[] nodesOwned;
+    private final boolean[] edgesOwned;
+    private final Set<List<Edge<N, E>>> listsOwned;
+    private final Map<Node<N>, Integer> ids;
+    private final Graph<N, E> transpose;
+    private final Collection<Node<N>> nodeView;
+    private final Collection<Edge<N, E>> edgeView;
+    private long versions;
+    private boolean dirty;
+
+    public VersionedGraph() {
+        nodesOwned = new boolean[GraphVersion.SEGMENTS];
+        edgesOwned = new boolean[GraphVersion.SEGMENTS];
+        listsOwned = Collections.newSetFromMap(new IdentityHashMap<>());
+        ids = new HashMap<>();
+        transpose = new TransposedGraph<>(this);
+        nodeView = new LockedView<>(() -> working.getNodes());
+        edgeView = new LockedView<>(() -> working.getEdges());
+        working = empty();
+        published = working.freeze(versions);
+        Arrays.fill(nodesOwned, false);
+        Arrays.fill(edgesOwned, false);
+    }
+
+    private GraphVersion<N, E> empty() {
+        Map<Node<N>, Slot<N, E>>[] nodes = new Map[GraphVersion.SEGMENTS];
+        Set<Edge<N, E>>[] edges = new Set[GraphVersion.SEGMENTS];
+        for (int i = 0; i < GraphVersion.SEGMENTS; i++) {
+            nodes[i] = new HashMap<>();
+            edges[i] = new HashSet<>();
+        }
+        Arrays.fill(nodesOwned, true);
+        Arrays.fill(edgesOwned, true);
+        return new GraphVersion<>(nodes, edges, new Node[1][], versions, false);
+    }
+
+    /**
+     * @return latest published version
+     */
+    public GraphVersion<N, E> current() {
+        return published;
+    }
+
+    /**
+     * Makes changes done since last publish visible to readers.
+     *
+     * @return new current version
+     */
+    public synchronized GraphVersion<N, E> publish() {
+        if (!dirty) {
+            return published;
+        }
+        published = working.freeze(++versions);
+        Arrays.fill(nodesOwned, false);
+        Arrays.fill(edgesOwned, false);
+        listsOwned.clear();
+        dirty = false;
+        return published;
+    }
+
+    private Map<Node<N>, Slot<N, E>> nodeSegment(Node<N> node) {
+        int i = GraphVersion.segment(node);
+        if (!nodesOwned[i]) {
+            working.nodes[i] = new HashMap<>(working.nodes[i]);
+            nodesOwned[i] = true;
+        }
+        return working.nodes[i];
+    }
+
+    private Set<Edge<N, E>> edgeSegment(Edge<N, E> edge) {
+        return edgeSegment(GraphVersion.segment(edge));
+    }
+
+    private Set<Edge<N, E>> edgeSegment(int i) {
+        if (!edgesOwned[i]) {
+            working.edges[i] = new HashSet<>(working.edges[i]);
+            edgesOwned[i] = true;
+        }
+        return working.edges[i];
+    }
+
+    private List<Edge<N, E>> ownedEdges(Node<N> node) {
+        return ownedSlot(node).edges;
+    }
+
+    private Slot<N, E> ownedSlot(Node<N> node) {
+        Map<Node<N>, Slot<N, E>> segment = nodeSegment(node);
+        Slot<N, E> slot = segment.get(node);
+        if (!listsOwned.contains(slot.edges)) {
+            slot = new Slot<>(slot.id, new ArrayList<>(slot.edges));
+            segment.put(node, slot);
+            listsOwned.add(slot.edges);
+        }
+        return slot;
+    }
+
+    private int appendId(Node<N> node) {
+        int id = working.idCount;
+        int chunk = id >>> GraphVersion.CHUNK_BITS;
+        if (chunk == working.chunks.length) {
+            working.chunks = Arrays.copyOf(working.chunks, chunk * 2);
+        }
+        if (working.chunks[chunk] == null) {
+            working.chunks[chunk] = new Node[GraphVersion.CHUNK];
+        }
+        working.chunks[chunk][id & (GraphVersion.CHUNK - 1)] = node;
+        working.idCount++;
+        return id;
+    }
+
+    @Override
+    public synchronized void add(Node<N> node) {
+        if (!working.contains(node)) {
+            slot(node);
+        }
+    }
+
+    /**
+     * @return slot of node, which is added if it isn't in graph yet
+     */
+    private Slot<N, E> slot(Node<N> node) {
+        Map<Node<N>, Slot<N, E>> segment = nodeSegment(node);
+        Slot<N, E> slot = segment.get(node);
+        if (slot == null) {
+            slot = new Slot<>(ids.computeIfAbsent(node, this::appendId), new ArrayList<>());
+            listsOwned.add(slot.edges);
+            segment.put(node, slot);
+            working.size++;
+            dirty = true;
+        }
+        return slot;
+    }
+
+    @Override
+    public synchronized void add(Edge<N, E> edge) {
+        if (working.getEdges().contains(edge)) {
+            return;
+        }
+        edgeSegment(edge).add(edge);
+        working.edgeCount++;
+        add(edge.getFrom());
+        add(edge.getTo());
+        ownedEdges(edge.getFrom()).add(edge);
+        if (!edge.getFrom().equals(edge.getTo())) {
+            ownedEdges(edge.getTo()).add(edge);
+        }
+        dirty = true;
+    }
+
+    @Override
+    public void add(Edge<N, E> edge, boolean directionless) {
+        add(edge);
+    }
+
+    @Override
+    public synchronized void add(Graph<N, E> graph) {
+        graph.getNodes().forEach(this::add);
+        addAll(graph.getEdges());
+    }
+
+    @Override
+    public void addAll(Collection<Edge<N, E>> edges) {
+        Edge<N, E>[] batch = edges.toArray(new Edge[edges.size()]);
+        Map<Node<N>, Integer> indices = new HashMap<>();
+        List<Node<N>> nodes = new ArrayList<>();
+        int[] from = new int[batch.length];
+        int[] to = new int[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            from[i] = index(batch[i].getFrom(), indices, nodes);
+            to[i] = index(batch[i].getTo(), indices, nodes);
+        }
+        insertAll(nodes, batch, from, to, false);
+    }
+
+    private static <N> int index(Node<N> node, Map<Node<N>, Integer> indices, List<Node<N>> nodes) {
+        Integer index = indices.putIfAbsent(node, nodes.size());
+        if (index == null) {
+            nodes.add(node);
+            return nodes.size() - 1;
+        }
+        return index;
+    }
+
+    @Override
+    public void addAll(List<Node<N>> nodes, int[] from, int[] to, IntFunction<E> labels) {
+        insertAll(nodes, edges(nodes, from, to, labels, false), from, to, false);
+    }
+
+    /**
+     * Edges are built and inserted by many threads. Edge segments and
+     * adjacency lists are split between threads so that none of them is
+     * shared, only adding nodes, which gives them their ids, is sequential.
+     */
+    @Override
+    public void addAllParallel(List<Node<N>> nodes, int[] from, int[] to, IntFunction<E> labels) {
+        insertAll(nodes, edges(nodes, from, to, labels, true), from, to, true);
+    }
+
+    private static <N, E> Edge<N, E>[] edges(List<Node<N>> nodes, int[] from, int[] to, IntFunction<E> labels, boolean parallel) {
+        Edge<N, E>[] batch = new Edge[from.length];
+        range(batch.length, parallel)
+                .forEach(i -> batch[i] = new Edge<>(nodes.get(from[i]), nodes.get(to[i]), labels == null ? null : labels.apply(i)));
+        return batch;
+    }
+
+    private static IntStream range(int end, boolean parallel) {
+        IntStream range = IntStream.range(0, end);
+        return parallel ? range.parallel() : range;
+    }
+
+    /**
+     * Adds batch in one pass instead of edge by edge. Every touched segment
+     * is copied at most once, empty segments and adjacency lists are sized
+     * for batch up front and edges are put to adjacency lists of their
+     * nodes by index instead of looking nodes up again.
+     *
+     * @param nodes endpoints of edges and nodes to add even without edges
+     * @param batch edges to add
+     * @param from index of source node of every edge
+     * @param to index of target node of every edge
+     * @param parallel whether edges are inserted by many threads
+     */
+    private synchronized void insertAll(List<Node<N>> nodes, Edge<N, E>[] batch, int[] from, int[] to, boolean parallel) {
+        Slot<N, E>[] slots = new Slot[nodes.size()];
+        for (int k = 0; k < slots.length; k++) {
+            slots[k] = slot(nodes.get(k));
+        }
+        int[] owners = owners(slots);
+
+        boolean[] added = insertEdges(batch, parallel);
+        int[] starts = new int[slots.length + 1];
+        for (int i = 0; i < batch.length; i++) {
+            if (added[i]) {
+                starts[owners[from[i]] + 1]++;
+                if (owners[from[i]] != owners[to[i]]) {
+                    starts[owners[to[i]] + 1]++;
+                }
+            }
+        }
+        for (int k = 0; k < slots.length; k++) {
+            if (starts[k + 1] > 0 && !listsOwned.contains(slots[k].edges)) {
+                slots[k] = ownedSlot(nodes.get(k));
+            }
+            starts[k + 1] += starts[k];
+        }
+        int[] incident = new int[starts[slots.length]];
+        int[] next = Arrays.copyOf(starts, slots.length);
+        for (int i = 0; i < batch.length; i++) {
+            if (added[i]) {
+                incident[next[owners[from[i]]]++] = i;
+                if (owners[from[i]] != owners[to[i]]) {
+                    incident[next[owners[to[i]]]++] = i;
+                }
+            }
+        }
+        range(slots.length, parallel).forEach(k -> {
+            if (starts[k + 1] > starts[k]) {
+                List<Edge<N, E>> edges = slots[k].edges;
+                ((ArrayList<Edge<N, E>>) edges).ensureCapacity(edges.size() + starts[k + 1] - starts[k]);
+                for (int j = starts[k]; j < starts[k + 1]; j++) {
+                    edges.add(batch[incident[j]]);
+                }
+            }
+        });
+        dirty = true;
+    }
+
+    /**
+     * @return index of first occurrence of every node in batch, so that
+     * duplicates share one adjacency list
+     */
+    private int[] owners(Slot<N, E>[] slots) {
+        int[] firsts = new int[working.idCount];
+        Arrays.fill(firsts, -1);
+        int[] owners = new int[slots.length];
+        for (int k = 0; k < slots.length; k++) {
+            if (firsts[slots[k].id] < 0) {
+                firsts[slots[k].id] = k;
+            }
+            owners[k] = firsts[slots[k].id];
+        }
+        return owners;
+    }
+
+    /**
+     * Adds edges to their segments, which are split between threads.
+     *
+     * @return whether each edge was added
+     */
+    private boolean[] insertEdges(Edge<N, E>[] batch, boolean parallel) {
+        int[] segments = new int[batch.length];
+        range(batch.length, parallel).forEach(i -> segments[i] = GraphVersion.segment(batch[i]));
+        int[] starts = new int[GraphVersion.SEGMENTS + 1];
+        for (int segment : segments) {
+            starts[segment + 1]++;
+        }
+        for (int i = 0; i < GraphVersion.SEGMENTS; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] order = new int[batch.length];
+        int[] next = Arrays.copyOf(starts, GraphVersion.SEGMENTS);
+        for (int i = 0; i < batch.length; i++) {
+            order[next[segments[i]]++] = i;
+        }
+        boolean[] added = new boolean[batch.length];
+        int[] counts = new int[GraphVersion.SEGMENTS];
+        range(GraphVersion.SEGMENTS, parallel).forEach(s -> {
+            if (starts[s + 1] == starts[s]) {
+                return;
+            }
+            if (working.edges[s].isEmpty()) {
+                working.edges[s] = new HashSet<>((int) ((starts[s + 1] - starts[s]) / 0.75f) + 1);
+                edgesOwned[s] = true;
+            }
+            Set<Edge<N, E>> segment = edgeSegment(s);
+            for (int j = starts[s]; j < starts[s + 1]; j++) {
+                if (segment.add(batch[order[j]])) {
+                    added[order[j]] = true;
+                    counts[s]++;
+                }
+            }
+        });
+        for (int count : counts) {
+            working.edgeCount += count;
+        }
+        return added;
+    }
+
+    @Override
+    public synchronized boolean remove(Node<N> node) {
+        if (!working.contains(node)) {
+            return false;
+        }
+        Slot<N, E> removed = nodeSegment(node).remove(node);
+        removed.edges.forEach(e -> {
+            edgeSegment(e).remove(e);
+            working.edgeCount--;
+            Node<N> other = e.getOther(node).get();
+            if (!other.equals(node)) {
+                ownedEdges(other).remove(e);
+            }
+        });
+        working.size--;
+        dirty = true;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Edge<N, E> edge) {
+        if (!working.getEdges().contains(edge)) {
+            return false;
+        }
+        edgeSegment(edge).remove(edge);
+        working.edgeCount--;
+        ownedEdges(edge.getFrom()).remove(edge);
+        ownedEdges(edge.getTo()).remove(edge);
+        dirty = true;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Graph<N, E> graph) {
+        boolean changed = false;
+        for (Edge<N, E> edge : graph == this ? new ArrayList<>(working.getEdges()) : graph.getEdges()) {
+            changed |= remove(edge);
+        }
+        return changed;
+    }
+
+    @Override
+    public synchronized void clear() {
+        ids.clear();
+        listsOwned.clear();
+        working = empty();
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void setNodes(Collection<Node<N>> nodes) {
+        nodes.forEach(this::add);
+    }
+
+    @Override
+    public synchronized void setEdges(Collection<Edge<N, E>> edges) {
+        edges.forEach(this::add);
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getNeighbourEdges(Node<N> node) {
+        return new LockedView<>(() -> working.getNeighbourEdges(node));
+    }
+
+    @Override
+    public synchronized Collection<Node<N>> getNeighbourNodes(Node<N> node) {
+        return working.getNeighbourNodes(node);
+    }
+
+    @Override
+    public Collection<Node<N>> getNodes() {
+        return nodeView;
+    }
+
+    @Override
+    public Collection<Edge<N, E>> getEdges() {
+        return edgeView;
+    }
+
+    @Override
+    public synchronized int edgeCount() {
+        return working.edgeCount();
+    }
+
+    @Override
+    public Graph<N, E> getTranspose() {
+        return transpose;
+    }
+
+    @Override
+    public synchronized boolean contains(Node<N> node) {
+        return working.contains(node);
+    }
+
+    @Override
+    public synchronized int getId(Node<N> node) {
+        return working.getId(node);
+    }
+
+    @Override
+    public synchronized Node<N> getNode(int id) {
+        return working.getNode(id);
+    }
+
+    @Override
+    public synchronized int size() {
+        return working.size();
+    }
+
+    @Override
+    public synchronized Node<N> getRandomNode(Random rand) {
+        return working.getRandomNode(rand);
+    }
+
+    @Override
+    public synchronized Optional<Edge<N, E>> getRandomEdge(Node<N> node, Random rand) {
+        return working.getRandomEdge(node, rand);
+    }
+
+    @Override
+    public synchronized Optional<Edge<N, E>> getRandomEdge(Random rand) {
+        return working.getRandomEdge(rand);
+    }
+
+    @Override
+    public synchronized Collection<Graph<N, E>> getSubgraphs() {
+        return working.getSubgraphs();
+    }
+
+    @Override
+    public synchronized int componentCount() {
+        return working.componentCount();
+    }
+
+    @Override
+    public synchronized Node<N> getComponent(Node<N> node) {
+        return working.getComponent(node);
+    }
+
+    /**
+     * This is read-only view of collection of working version, which is only
+     * consistent while this graph is locked.
+     */
+    private class LockedView<T> extends AbstractCollection<T> {
+
+        private final Supplier<Collection<T>> source;
+
+        LockedView(Supplier<Collection<T>> source) {
+            this.source = source;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            synchronized (VersionedGraph.this) {
+                return Collections.unmodifiableList(new ArrayList<>(source.get())).iterator();
+            }
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            synchronized (VersionedGraph.this) {
+                return source.get().contains(object);
+            }
+        }
+
+        @Override
+        public int size() {
+            synchronized (VersionedGraph.this) {
+                return source.get().size();
+            }
+        }
+    }
+}
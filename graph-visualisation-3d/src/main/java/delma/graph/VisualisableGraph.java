@@ -1,19 +1,21 @@
 package delma.graph;
 
-import java.util.ArrayDeque;
+import delma.set.DisjointSet;
+import delma.set.IndexedSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 /**
  * This is directed graph.
@@ -22,15 +24,34 @@ import java.util.stream.Collectors;
  */
 public class VisualisableGraph implements Graph<Object, Object> {
 
-    private final Map<Node<Object>, List<Edge<Object, Object>>> map;
+    private final Map<Node<Object>, Incidence<Object, Object>> map;
+    private final NodeDictionary<Object> dictionary;
+    private final IndexedSet<Node<Object>> nodes;
+    private final IndexedSet<Edge<Object, Object>> edges;
+    private final Set<Edge<Object, Object>> edgeView;
+    private final Graph<Object, Object> transpose;
+    private DisjointSet<Node<Object>> components;
+    private boolean componentsStale;
 
     public VisualisableGraph() {
         map = new HashMap<>();
+        dictionary = new NodeDictionary<>();
+        nodes = new IndexedSet<>();
+        edges = new IndexedSet<>();
+        edgeView = Collections.unmodifiableSet(edges);
+        components = new DisjointSet<>();
+        transpose = new TransposedGraph<>(this);
     }
 
     @Override
     public void add(Node<Object> node) {
-        map.computeIfAbsent(node, n -> new ArrayList<>());
+        Node<Object> canonical = dictionary.canonical(node);
+        if (nodes.add(canonical)) {
+            map.put(canonical, new Incidence<>());
+            if (!componentsStale) {
+                components.add(canonical);
+            }
+        }
     }
 
     @Override
@@ -40,100 +61,298 @@ public class VisualisableGraph implements Graph<Object, Object> {
 
     @Override
     public void add(Edge<Object, Object> edge) {
-        Node<Object> from = edge.getFrom();
-        Node<Object> to = edge.getTo();
+        Node<Object> from = dictionary.canonical(edge.getFrom());
+        Node<Object> to = dictionary.canonical(edge.getTo());
+        if (from != edge.getFrom() || to != edge.getTo()) {
+            edge = new Edge<>(from, to, edge.getLabel());
+        }
+        if (!edges.add(edge)) {
+            return;
+        }
         add(from);
         add(to);
-        map.get(from).add(edge);
-        map.get(to).add(edge);
+        map.get(from).insert(from, edge);
+        if (!from.equals(to)) {
+            map.get(to).insert(to, edge);
+        }
+        if (!componentsStale) {
+            components.union(from, to);
+        }
     }
 
     @Override
     public void add(Graph<Object, Object> graph) {
         graph.getNodes().forEach(this::add);
-        graph.getEdges().forEach(this::add);
+        addAll(graph.getEdges());
+    }
+
+    @Override
+    public void addAll(Collection<Edge<Object, Object>> edges) {
+        Edge<Object, Object>[] batch = new Edge[edges.size()];
+        int[] fromIds = new int[batch.length];
+        int[] toIds = new int[batch.length];
+        int i = 0;
+        for (Edge<Object, Object> edge : edges) {
+            fromIds[i] = dictionary.intern(edge.getFrom());
+            toIds[i] = dictionary.intern(edge.getTo());
+            Node<Object> from = dictionary.getNode(fromIds[i]);
+            Node<Object> to = dictionary.getNode(toIds[i]);
+            batch[i++] = from != edge.getFrom() || to != edge.getTo() ? new Edge<>(from, to, edge.getLabel()) : edge;
+        }
+        insertAll(batch, fromIds, toIds, new int[0], false);
+    }
+
+    @Override
+    public void addAll(List<Node<Object>> nodes, int[] from, int[] to, IntFunction<Object> labels) {
+        int[] ids = nodes.stream().mapToInt(dictionary::intern).toArray();
+        Edge<Object, Object>[] batch = new Edge[from.length];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = edge(ids, from[i], to[i], labels == null ? null : labels.apply(i));
+        }
+        insertAll(batch, map(ids, from), map(ids, to), ids, false);
+    }
+
+    /**
+     * Interning nodes and adding edges to edge set are sequential. Edge
+     * objects and their hashes are built in parallel, and edges are inserted
+     * to incidences of their nodes in parallel, every node by one thread.
+     */
+    @Override
+    public void addAllParallel(List<Node<Object>> nodes, int[] from, int[] to, IntFunction<Object> labels) {
+        int[] ids = nodes.stream().mapToInt(dictionary::intern).toArray();
+        Edge<Object, Object>[] batch = new Edge[from.length];
+        IntStream.range(0, batch.length).parallel()
+                .forEach(i -> batch[i] = edge(ids, from[i], to[i], labels == null ? null : labels.apply(i)));
+        insertAll(batch, map(ids, from), map(ids, to), ids, true);
+    }
+
+    private Edge<Object, Object> edge(int[] ids, int from, int to, Object label) {
+        return new Edge<>(dictionary.getNode(ids[from]), dictionary.getNode(ids[to]), label);
+    }
+
+    private static int[] map(int[] ids, int[] indices) {
+        int[] result = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            result[i] = ids[indices[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Counts how many edges every node gets, sizes incidences and edge set
+     * for them and then inserts edges without further hashing of nodes.
+     * Component index is rebuilt lazily afterwards instead of being updated
+     * edge by edge.
+     *
+     * @param batch canonical edges
+     * @param fromIds dictionary id of source of every edge
+     * @param toIds dictionary id of target of every edge
+     * @param isolated dictionary ids of nodes to add even without edges
+     * @param parallel whether to insert to incidences in parallel
+     */
+    private void insertAll(Edge<Object, Object>[] batch, int[] fromIds, int[] toIds, int[] isolated, boolean parallel) {
+        int[] outDegrees = new int[dictionary.size()];
+        int[] inDegrees = new int[dictionary.size()];
+        for (int i = 0; i < batch.length; i++) {
+            outDegrees[fromIds[i]]++;
+            inDegrees[toIds[i]]++;
+        }
+        Incidence<Object, Object>[] incidences = new Incidence[outDegrees.length];
+        for (int id : isolated) {
+            incidences[id] = incidence(dictionary.getNode(id));
+        }
+        for (int id = 0; id < outDegrees.length; id++) {
+            if (outDegrees[id] > 0 || inDegrees[id] > 0) {
+                incidences[id] = incidence(dictionary.getNode(id));
+                incidences[id].reserve(outDegrees[id], inDegrees[id]);
+            }
+        }
+        edges.ensureCapacity(edges.size() + batch.length);
+        if (parallel) {
+            insertParallel(batch, fromIds, toIds, incidences, outDegrees, inDegrees);
+        } else {
+            for (int i = 0; i < batch.length; i++) {
+                if (edges.add(batch[i])) {
+                    incidences[fromIds[i]].insert(batch[i].getFrom(), batch[i]);
+                    if (fromIds[i] != toIds[i]) {
+                        incidences[toIds[i]].insert(batch[i].getTo(), batch[i]);
+                    }
+                }
+            }
+        }
+        if (batch.length > 0 || isolated.length > 0) {
+            componentsStale = true;
+        }
+    }
+
+    /**
+     * Adds edges to edge set in order and then groups new ones by their
+     * nodes, so that incidence of every node is filled by one thread in same
+     * order as sequential insert would.
+     */
+    private void insertParallel(Edge<Object, Object>[] batch, int[] fromIds, int[] toIds,
+            Incidence<Object, Object>[] incidences, int[] outDegrees, int[] inDegrees) {
+        int[] starts = new int[incidences.length + 1];
+        for (int id = 0; id < incidences.length; id++) {
+            starts[id + 1] = starts[id] + outDegrees[id] + inDegrees[id];
+        }
+        int[] ends = Arrays.copyOf(starts, incidences.length);
+        int[] incident = new int[starts[incidences.length]];
+        for (int i = 0; i < batch.length; i++) {
+            if (edges.add(batch[i])) {
+                incident[ends[fromIds[i]]++] = i;
+                if (fromIds[i] != toIds[i]) {
+                    incident[ends[toIds[i]]++] = i;
+                }
+            }
+        }
+        IntStream.range(0, incidences.length).parallel().forEach(id -> {
+            for (int k = starts[id]; k < ends[id]; k++) {
+                Edge<Object, Object> edge = batch[incident[k]];
+                incidences[id].insert(fromIds[incident[k]] == id ? edge.getFrom() : edge.getTo(), edge);
+            }
+        });
+    }
+
+    private Incidence<Object, Object> incidence(Node<Object> node) {
+        Incidence<Object, Object> incidence = map.get(node);
+        if (incidence == null) {
+            incidence = new Incidence<>();
+            map.put(node, incidence);
+            nodes.add(node);
+        }
+        return incidence;
     }
 
     @Override
     public boolean remove(Node<Object> node) {
-        if (!map.containsKey(node)) {
+        Incidence<Object, Object> removed = map.remove(node);
+        if (removed == null) {
             return false;
         }
-        map.compute(node, (k, v) -> {
-            v.forEach(e -> {
-                map.get(e.getOther(k).get()).remove(e);
-            });
-            return null;
+        nodes.remove(node);
+        componentsStale = true;
+        removed.forEach(e -> {
+            edges.remove(e);
+            Node<Object> other = e.getOther(node).get();
+            if (!other.equals(node)) {
+                map.get(other).delete(other, e);
+            }
         });
         return true;
     }
 
     @Override
     public boolean remove(Edge<Object, Object> edge) {
-        Node<Object> from = edge.getFrom();
-        Node<Object> to = edge.getTo();
-        boolean flag = map.get(from).remove(edge);
-        if (flag) {
-            map.get(to).remove(edge);
+        if (!edges.remove(edge)) {
+            return false;
+        }
+        map.get(edge.getFrom()).delete(edge.getFrom(), edge);
+        if (!edge.getFrom().equals(edge.getTo())) {
+            map.get(edge.getTo()).delete(edge.getTo(), edge);
         }
-        return flag;
+        componentsStale = true;
+        return true;
     }
 
     @Override
     public boolean remove(Graph<Object, Object> graph) {
-        int size = size();
-        graph.getEdges().forEach(this::remove);
-        return size() != size;
+        int count = edgeCount();
+        Collection<Edge<Object, Object>> removed = graph == this ? new ArrayList<>(edges) : graph.getEdges();
+        removed.forEach(this::remove);
+        return edgeCount() != count;
     }
 
     @Override
     public Collection<Edge<Object, Object>> getNeighbourEdges(Node<Object> node) {
-        return map.getOrDefault(node, Collections.emptyList());
+        Incidence<Object, Object> incidence = map.get(node);
+        if (incidence == null) {
+            return Collections.emptyList();
+        }
+        return incidence;
+    }
+
+    @Override
+    public Collection<Edge<Object, Object>> getOutEdges(Node<Object> node) {
+        Incidence<Object, Object> incidence = map.get(node);
+        if (incidence == null) {
+            return Collections.emptyList();
+        }
+        return incidence.out;
+    }
+
+    @Override
+    public Collection<Edge<Object, Object>> getInEdges(Node<Object> node) {
+        Incidence<Object, Object> incidence = map.get(node);
+        if (incidence == null) {
+            return Collections.emptyList();
+        }
+        return incidence.in;
     }
 
     @Override
     public Collection<Node<Object>> getNeighbourNodes(Node<Object> node) {
-        return mapToNodes(this::getNeighbourEdges, node);
+        Incidence<Object, Object> incidence = map.get(node);
+        if (incidence == null) {
+            return Collections.emptyList();
+        }
+        List<Node<Object>> result = new ArrayList<>(incidence.size());
+        incidence.forEachNeighbour(result::add);
+        return result;
     }
 
-    private Collection<Node<Object>> mapToNodes(Function<Node<Object>, Collection<Edge<Object, Object>>> c, Node<Object> node) {
-        return c.apply(node)
-                .stream()
-                .map(e -> e.getOther(node))
-                .filter(o -> o.isPresent())
-                .map(o -> o.get())
-                .collect(Collectors.toList());
+    @Override
+    public void forEachNeighbour(Node<Object> node, Consumer<Node<Object>> action) {
+        Incidence<Object, Object> incidence = map.get(node);
+        if (incidence != null) {
+            incidence.forEachNeighbour(action);
+        }
+    }
+
+    @Override
+    public void forEachNeighbour(int id, IntConsumer action) {
+        Incidence<Object, Object> incidence = map.get(dictionary.getNode(id));
+        if (incidence != null) {
+            incidence.forEachNeighbour(dictionary, action);
+        }
     }
 
     @Override
     public Collection<Graph<Object, Object>> getSubgraphs() {
-        Set<Node<Object>> nodesRemaining = new HashSet<>(map.keySet());
-        Deque<Node<Object>> stack = new ArrayDeque();
-        List<Graph<Object, Object>> result = new ArrayList<>();
-        while (!nodesRemaining.isEmpty()) {
-            stack.push(nodesRemaining.stream().findAny().get());
-            Graph<Object, Object> curGraph = new VisualisableGraph();
-            result.add(curGraph);
-            while (!stack.isEmpty()) {
-                Node<Object> cur = stack.pop();
-                if (!nodesRemaining.contains(cur)) {
-                    continue;
-                }
-                nodesRemaining.remove(cur);
-                curGraph.add(cur);
-                getNeighbourEdges(cur).forEach(curGraph::add);
-                getNeighbourEdges(cur)
-                        .stream()
-                        .map(e -> e.getOther(cur).get())
-                        .forEach(stack::push);
-            }
+        DisjointSet<Node<Object>> index = getComponents();
+        Map<Node<Object>, Graph<Object, Object>> result = new HashMap<>();
+        nodes.forEach(n -> result.computeIfAbsent(index.find(n), k -> new VisualisableGraph()).add(n));
+        edges.forEach(e -> result.get(index.find(e.getFrom())).add(e));
+        return result.values();
+    }
+
+    @Override
+    public int componentCount() {
+        return getComponents().count();
+    }
+
+    @Override
+    public Node<Object> getComponent(Node<Object> node) {
+        return getComponents().find(node);
+    }
+
+    /**
+     * Component index is kept up to date while nodes and edges are added.
+     * Removals can split components so after them it is rebuilt lazily.
+     */
+    private DisjointSet<Node<Object>> getComponents() {
+        if (componentsStale) {
+            components = new DisjointSet<>();
+            nodes.forEach(components::add);
+            edges.forEach(e -> components.union(e.getFrom(), e.getTo()));
+            componentsStale = false;
         }
-        return result;
+        return components;
     }
 
     @Override
     public Graph<Object, Object> getTranspose() {
-        return this;
+        return transpose;
     }
 
     @Override
@@ -141,6 +360,16 @@ public class VisualisableGraph implements Graph<Object, Object> {
         return map.containsKey(node);
     }
 
+    @Override
+    public int getId(Node<Object> node) {
+        return dictionary.getId(node);
+    }
+
+    @Override
+    public Node<Object> getNode(int id) {
+        return dictionary.getNode(id);
+    }
+
     @Override
     public int size() {
         return map.size();
@@ -149,6 +378,11 @@ public class VisualisableGraph implements Graph<Object, Object> {
     @Override
     public void clear() {
         map.clear();
+        dictionary.clear();
+        nodes.clear();
+        edges.clear();
+        components = new DisjointSet<>();
+        componentsStale = false;
     }
 
     @Override
@@ -158,23 +392,34 @@ public class VisualisableGraph implements Graph<Object, Object> {
 
     @Override
     public Collection<Edge<Object, Object>> getEdges() {
-        Set<Edge<Object, Object>> result = new HashSet<>();
-        map.values().forEach(result::addAll);
-        return result;
+        return edgeView;
+    }
+
+    @Override
+    public int edgeCount() {
+        return edges.size();
     }
 
     @Override
     public Node<Object> getRandomNode(Random rand) {
-        return map.keySet().toArray(new Node[size()])[rand.nextInt(size())];
+        return nodes.getRandom(rand);
     }
 
     @Override
-    public Optional<Edge<Object, Object>> getRandomEdge(Node<Object> node, Random rand) {
-        List<Edge<Object, Object>> edges = map.get(node);
+    public Optional<Edge<Object, Object>> getRandomEdge(Random rand) {
         if (edges.isEmpty()) {
             return Optional.empty();
         }
-        return Optional.of(edges.get(rand.nextInt(edges.size())));
+        return Optional.of(edges.getRandom(rand));
+    }
+
+    @Override
+    public Optional<Edge<Object, Object>> getRandomEdge(Node<Object> node, Random rand) {
+        Incidence<Object, Object> edges = map.get(node);
+        if (edges == null || edges.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(edges.getRandom(rand));
     }
 
     @Override
@@ -184,7 +429,7 @@ public class VisualisableGraph implements Graph<Object, Object> {
 
     @Override
     public void setEdges(Collection<Edge<Object, Object>> edges) {
-        edges.forEach(this::add);
+        addAll(edges);
     }
 
 }
@@ -0,0 +1,402 @@
+package delma.graph.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * This compresses files in independent blocks, so that blocks can be
+ * compressed and decompressed on all threads of common pool while file is
+ * streamed in order. Every block is complete gzip member, so files can also
+ * be decompressed with gzip. Header of member has extra field with size of
+ * whole member, which lets reader find next block without inflating previous
+ * one. Empty member ends file, so that file cut at block boundary is noticed.
+ *
+ * Plain gzip files are read too, but only on one thread.
+ *
+ * @author delma
+ */
+public enum BlockCompression {
+
+    INSTANCE;
+
+    /**
+     * Extension of compressed files. It is added after extension of what is
+     * compressed.
+     */
+    public static final String EXTENSION = ".gz";
+    /**
+     * Uncompressed bytes in block. Large enough that compression ratio is
+     * close to that of one stream and small enough that even small files
+     * have block for every core.
+     */
+    public static final int DEFAULT_BLOCK = 1 << 20;
+    private static final int HEADER = 20;
+    private static final int TRAILER = 8;
+    private static final int FLAG_EXTRA = 4;
+    private static final byte[] MEMBER = {0x1f, (byte) 0x8b, 8, FLAG_EXTRA, 0, 0, 0, 0, 0, (byte) 0xff,
+        8, 0, 'G', 'V', 4, 0};
+
+    /**
+     * @param path file
+     * @return whether file has extension of compressed files
+     */
+    public static boolean isCompressed(Path path) {
+        return path.getFileName().toString().toLowerCase().endsWith(EXTENSION);
+    }
+
+    /**
+     * @param out stream to write compressed bytes to, closed when returned
+     * stream is
+     * @return stream that compresses with default level and block size
+     */
+    public static OutputStream compress(OutputStream out) {
+        return compress(out, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK);
+    }
+
+    /**
+     * @param out stream to write compressed bytes to, closed when returned
+     * stream is
+     * @param level level of {@link Deflater}
+     * @param blockSize uncompressed bytes in block
+     * @return stream that compresses blocks in parallel
+     */
+    public static OutputStream compress(OutputStream out, int level, int blockSize) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid level " + level);
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Invalid block size " + blockSize);
+        }
+        return new BlockOutputStream(out, level, blockSize);
+    }
+
+    /**
+     * @param in compressed stream, closed when returned stream is
+     * @return stream that decompresses blocks in parallel ahead of reading
+     * @throws IOException if stream isn't gzip
+     */
+    public static InputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 1 << 16);
+        buffered.mark(MEMBER.length);
+        byte[] start = new byte[MEMBER.length];
+        int read = 0;
+        for (int n; read < start.length && (n = buffered.read(start, read, start.length - read)) > 0;) {
+            read += n;
+        }
+        buffered.reset();
+        if (read == start.length && Arrays.equals(start, MEMBER)) {
+            return new BlockInputStream(buffered);
+        }
+        return new GZIPInputStream(buffered, 1 << 16);
+    }
+
+    /**
+     * @return how many blocks are compressed or decompressed at once
+     */
+    private static int window() {
+        return 2 * ForkJoinPool.getCommonPoolParallelism() + 2;
+    }
+
+    private static byte[] deflate(byte[] data, int length, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            byte[] member = new byte[HEADER + length + (length >> 4) + 64];
+            int size = HEADER;
+            while (!deflater.finished()) {
+                if (size == member.length - TRAILER) {
+                    member = Arrays.copyOf(member, member.length * 2);
+                }
+                size += deflater.deflate(member, size, member.length - TRAILER - size);
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(data, 0, length);
+            System.arraycopy(MEMBER, 0, member, 0, MEMBER.length);
+            size += TRAILER;
+            putInt(member, MEMBER.length, size);
+            putInt(member, size - TRAILER, (int) checksum.getValue());
+            putInt(member, size - Integer.BYTES, length);
+            return Arrays.copyOf(member, size);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] member) throws IOException {
+        byte[] data = new byte[getInt(member, member.length - Integer.BYTES)];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, HEADER, member.length - HEADER - TRAILER);
+            int length = 0;
+            while (!inflater.finished()) {
+                int n = inflater.inflate(data, length, data.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary() || length == data.length)) {
+                    throw new IOException("Corrupted block");
+                }
+                length += n;
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(data, 0, length);
+            if (length != data.length || (int) checksum.getValue() != getInt(member, member.length - TRAILER)) {
+                throw new IOException("Corrupted block");
+            }
+            return data;
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupted block", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void putInt(byte[] bytes, int at, int value) {
+        for (int i = 0; i < Integer.BYTES; i++) {
+            bytes[at + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static int getInt(byte[] bytes, int at) {
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            value |= (bytes[at + i] & 0xff) << (8 * i);
+        }
+        return value;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Fills block and hands it to common pool when it is full. Compressed
+     * blocks are written in order once there are more of them in flight than
+     * {@link #window()}.
+     */
+    private static class BlockOutputStream extends FilterOutputStream {
+
+        private final int level;
+        private final int blockSize;
+        private final Deque<CompletableFuture<byte[]>> pending;
+        private byte[] block;
+        private int length;
+        private boolean finished;
+
+        BlockOutputStream(OutputStream out, int level, int blockSize) {
+            super(out);
+            this.level = level;
+            this.blockSize = blockSize;
+            pending = new ArrayDeque<>();
+            block = new byte[blockSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == blockSize) {
+                submit();
+            }
+            block[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            while (count > 0) {
+                if (length == blockSize) {
+                    submit();
+                }
+                int n = Math.min(count, blockSize - length);
+                System.arraycopy(bytes, offset, block, length, n);
+                length += n;
+                offset += n;
+                count -= n;
+            }
+        }
+
+        private void submit() throws IOException {
+            if (finished) {
+                throw new IOException("Stream is finished");
+            }
+            byte[] full = block;
+            int fullLength = length;
+            pending.add(CompletableFuture.supplyAsync(() -> deflate(full, fullLength, level), ForkJoinPool.commonPool()));
+            block = new byte[blockSize];
+            length = 0;
+            while (pending.size() > window()) {
+                out.write(join(pending.poll()));
+            }
+        }
+
+        /**
+         * Writes blocks that are full. Last block is only written when
+         * stream is closed, so that flushing doesn't make blocks smaller.
+         */
+        @Override
+        public void flush() throws IOException {
+            while (!pending.isEmpty()) {
+                out.write(join(pending.poll()));
+            }
+            out.flush();
+        }
+
+        /**
+         * Writes last block and end of file without closing underlying
+         * stream.
+         */
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            if (length > 0) {
+                submit();
+            }
+            finished = true;
+            pending.add(CompletableFuture.completedFuture(deflate(block, 0, level)));
+            flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Reads members on calling thread and inflates up to {@link #window()}
+     * of them in common pool ahead of reading.
+     */
+    private static class BlockInputStream extends InputStream {
+
+        private final DataInputStream in;
+        private final Deque<CompletableFuture<byte[]>> pending;
+        private byte[] block;
+        private int position;
+        private boolean end;
+
+        BlockInputStream(InputStream in) {
+            this.in = new DataInputStream(in);
+            pending = new ArrayDeque<>();
+            block = new byte[0];
+        }
+
+        /**
+         * @return whether there is something to read
+         */
+        private boolean next() throws IOException {
+            while (position == block.length) {
+                fill();
+                if (pending.isEmpty()) {
+                    return false;
+                }
+                block = join(pending.poll());
+                position = 0;
+                fill();
+            }
+            return true;
+        }
+
+        private void fill() throws IOException {
+            while (!end && pending.size() < window()) {
+                byte[] member = readMember();
+                if (member == null) {
+                    end = true;
+                } else {
+                    pending.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return inflate(member);
+                        } catch (IOException ex) {
+                            throw new CompletionException(ex);
+                        }
+                    }, ForkJoinPool.commonPool()));
+                }
+            }
+        }
+
+        /**
+         * @return next member or null if it was last
+         */
+        private byte[] readMember() throws IOException {
+            byte[] header = new byte[HEADER];
+            try {
+                in.readFully(header);
+            } catch (EOFException ex) {
+                throw new IOException("Compressed file is cut short", ex);
+            }
+            if (!Arrays.equals(Arrays.copyOf(header, MEMBER.length), MEMBER)) {
+                throw new IOException("Corrupted block header");
+            }
+            int size = getInt(header, MEMBER.length);
+            if (size < HEADER + TRAILER) {
+                throw new IOException("Corrupted block header");
+            }
+            byte[] member = Arrays.copyOf(header, size);
+            try {
+                in.readFully(member, HEADER, size - HEADER);
+            } catch (EOFException ex) {
+                throw new IOException("Compressed file is cut short", ex);
+            }
+            int uncompressed = getInt(member, size - Integer.BYTES);
+            if (uncompressed < 0) {
+                throw new IOException("Corrupted block");
+            }
+            return uncompressed == 0 ? null : member;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return next() ? block[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int count) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+            if (!next()) {
+                return -1;
+            }
+            int n = Math.min(count, block.length - position);
+            System.arraycopy(block, position, bytes, offset, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return block.length - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            pending.forEach(future -> future.cancel(false));
+            pending.clear();
+            in.close();
+        }
+    }
+}
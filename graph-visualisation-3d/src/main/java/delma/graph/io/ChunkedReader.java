@@ -0,0 +1,458 @@
+package delma.graph.io;
+
+import delma.graph.Graph;
+import delma.graph.Graph.Node;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * This reads line based graph files in parallel. File is split to byte ranges
+ * that end at line breaks, every range is mapped and parsed on its own thread
+ * to {@link Chunk} with its own labels, and chunks are merged to graph through
+ * its bulk path. Only giving global ids to distinct labels of chunks is
+ * serial when merging; ends of edges are remapped to them in parallel.
+ *
+ * @author delma
+ */
+enum ChunkedReader {
+
+    INSTANCE;
+
+    private static final long CHUNK = 8 << 20;
+    private static final int SCAN = 4096;
+    private static final int DIRECT = 1 << 16;
+    static final long NOT_INTEGER = Long.MIN_VALUE;
+
+    /**
+     * Parses one line of file into chunk.
+     */
+    @FunctionalInterface
+    interface LineParser {
+
+        /**
+         * @param buffer mapped part of file
+         * @param from position of first byte of line
+         * @param to position after last byte of line, not including line break
+         * @param chunk chunk to add nodes and edges to
+         */
+        void parse(ByteBuffer buffer, int from, int to, Chunk chunk);
+    }
+
+    /**
+     * This gives ids to integer labels without boxing them. Ids are stored in
+     * open addressing table plus one so that zero marks empty entry.
+     */
+    static class IntIds {
+
+        private int[] labels = new int[1024];
+        private int[] ids = new int[1024];
+        private int size;
+
+        /**
+         * @param label integer label
+         * @param next id to give to label if it doesn't have one yet
+         * @return id of label
+         */
+        int id(int label, int next) {
+            int mask = ids.length - 1;
+            int i = slot(label, mask);
+            for (; ids[i] != 0; i = (i + 1) & mask) {
+                if (labels[i] == label) {
+                    return ids[i] - 1;
+                }
+            }
+            labels[i] = label;
+            ids[i] = next + 1;
+            if (++size * 2 > ids.length) {
+                rehash();
+            }
+            return next;
+        }
+
+        private static int slot(int label, int mask) {
+            int hash = label * 0x9e3779b9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        private void rehash() {
+            int[] oldLabels = labels;
+            int[] oldIds = ids;
+            labels = new int[oldIds.length * 2];
+            ids = new int[oldIds.length * 2];
+            int mask = ids.length - 1;
+            for (int j = 0; j < oldIds.length; j++) {
+                if (oldIds[j] != 0) {
+                    int i = slot(oldLabels[j], mask);
+                    while (ids[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    labels[i] = oldLabels[j];
+                    ids[i] = oldIds[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * This collects nodes and edges parsed from one part of file. Nodes get
+     * ids local to chunk and are matched by label when chunks are merged.
+     * Integer labels are kept unboxed in {@link #intLabels} and their entry in
+     * {@link #labels} is null.
+     */
+    static class Chunk {
+
+        private final Map<Object, Integer> ids = new HashMap<>();
+        private final IntIds intIds = new IntIds();
+        private Object[] labels = new Object[1024];
+        private int[] intLabels = new int[1024];
+        private int count;
+        private int ints;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+        private int[] from = new int[1024];
+        private int[] to = new int[1024];
+        private Object[] edgeLabels;
+        private int edges;
+
+        /**
+         * @param label label of node
+         * @return id of node in this chunk
+         */
+        int node(Object label) {
+            if (label instanceof Integer) {
+                return node((int) (Integer) label);
+            }
+            Integer id = ids.get(label);
+            if (id == null) {
+                id = add(label, 0);
+                ids.put(label, id);
+            }
+            return id;
+        }
+
+        /**
+         * @param label label of node
+         * @return id of node in this chunk
+         */
+        int node(int label) {
+            int id = intIds.id(label, count);
+            if (id == count) {
+                add(null, label);
+                ints++;
+                min = Math.min(min, label);
+                max = Math.max(max, label);
+            }
+            return id;
+        }
+
+        private int add(Object label, int intLabel) {
+            if (count == labels.length) {
+                labels = Arrays.copyOf(labels, count * 2);
+                intLabels = Arrays.copyOf(intLabels, count * 2);
+            }
+            labels[count] = label;
+            intLabels[count] = intLabel;
+            return count++;
+        }
+
+        /**
+         * @param buffer buffer holding label
+         * @param from position of first byte
+         * @param to position after last byte
+         * @return id of node in this chunk
+         * @see ChunkedReader#label(ByteBuffer, int, int)
+         */
+        int node(ByteBuffer buffer, int from, int to) {
+            long value = integer(buffer, from, to);
+            return value == NOT_INTEGER ? node(string(buffer, from, to)) : node((int) value);
+        }
+
+        void edge(int from, int to, Object label) {
+            if (edges == this.from.length) {
+                this.from = Arrays.copyOf(this.from, edges * 2);
+                this.to = Arrays.copyOf(this.to, edges * 2);
+                if (edgeLabels != null) {
+                    edgeLabels = Arrays.copyOf(edgeLabels, edges * 2);
+                }
+            }
+            if (label != null && edgeLabels == null) {
+                edgeLabels = new Object[this.from.length];
+            }
+            this.from[edges] = from;
+            this.to[edges] = to;
+            if (edgeLabels != null) {
+                edgeLabels[edges] = label;
+            }
+            edges++;
+        }
+    }
+
+    /**
+     * Turns token to label of node or edge: integers that fit to int become
+     * {@link Integer}s like in JSON and everything else becomes string.
+     *
+     * @param buffer buffer holding token
+     * @param from position of first byte
+     * @param to position after last byte
+     * @return label
+     */
+    static Object label(ByteBuffer buffer, int from, int to) {
+        long value = integer(buffer, from, to);
+        return value == NOT_INTEGER ? string(buffer, from, to) : (Object) (int) value;
+    }
+
+    /**
+     * @param token token that isn't in buffer
+     * @return label
+     * @see #label(ByteBuffer, int, int)
+     */
+    static Object label(String token) {
+        byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+        return label(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * @param buffer buffer holding token
+     * @param from position of first byte
+     * @param to position after last byte
+     * @return value of token or {@link #NOT_INTEGER} if it isn't integer that
+     * fits in int and is written like in JSON, without leading zeros
+     */
+    static long integer(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        boolean negative = i < to && buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == to || to - i > 10 || (buffer.get(i) == '0' && to - i > 1)) {
+            return NOT_INTEGER;
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return NOT_INTEGER;
+            }
+            value = value * 10 + b - '0';
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? NOT_INTEGER : value;
+    }
+
+    static String string(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses file in parallel and adds everything in it to graph.
+     *
+     * @param path file to read
+     * @param parser parser for lines of file
+     * @param graph graph to add to
+     * @throws IOException if file can't be read
+     */
+    static void read(Path path, LineParser parser, Graph<Object, Object> graph) throws IOException {
+        read(path, parser, graph, CHUNK);
+    }
+
+    /**
+     * @param chunk preferred size of parts in bytes
+     */
+    static void read(Path path, LineParser parser, Graph<Object, Object> graph, long chunk) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = split(channel, chunk);
+            List<Chunk> chunks;
+            try {
+                chunks = Arrays.stream(range(bounds.length - 1)).parallel()
+                        .mapToObj(i -> parse(channel, bounds[i], bounds[i + 1], parser))
+                        .collect(Collectors.toList());
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            merge(chunks, graph);
+        }
+    }
+
+    private static int[] range(int count) {
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = i;
+        }
+        return result;
+    }
+
+    /**
+     * Splits file to about equal ranges, at least one for every thread unless
+     * file is tiny, and moves every boundary after next line break.
+     */
+    private static long[] split(FileChannel channel, long chunk) throws IOException {
+        long size = channel.size();
+        long count = Math.max(ForkJoinPool.getCommonPoolParallelism(), (size + chunk - 1) / chunk);
+        count = Math.max(1, Math.min(count, size / SCAN));
+        long[] bounds = new long[(int) count + 1];
+        ByteBuffer scan = ByteBuffer.allocate(SCAN);
+        for (int i = 1; i < count; i++) {
+            long position = Math.max(bounds[i - 1], size * i / count);
+            bounds[i] = lineEnd(channel, position, size, scan);
+        }
+        bounds[(int) count] = size;
+        return bounds;
+    }
+
+    private static long lineEnd(FileChannel channel, long position, long size, ByteBuffer scan) throws IOException {
+        while (position < size) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (scan.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static Chunk parse(FileChannel channel, long from, long to, LineParser parser) {
+        Chunk chunk = new Chunk();
+        if (from == to) {
+            return chunk;
+        }
+        ByteBuffer buffer;
+        try {
+            buffer = channel.map(MapMode.READ_ONLY, from, to - from);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        int limit = buffer.limit();
+        int line = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                parser.parse(buffer, line, i, chunk);
+                line = i + 1;
+            }
+        }
+        if (line < limit) {
+            parser.parse(buffer, line, limit, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Gives nodes of all chunks global ids in order of chunks, remaps ends of
+     * edges of every chunk to them in parallel and adds everything to graph at
+     * once.
+     *
+     * @param chunks parsed chunks in order of file
+     * @param graph graph to add to
+     */
+    static void merge(List<Chunk> chunks, Graph<Object, Object> graph) {
+        long total = 0;
+        boolean labelled = false;
+        int[] offsets = new int[chunks.size() + 1];
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            total += chunk.edges;
+            labelled |= chunk.edgeLabels != null;
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("File has too many edges to be added at once");
+            }
+            offsets[c + 1] = (int) total;
+        }
+        List<Node<Object>> nodes = new ArrayList<>();
+        int[][] remaps = remaps(chunks, nodes);
+        int[] from = new int[(int) total];
+        int[] to = new int[(int) total];
+        Object[] labels = labelled ? new Object[(int) total] : null;
+        IntStream.range(0, chunks.size()).parallel().forEach(c -> {
+            Chunk chunk = chunks.get(c);
+            int[] remap = remaps[c];
+            int offset = offsets[c];
+            for (int i = 0; i < chunk.edges; i++) {
+                from[offset + i] = remap[chunk.from[i]];
+                to[offset + i] = remap[chunk.to[i]];
+            }
+            if (chunk.edgeLabels != null) {
+                System.arraycopy(chunk.edgeLabels, 0, labels, offset, chunk.edges);
+            }
+        });
+        graph.addAllParallel(nodes, from, to, labels == null ? null : i -> labels[i]);
+    }
+
+    /**
+     * Gives global ids to nodes of every chunk in order of chunks. Integer
+     * labels are looked up from table indexed by label when they are dense
+     * enough and from {@link IntIds} otherwise, so only labels of new nodes
+     * are boxed.
+     *
+     * @param chunks parsed chunks in order of file
+     * @param nodes list to add nodes to in order of global ids
+     * @return global id of every node of every chunk by chunk local id
+     */
+    private static int[][] remaps(List<Chunk> chunks, List<Node<Object>> nodes) {
+        long ints = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (Chunk chunk : chunks) {
+            ints += chunk.ints;
+            min = Math.min(min, chunk.min);
+            max = Math.max(max, chunk.max);
+        }
+        long range = (long) max - min + 1;
+        int[] direct = ints > 0 && range <= Math.max(DIRECT, 4 * ints) && range < Integer.MAX_VALUE
+                ? new int[(int) range] : null;
+        IntIds intIds = direct == null ? new IntIds() : null;
+        Map<Object, Integer> ids = new HashMap<>();
+        int[][] remaps = new int[chunks.size()][];
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            int[] remap = new int[chunk.count];
+            for (int i = 0; i < chunk.count; i++) {
+                Object label = chunk.labels[i];
+                int intLabel = chunk.intLabels[i];
+                int id;
+                if (label != null) {
+                    id = ids.computeIfAbsent(label, key -> {
+                        nodes.add(new Node<>(key));
+                        return nodes.size() - 1;
+                    });
+                } else if (direct != null) {
+                    if (direct[intLabel - min] == 0) {
+                        nodes.add(new Node<>(intLabel));
+                        direct[intLabel - min] = nodes.size();
+                    }
+                    id = direct[intLabel - min] - 1;
+                } else {
+                    id = intIds.id(intLabel, nodes.size());
+                    if (id == nodes.size()) {
+                        nodes.add(new Node<>(intLabel));
+                    }
+                }
+                remap[i] = id;
+            }
+            remaps[c] = remap;
+        }
+        return remaps;
+    }
+}
@@ -0,0 +1,304 @@
+package delma.graph.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This parses line based subset of DOT language: node statements, edge
+ * statements with chains like "a -> b -> c" and their "label" attribute.
+ * Only nodes separated by edge operator are linked, "a b" is two node
+ * statements. Group of nodes in braces after edge operator, like
+ * "a -> {b c}", links to and from every node in it. Graph headers, subgraph
+ * braces, default attributes and graph attributes are skipped. Every
+ * statement has to fit on one line, but one line can have many statements
+ * separated by ';'. Comments starting with "//" or '#' are supported, block
+ * comments aren't.
+ *
+ * Statements that can't be read without dropping or inventing edges, like
+ * subgraph before edge operator or edges inside group, fail whole import.
+ *
+ * Both "->" and "--" add directed edge in order they are written, like
+ * everywhere else in this application.
+ *
+ * @author delma
+ */
+enum DotParser implements ChunkedReader.LineParser {
+
+    INSTANCE;
+
+    @Override
+    public void parse(ByteBuffer buffer, int from, int to, ChunkedReader.Chunk chunk) {
+        new Statement(buffer, from, to, chunk).parse(from);
+    }
+
+    private static boolean idByte(byte b) {
+        return b == '_' || b == '.' || b == '-' || b < 0
+                || (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static boolean keyword(Object label) {
+        if (!(label instanceof String)) {
+            return false;
+        }
+        switch (((String) label).toLowerCase()) {
+            case "graph":
+            case "digraph":
+            case "strict":
+            case "subgraph":
+            case "node":
+            case "edge":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * State of statements on one line. Nodes of current edge statement are
+     * kept in operands, which are single nodes or groups of nodes in braces.
+     */
+    private static class Statement {
+
+        private final ByteBuffer buffer;
+        private final int from;
+        private final int to;
+        private final ChunkedReader.Chunk chunk;
+        private Object[] tokens = new Object[4];
+        private int length;
+        private int[] starts = new int[4];
+        private int operands;
+        private boolean linked;
+        private boolean group;
+        private boolean skip;
+        private boolean attributes;
+        private Object key;
+        private boolean value;
+        private Object label;
+
+        Statement(ByteBuffer buffer, int from, int to, ChunkedReader.Chunk chunk) {
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        void parse(int i) {
+            while (i < to) {
+                byte b = buffer.get(i);
+                if (b == ' ' || b == '\t' || b == '\r' || b == ',') {
+                    i++;
+                } else if (b == '#' || (b == '/' && i + 1 < to && buffer.get(i + 1) == '/')) {
+                    break;
+                } else if (b == '-' && i + 1 < to && (buffer.get(i + 1) == '>' || buffer.get(i + 1) == '-')) {
+                    link();
+                    i += 2;
+                } else if (b == ';') {
+                    if (!group) {
+                        end();
+                    }
+                    i++;
+                } else if (b == '{') {
+                    open();
+                    i++;
+                } else if (b == '}') {
+                    if (group) {
+                        group = false;
+                    } else {
+                        end();
+                    }
+                    i++;
+                } else if (b == '[') {
+                    attributes = true;
+                    i++;
+                } else if (b == ']') {
+                    attributes = false;
+                    i++;
+                } else if (b == '=') {
+                    assign();
+                    i++;
+                } else if (b == ':') {
+                    i = port(i + 1);
+                } else if (b == '"') {
+                    i = quoted(i + 1);
+                } else if (idByte(b)) {
+                    int start = i;
+                    while (i < to && idByte(buffer.get(i))
+                            && !(buffer.get(i) == '-' && i + 1 < to && (buffer.get(i + 1) == '>' || buffer.get(i + 1) == '-'))) {
+                        i++;
+                    }
+                    token(ChunkedReader.label(buffer, start, i));
+                } else {
+                    i++;
+                }
+            }
+            end();
+        }
+
+        private int port(int i) {
+            while (i < to && (idByte(buffer.get(i)) || buffer.get(i) == ':')) {
+                i++;
+            }
+            return i;
+        }
+
+        private int quoted(int i) {
+            int start = i;
+            boolean escaped = false;
+            while (i < to && buffer.get(i) != '"') {
+                if (buffer.get(i) == '\\') {
+                    escaped = true;
+                    i++;
+                }
+                i++;
+            }
+            int end = Math.min(i, to);
+            token(escaped ? unescape(start, end) : ChunkedReader.label(buffer, start, end));
+            return end + 1;
+        }
+
+        private String unescape(int from, int to) {
+            byte[] bytes = new byte[to - from];
+            int length = 0;
+            for (int i = from; i < to; i++) {
+                byte b = buffer.get(i);
+                if (b == '\\' && i + 1 < to && buffer.get(i + 1) == '"') {
+                    continue;
+                }
+                bytes[length++] = b;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void token(Object token) {
+            if (attributes) {
+                if (value) {
+                    if ("label".equals(key) && !group) {
+                        label = token;
+                    }
+                    value = false;
+                    key = null;
+                } else {
+                    key = token;
+                }
+            } else if (value) {
+                value = false;
+            } else if (group) {
+                add(token);
+            } else if (linked) {
+                linked = false;
+                operand();
+                add(token);
+            } else {
+                if (operands > 0) {
+                    end();
+                }
+                if (operands == 0 && keyword(token)) {
+                    skip = true;
+                } else if (!skip) {
+                    operand();
+                    add(token);
+                }
+            }
+        }
+
+        private void link() {
+            if (group) {
+                throw error("Edges inside braces aren't supported");
+            }
+            if (!skip) {
+                if (operands == 0 || linked) {
+                    throw error("Edge operator has to be between nodes, subgraphs aren't supported there");
+                }
+                linked = true;
+            }
+        }
+
+        private void open() {
+            if (group) {
+                throw error("Braces inside braces aren't supported");
+            }
+            if (linked) {
+                linked = false;
+                group = true;
+                operand();
+            } else {
+                end();
+            }
+        }
+
+        /**
+         * Outside attribute list '=' makes statement graph attribute, which
+         * is skipped. Inside braces it makes previous node attribute name.
+         */
+        private void assign() {
+            if (group && !attributes) {
+                if (length > starts[operands - 1]) {
+                    length--;
+                }
+            } else if (!attributes) {
+                skip = true;
+            }
+            value = true;
+        }
+
+        private void operand() {
+            if (operands == starts.length) {
+                starts = Arrays.copyOf(starts, operands * 2);
+            }
+            starts[operands++] = length;
+        }
+
+        private void add(Object token) {
+            if (length == tokens.length) {
+                tokens = Arrays.copyOf(tokens, length * 2);
+            }
+            tokens[length++] = token;
+        }
+
+        /**
+         * Adds nodes of statement and edges from every node of one operand
+         * to every node of next one.
+         */
+        private void end() {
+            if (group) {
+                throw error("Braces have to be closed on same line");
+            }
+            if (linked) {
+                throw error("Edge operator has to be followed by node");
+            }
+            if (!skip && operands > 0) {
+                int[] ids = new int[length];
+                for (int i = 0; i < length; i++) {
+                    ids[i] = chunk.node(tokens[i]);
+                }
+                for (int k = 1; k < operands; k++) {
+                    int end = k + 1 < operands ? starts[k + 1] : length;
+                    for (int i = starts[k - 1]; i < starts[k]; i++) {
+                        for (int j = starts[k]; j < end; j++) {
+                            chunk.edge(ids[i], ids[j], label);
+                        }
+                    }
+                }
+            }
+            Arrays.fill(tokens, 0, length, null);
+            length = 0;
+            operands = 0;
+            skip = false;
+            attributes = false;
+            key = null;
+            value = false;
+            label = null;
+        }
+
+        private UncheckedIOException error(String message) {
+            byte[] line = new byte[to - from];
+            for (int i = 0; i < line.length; i++) {
+                line[i] = buffer.get(from + i);
+            }
+            return new UncheckedIOException(new IOException(message + ": " + new String(line, StandardCharsets.UTF_8).trim()));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package delma.graph.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This parses edge lists with one edge per line: ends of edge and optional
+ * label separated by tabs, spaces or commas. Line with only one token adds
+ * node without edges. Empty lines and lines starting with '#' or '%' are
+ * skipped.
+ *
+ * @author delma
+ */
+enum EdgeListParser implements ChunkedReader.LineParser {
+
+    INSTANCE;
+
+    private static boolean separator(byte b) {
+        return b == '\t' || b == ' ' || b == ',' || b == '\r';
+    }
+
+    private static int skipSeparators(ByteBuffer buffer, int i, int to) {
+        while (i < to && separator(buffer.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int tokenEnd(ByteBuffer buffer, int i, int to) {
+        while (i < to && !separator(buffer.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Handles tokens as they are found, so that nothing is allocated for
+     * lines whose labels are integers.
+     */
+    @Override
+    public void parse(ByteBuffer buffer, int from, int to, ChunkedReader.Chunk chunk) {
+        int start = skipSeparators(buffer, from, to);
+        if (start == to) {
+            return;
+        }
+        byte first = buffer.get(start);
+        if (first == '#' || first == '%') {
+            return;
+        }
+        int end = tokenEnd(buffer, start, to);
+        int source = chunk.node(buffer, start, end);
+        start = skipSeparators(buffer, end, to);
+        if (start == to) {
+            return;
+        }
+        end = tokenEnd(buffer, start, to);
+        int target = chunk.node(buffer, start, end);
+        start = skipSeparators(buffer, end, to);
+        Object label = start == to ? null : ChunkedReader.label(buffer, start, tokenEnd(buffer, start, to));
+        chunk.edge(source, target, label);
+    }
+}
@@ -0,0 +1,112 @@
+package delma.graph.io;
+
+import delma.graph.Graph;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * This imports graphs from formats of other tools. Edge lists and DOT files
+ * are split to parts that end at line breaks and parsed on all threads of
+ * common pool, GraphML is streamed on one thread. Everything is added to
+ * graph at once through
+ * {@link Graph#addAllParallel(java.util.List, int[], int[], java.util.function.IntFunction)}.
+ *
+ * Labels of nodes and edges are {@link Integer}s when they are integers that
+ * fit in int and strings otherwise, so that nodes have same labels as those
+ * loaded from JSON.
+ *
+ * @author delma
+ */
+public enum GraphImporter {
+
+    INSTANCE;
+
+    /**
+     * Extension of GraphML files.
+     */
+    public static final String GRAPHML = ".graphml";
+    /**
+     * Extensions of DOT files.
+     */
+    public static final String DOT = ".dot";
+    public static final String GV = ".gv";
+    /**
+     * Extensions of edge lists.
+     */
+    private static final String[] EDGE_LISTS = {".tsv", ".csv", ".txt", ".edges", ".el"};
+
+    /**
+     * @param path file
+     * @return whether file has extension of format that can be imported
+     */
+    public static boolean isImportable(Path path) {
+        String name = name(path);
+        if (name.endsWith(GRAPHML) || name.endsWith(DOT) || name.endsWith(GV)) {
+            return true;
+        }
+        for (String extension : EDGE_LISTS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String name(Path path) {
+        return path.getFileName().toString().toLowerCase();
+    }
+
+    /**
+     * Reads file in format given by its extension. Files with unknown
+     * extensions are read as edge lists.
+     *
+     * @param path file to read
+     * @param graph graph to add to
+     * @throws IOException if file can't be read
+     */
+    public static void read(Path path, Graph<Object, Object> graph) throws IOException {
+        String name = name(path);
+        if (name.endsWith(GRAPHML)) {
+            readGraphML(path, graph);
+        } else if (name.endsWith(DOT) || name.endsWith(GV)) {
+            readDot(path, graph);
+        } else {
+            readEdgeList(path, graph);
+        }
+    }
+
+    /**
+     * Reads edge list with one edge per line. Ends of edge and optional label
+     * are separated by tabs, spaces or commas. Lines with one token add nodes
+     * without edges and lines starting with '#' or '%' are comments.
+     *
+     * @param path file to read
+     * @param graph graph to add to
+     * @throws IOException if file can't be read
+     */
+    public static void readEdgeList(Path path, Graph<Object, Object> graph) throws IOException {
+        ChunkedReader.read(path, EdgeListParser.INSTANCE, graph);
+    }
+
+    /**
+     * Reads DOT file where every statement is on one line.
+     *
+     * @param path file to read
+     * @param graph graph to add to
+     * @throws IOException if file can't be read
+     */
+    public static void readDot(Path path, Graph<Object, Object> graph) throws IOException {
+        ChunkedReader.read(path, DotParser.INSTANCE, graph);
+    }
+
+    /**
+     * Reads GraphML file.
+     *
+     * @param path file to read
+     * @param graph graph to add to
+     * @throws IOException if file can't be read or isn't valid GraphML
+     */
+    public static void readGraphML(Path path, Graph<Object, Object> graph) throws IOException {
+        GraphMLReader.read(path, graph);
+    }
+}
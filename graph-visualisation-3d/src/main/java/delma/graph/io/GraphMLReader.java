@@ -0,0 +1,107 @@
+package delma.graph.io;
+
+import delma.graph.Graph;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * This reads GraphML one element at a time with StAX. Ids of nodes become
+ * their labels and data of keys named "label" become labels of edges. Integer
+ * ids and labels become {@link Integer}s like in other formats. Nested graphs,
+ * hyperedges and ports are not supported; their nodes and edges are read as
+ * if they were on top level.
+ *
+ * XML can't be split at arbitrary bytes, so file is parsed on one thread and
+ * only adding to graph goes through the parallel bulk path.
+ *
+ * @author delma
+ */
+enum GraphMLReader {
+
+    INSTANCE;
+
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * Adds nodes and edges in file to graph.
+     *
+     * @param path file to read
+     * @param graph graph to add to
+     * @throws IOException if file can't be read or isn't valid GraphML
+     */
+    static void read(Path path, Graph<Object, Object> graph) throws IOException {
+        ChunkedReader.Chunk chunk = new ChunkedReader.Chunk();
+        try (InputStream in = Files.newInputStream(path)) {
+            XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+            try {
+                parse(reader, chunk);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+        ChunkedReader.merge(Collections.singletonList(chunk), graph);
+    }
+
+    private static void parse(XMLStreamReader reader, ChunkedReader.Chunk chunk) throws XMLStreamException {
+        Set<String> labelKeys = new HashSet<>();
+        int from = -1;
+        int to = -1;
+        Object label = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "key":
+                        String domain = reader.getAttributeValue(null, "for");
+                        if ("label".equals(reader.getAttributeValue(null, "attr.name"))
+                                && (domain == null || domain.equals("edge") || domain.equals("all"))) {
+                            labelKeys.add(reader.getAttributeValue(null, "id"));
+                        }
+                        break;
+                    case "node":
+                        chunk.node(id(reader, "id"));
+                        break;
+                    case "edge":
+                        from = chunk.node(id(reader, "source"));
+                        to = chunk.node(id(reader, "target"));
+                        label = null;
+                        break;
+                    case "data":
+                        if (from >= 0 && labelKeys.contains(reader.getAttributeValue(null, "key"))) {
+                            label = ChunkedReader.label(reader.getElementText());
+                        }
+                        break;
+                    default:
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("edge")) {
+                chunk.edge(from, to, label);
+                from = -1;
+            }
+        }
+    }
+
+    private static Object id(XMLStreamReader reader, String attribute) throws XMLStreamException {
+        String id = reader.getAttributeValue(null, attribute);
+        if (id == null) {
+            throw new XMLStreamException("Missing attribute " + attribute, reader.getLocation());
+        }
+        return ChunkedReader.label(id);
+    }
+}
@@ -1,19 +1,36 @@
 package delma.graph.visualisation;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import delma.graph.Graph;
+import delma.graph.GraphDelta;
 import delma.graph.GraphGenerator;
-import delma.graph.VisualisableGraph;
+import delma.graph.GraphJournal;
+import delma.graph.GraphVersion;
+import delma.graph.ObservableGraph;
+import delma.graph.PackedGraph;
+import delma.graph.VersionedGraph;
+import delma.graph.io.BlockCompression;
+import delma.graph.io.GraphImporter;
 import delma.graph.visualisation.entity.Entity;
 import delma.graph.visualisation.entity.Node;
 import delma.tree.Octree;
 import delma.util.FunctionalUtil;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.lwjgl.input.Keyboard;
@@ -28,10 +45,14 @@ import org.lwjgl.util.vector.Vector3f;
 public class App implements Startable {
 
     /**
-     * @param args the command line arguments
+     * @param args the command line arguments, first one is optional file to
+     * load at start
      */
     public static void main(String[] args) {
         App instance = new App();
+        if (args.length > 0) {
+            instance.startFile = args[0];
+        }
         instance.run();
     }
 
@@ -41,29 +62,70 @@ public class App implements Startable {
     private static final float CAM_SPEED = 2f;
     private final Vector3f camMove = new Vector3f();
     public static final ObjectMapper MAPPER = new ObjectMapper();
+    /**
+     * Extension of files saved as {@link PackedGraph} instead of JSON.
+     */
+    public static final String PACKED = ".bin";
+    /**
+     * Extension of files saved by {@link LayoutCheckpoint}.
+     */
+    public static final String CHECKPOINT = ".layout";
+    /**
+     * Extension of files recorded by {@link TrajectoryRecorder}.
+     */
+    public static final String TRAJECTORY = ".frames";
+    /**
+     * Number of floats in layout of node: position and velocity.
+     */
+    private static final int LAYOUT = 6;
     private Octree<Entity> octree;
     private GraphCoarcer coarcer;
     private float delta;
     private long lastTime;
+    private String startFile;
+    private final BackgroundIO io = new BackgroundIO();
+    private ObservableGraph<Object, Object> document;
+    private VersionedGraph<Object, Object> versions;
+    private final List<GraphDelta<Object, Object>> unsaved = new ArrayList<>();
+    private final Consumer<GraphDelta<Object, Object>> recordUnsaved = unsaved::add;
+    private GraphJournal<Object, Object> journal;
+    private String journalFile;
+    /**
+     * Layout last saved to journal. It is only read and changed by saves on
+     * I/O thread; frame loop only replaces it when journal changes.
+     */
+    private Map<Graph.Node<Object>, float[]> savedLayout = new HashMap<>();
+    private TrajectoryRecorder recorder;
+    private int generation;
 
     @Override
     public void create() {
-        graph = new VisualisableGraph();
+        setDocument(observe(new VersionedGraph<>()));
         renderer = new Renderer(this);
         renderer.create();
         entities = new Pool<>();
         coarcer = new GraphCoarcer(this);
+        // Model of nodes needs GL context, so it is created before nodes are loaded on I/O thread
+        Node.getSharedModel();
+        if (startFile != null) {
+            loadGraph(startFile);
+        }
     }
 
     @Override
     public void tick() {
         while (!Display.isCloseRequested()) {
+            io.runFinished();
+            renderer.setStatus(io.getProgress());
             delta = calcDelta();
             octree = Octree.create(entities, 0.001);
             handleInput();
             entities.update();
             entities.forEach(e -> e.tick());
             entities.update();
+            if (recorder != null) {
+                recorder.record(generation, nodesById.size(), this::positionOf);
+            }
             if (!coarcer.ready()) {
                 entities.stream()
                         .filter(e -> e instanceof Node)
@@ -71,8 +133,7 @@ public class App implements Startable {
                         .filter(n -> !n.isReady())
                         .findAny()
                         .orElseGet(() -> {
-                            entities.clear();
-                            nodemap.clear();
+                            clearNodes();
                             graph = coarcer.uncoarce();
                             return null;
                         });
@@ -87,21 +148,55 @@ public class App implements Startable {
             switch (Keyboard.getEventKey()) {
                 case Keyboard.KEY_1:
                     if (state) {
-                        entities.clear();
-                        nodemap.clear();
+                        clearNodes();
+                        graph = document;
                         GraphGenerator.generate(graph, true, 100, 50, n -> n, n -> n);
                         coarcer.coarce(graph);
                     }
                     break;
                 case Keyboard.KEY_2:
                     if (state) {
-                        saveGraph(graph, nodemap, "./rsc/graphs/graph1");
+                        saveGraph("./rsc/graphs/graph1");
                     }
                     break;
                 case Keyboard.KEY_3:
                     if (state) {
-                        loadGraph(graph, nodemap, "./rsc/graphs/graph1");
-                        coarcer.coarce(graph);
+                        loadGraph("./rsc/graphs/graph1");
+                    }
+                    break;
+                case Keyboard.KEY_4:
+                    if (state) {
+                        saveGraph("./rsc/graphs/graph1" + PACKED);
+                    }
+                    break;
+                case Keyboard.KEY_5:
+                    if (state) {
+                        loadGraph("./rsc/graphs/graph1" + PACKED);
+                    }
+                    break;
+                case Keyboard.KEY_6:
+                    if (state) {
+                        saveCheckpoint("./rsc/graphs/graph1" + CHECKPOINT);
+                    }
+                    break;
+                case Keyboard.KEY_7:
+                    if (state) {
+                        loadCheckpoint("./rsc/graphs/graph1" + CHECKPOINT);
+                    }
+                    break;
+                case Keyboard.KEY_8:
+                    if (state) {
+                        saveGraph("./rsc/graphs/graph1" + BlockCompression.EXTENSION);
+                    }
+                    break;
+                case Keyboard.KEY_9:
+                    if (state) {
+                        loadGraph("./rsc/graphs/graph1" + BlockCompression.EXTENSION);
+                    }
+                    break;
+                case Keyboard.KEY_0:
+                    if (state) {
+                        toggleRecording("./rsc/graphs/graph1" + TRAJECTORY);
                     }
                     break;
                 case Keyboard.KEY_W:
@@ -146,6 +241,11 @@ public class App implements Startable {
 
     @Override
     public void destroy() {
+        setJournal(null, null);
+        if (recorder != null) {
+            toggleRecording(null);
+        }
+        io.shutdown();
         renderer.destroy();
     }
 
@@ -155,9 +255,24 @@ public class App implements Startable {
     }
 
     private final Map<Graph.Node<Object>, Node> nodemap = new HashMap<>();
+    private final List<Node> nodesById = new ArrayList<>();
+    /**
+     * Halted nodes read with graph. They never change, so saves can use them
+     * on I/O thread.
+     */
+    private Map<Graph.Node<Object>, Node> restored = Collections.emptyMap();
 
     public Node getNode(Graph.Node<Object> n) {
-        return nodemap.get(n);
+        Node node = nodemap.get(n);
+        return node == null ? restored.get(n) : node;
+    }
+
+    /**
+     * @param id id of node in graph that is currently simulated
+     * @return simulated node
+     */
+    public Node getNode(int id) {
+        return nodesById.get(id);
     }
 
     public Collection<Node> getNodes() {
@@ -166,7 +281,30 @@ public class App implements Startable {
 
     public void addEntity(Entity entity) {
         entities.add(entity);
-        FunctionalUtil.acceptIfCan(Node.class, entity, node -> nodemap.put(node.getNode(), node));
+        FunctionalUtil.acceptIfCan(Node.class, entity, node -> {
+            nodemap.put(node.getNode(), node);
+            while (nodesById.size() <= node.getId()) {
+                nodesById.add(null);
+            }
+            nodesById.set(node.getId(), node);
+        });
+    }
+
+    /**
+     * Removes every simulated node, so that ids of nodes can mean other nodes
+     * after this.
+     */
+    private void clearNodes() {
+        entities.clear();
+        nodemap.clear();
+        nodesById.clear();
+        restored = Collections.emptyMap();
+        generation++;
+    }
+
+    private Vector3f positionOf(int id) {
+        Node node = nodesById.get(id);
+        return node == null ? null : node.getPosition();
     }
 
     public Graph<Object, Object> getGraph() {
@@ -192,47 +330,346 @@ public class App implements Startable {
         return delta;
     }
 
-    public void loadGraph(Graph<Object, Object> graph, Map<Graph.Node<Object>, Node> nodemap, String fileName) {
-        graph.clear();
-        nodemap.clear();
-        File file = new File(fileName);
-        file.getParentFile().mkdirs();
-        try {
-            file.createNewFile();
-        } catch (IOException ex) {
+    /**
+     * Wraps graph so that it can be made document. Can be called on I/O
+     * thread, so that levels can be built from wrapped graph there.
+     *
+     * @param graph graph to wrap, copied unless it is versioned already
+     */
+    private static ObservableGraph<Object, Object> observe(Graph<Object, Object> graph) {
+        VersionedGraph<Object, Object> versioned;
+        if (graph instanceof VersionedGraph) {
+            versioned = (VersionedGraph<Object, Object>) graph;
+        } else {
+            versioned = new VersionedGraph<>();
+            versioned.add(graph);
         }
-        try {
-            Combination combination = MAPPER.readValue(file, Combination.class);
-            graph.add(combination.graph);
-            nodemap.putAll(combination.nodemap);
-        } catch (IOException ex) {
-            Logger.getLogger(App.class.getName()).log(Level.SEVERE, null, ex);
+        return new ObservableGraph<>(versioned);
+    }
+
+    /**
+     * Makes graph one that is saved and laid out. Saves pin its published
+     * version instead of copying it on frame loop, and changes after that
+     * copy segments of {@link VersionedGraph} they touch.
+     *
+     * @param next graph wrapped by {@link #observe(Graph)}
+     */
+    private void setDocument(ObservableGraph<Object, Object> next) {
+        if (document != null) {
+            document.unsubscribe(recordUnsaved);
         }
+        document = next;
+        versions = (VersionedGraph<Object, Object>) next.unwrap();
+        unsaved.clear();
+        recordChanges();
+        graph = document;
     }
 
-    private void saveGraph(Graph<Object, Object> graph, Map<Graph.Node<Object>, Node> nodemap, String fileName) {
-        File file = new File(fileName);
-        file.getParentFile().mkdirs();
-        try {
-            file.createNewFile();
-        } catch (IOException ex) {
+    /**
+     * Records changes of document only while there is journal, or one is
+     * being created, that saving appends them to. Otherwise nothing would
+     * ever take them and they would pile up.
+     */
+    private void recordChanges() {
+        document.unsubscribe(recordUnsaved);
+        if (journalFile != null) {
+            document.subscribe(recordUnsaved);
+        } else {
+            unsaved.clear();
+        }
+    }
+
+    /**
+     * Replaces journal that saves go to, closing old one after saves already
+     * submitted to it.
+     */
+    private void setJournal(GraphJournal<Object, Object> next, String fileName) {
+        GraphJournal<Object, Object> old = journal;
+        if (old != null && old != next) {
+            io.submit("Closing " + journalFile, progress -> {
+                old.close();
+                return null;
+            }, nothing -> {
+            });
+        }
+        journal = next;
+        journalFile = fileName;
+        recordChanges();
+    }
+
+    /**
+     * Loads graph and builds levels of its layout on I/O thread, and replaces
+     * current graph with it between frames. Packed files are opened with their
+     * journal, so that following saves to same file only append changes.
+     * Files ending with {@link BlockCompression#EXTENSION} are compressed JSON.
+     *
+     * @param fileName file to load
+     */
+    public void loadGraph(String fileName) {
+        Map<Graph.Node<Object>, Node> loadedNodemap = new HashMap<>();
+        Map<Graph.Node<Object>, float[]> loadedLayout = new HashMap<>();
+        AtomicReference<GraphJournal<Object, Object>> loadedJournal = new AtomicReference<>();
+        GraphCoarcer loadedCoarcer = new GraphCoarcer(this);
+        io.submit("Loading " + fileName, progress -> {
+            VersionedGraph<Object, Object> loaded = new VersionedGraph<>();
+            File file = new File(fileName);
+            if (fileName.endsWith(PACKED)) {
+                loadedJournal.set(GraphJournal.open(file.toPath(), loaded, loadedLayout::put));
+                loadedLayout.forEach((node, values) -> loadedNodemap.put(node, simulated(values)));
+            } else {
+                readGraph(file, loaded, loadedNodemap, progress);
+            }
+            ObservableGraph<Object, Object> next = observe(loaded);
+            loadedCoarcer.build(next);
+            return next;
+        }, loaded -> {
+            clearNodes();
+            setDocument(loaded);
+            setJournal(loadedJournal.get(), loadedJournal.get() == null ? null : fileName);
+            savedLayout = loadedLayout;
+            restored = loadedNodemap;
+            coarcer = loadedCoarcer;
+            coarcer.start();
+        });
+    }
+
+    private static void readGraph(File file, Graph<Object, Object> graph, Map<Graph.Node<Object>, Node> nodemap,
+            BackgroundIO.Progress progress) throws IOException {
+        if (GraphImporter.isImportable(file.toPath())) {
+            GraphImporter.read(file.toPath(), graph);
+        } else {
+            progress.setTotal(file.length());
+            InputStream in = progress.count(new FileInputStream(file));
+            if (BlockCompression.isCompressed(file.toPath())) {
+                in = BlockCompression.decompress(in);
+            }
+            JsonGraphIO.read(in, graph, nodemap);
+        }
+    }
+
+    /**
+     * Pins version of graph and copies positions of its nodes, and saves them
+     * on I/O thread, so that saved file is consistent even though layout
+     * continues. Packed files are saved through journal: if graph was loaded
+     * from or saved to same file before, only changed nodes, edges and
+     * positions are appended. Other files are JSON, compressed if name ends
+     * with {@link BlockCompression#EXTENSION}.
+     *
+     * @param fileName file to save to
+     */
+    public void saveGraph(String fileName) {
+        if (fileName.endsWith(PACKED)) {
+            saveJournaled(fileName);
+            return;
+        }
+        Snapshot snapshot = snapshot();
+        io.submit("Saving " + fileName, progress -> {
+            File file = new File(fileName);
+            file.getParentFile().mkdirs();
+            OutputStream out = progress.count(new BufferedOutputStream(new FileOutputStream(file)));
+            if (BlockCompression.isCompressed(file.toPath())) {
+                out = BlockCompression.compress(out);
+            }
+            JsonGraphIO.write(out, snapshot.graph, snapshot.nodemap());
+            return null;
+        }, nothing -> {
+        });
+    }
+
+    private void saveJournaled(String fileName) {
+        GraphJournal<Object, Object> current = fileName.equals(journalFile) ? journal : null;
+        Snapshot snapshot = snapshot();
+        List<GraphDelta<Object, Object>> deltas = new ArrayList<>(unsaved);
+        unsaved.clear();
+        if (current != null) {
+            Map<Graph.Node<Object>, float[]> saved = savedLayout;
+            io.submit("Saving " + fileName, progress -> {
+                Map<Graph.Node<Object>, float[]> changed = new HashMap<>();
+                snapshot.layout().forEach((node, values) -> {
+                    if (!Arrays.equals(values, saved.get(node))) {
+                        changed.put(node, values);
+                    }
+                });
+                saved.putAll(changed);
+                current.append(deltas, changed);
+                if (current.needsCompaction()) {
+                    current.compact(snapshot.graph, saved::get);
+                }
+                return null;
+            }, nothing -> {
+            });
+            return;
+        }
+        Map<Graph.Node<Object>, float[]> saved = new HashMap<>();
+        setJournal(null, fileName);
+        savedLayout = saved;
+        io.submit("Saving " + fileName, progress -> {
+            saved.putAll(snapshot.layout());
+            File file = new File(fileName);
+            file.getParentFile().mkdirs();
+            return GraphJournal.create(file.toPath(), snapshot.graph, saved::get);
+        }, created -> {
+            if (fileName.equals(journalFile)) {
+                setJournal(created, fileName);
+            } else {
+                io.submit("Closing " + fileName, progress -> {
+                    created.close();
+                    return null;
+                }, nothing -> {
+                });
+            }
+        });
+    }
+
+    /**
+     * Publishes version of graph and copies positions and velocities of
+     * simulated nodes to array. Nothing else is copied on frame loop.
+     */
+    private Snapshot snapshot() {
+        document.flush();
+        Node[] simulated = nodesById.toArray(new Node[nodesById.size()]);
+        float[] values = new float[LAYOUT * simulated.length];
+        for (int id = 0; id < simulated.length; id++) {
+            if (simulated[id] != null) {
+                simulated[id].copyLayout(values, LAYOUT * id);
+            }
+        }
+        return new Snapshot(versions.publish(), restored, simulated, values);
+    }
+
+    /**
+     * Starts recording positions of nodes every frame to file, or stops
+     * recording if it is on. Recording is closed on I/O thread, so that frame
+     * loop doesn't wait for last frames to be written.
+     */
+    private void toggleRecording(String fileName) {
+        TrajectoryRecorder current = recorder;
+        recorder = null;
+        if (current != null) {
+            io.submit("Closing recording", progress -> {
+                current.close();
+                if (current.getDropped() > 0) {
+                    Logger.getLogger(App.class.getName()).log(Level.WARNING, "{0} frames were dropped", current.getDropped());
+                }
+                return null;
+            }, nothing -> {
+            });
+            return;
         }
         try {
-            MAPPER.writeValue(file, new Combination(graph, nodemap));
+            File file = new File(fileName);
+            file.getParentFile().mkdirs();
+            recorder = new TrajectoryRecorder(file.toPath());
         } catch (IOException ex) {
-            Logger.getLogger(App.class.getName()).log(Level.SEVERE, null, ex);
+            Logger.getLogger(App.class.getName()).log(Level.SEVERE, "Recording to " + fileName + " failed", ex);
         }
     }
 
-    private static class Combination {
+    /**
+     * Saves layout on I/O thread. Original graph of layout is document, so
+     * published version of it is saved instead, because document can change
+     * before checkpoint is written.
+     */
+    private void saveCheckpoint(String fileName) {
+        GraphCoarcer.Checkpoint checkpoint = coarcer.checkpoint().withOriginal(versions.publish());
+        io.submit("Saving " + fileName, progress -> {
+            File file = new File(fileName);
+            file.getParentFile().mkdirs();
+            LayoutCheckpoint.write(file.toPath(), checkpoint);
+            return null;
+        }, nothing -> {
+        });
+    }
 
-        public Graph<Object, Object> graph;
-        public Map<Graph.Node<Object>, Node> nodemap;
+    /**
+     * Continues layout saved by {@link #saveCheckpoint(String)}. Graph
+     * becomes original graph of layout, like it is after
+     * {@link GraphCoarcer#coarce(Graph)}. Levels are restored on I/O thread
+     * and only simulated nodes are created between frames.
+     */
+    private void loadCheckpoint(String fileName) {
+        AtomicReference<ObservableGraph<Object, Object>> original = new AtomicReference<>();
+        GraphCoarcer restoredCoarcer = new GraphCoarcer(this);
+        io.submit("Loading " + fileName, progress -> {
+            GraphCoarcer.Checkpoint checkpoint = LayoutCheckpoint.read(new File(fileName).toPath());
+            Graph<Object, Object> levelZero = checkpoint.getOriginal();
+            original.set(observe(levelZero == null ? new VersionedGraph<>() : levelZero));
+            checkpoint = checkpoint.withOriginal(original.get());
+            restoredCoarcer.restore(checkpoint.getLevels());
+            return checkpoint;
+        }, checkpoint -> {
+            clearNodes();
+            setDocument(original.get());
+            setJournal(null, null);
+            coarcer = restoredCoarcer;
+            coarcer.start(checkpoint);
+        });
+    }
 
-        public Combination(@JsonProperty("graph") Graph<Object, Object> graph, @JsonProperty("nodemap") Map<Graph.Node<Object>, Node> nodemap) {
-            this.graph = graph;
-            this.nodemap = nodemap;
+    private static float[] layout(Node node) {
+        if (node == null) {
+            return null;
         }
+        float[] layout = new float[LAYOUT];
+        node.copyLayout(layout, 0);
+        return layout;
     }
 
+    private static Node simulated(float[] layout) {
+        Node node = new Node();
+        node.setPosition(new Vector3f(layout[0], layout[1], layout[2]));
+        node.setVelocity(new Vector3f(layout[3], layout[4], layout[5]));
+        return node;
+    }
+
+    /**
+     * This is graph and simulated nodes at one moment, taken on frame loop
+     * and used on I/O thread.
+     */
+    private static final class Snapshot {
+
+        private final GraphVersion<Object, Object> graph;
+        private final Map<Graph.Node<Object>, Node> restored;
+        private final Node[] simulated;
+        private final float[] values;
+
+        private Snapshot(GraphVersion<Object, Object> graph, Map<Graph.Node<Object>, Node> restored,
+                Node[] simulated, float[] values) {
+            this.graph = graph;
+            this.restored = restored;
+            this.simulated = simulated;
+            this.values = values;
+        }
+
+        /**
+         * @return halted copies of simulated nodes by their nodes
+         */
+        Map<Graph.Node<Object>, Node> nodemap() {
+            Map<Graph.Node<Object>, Node> nodemap = new HashMap<>(restored);
+            for (int id = 0; id < simulated.length; id++) {
+                if (simulated[id] != null) {
+                    nodemap.put(simulated[id].getNode(), simulated[id].snapshot(values, LAYOUT * id));
+                }
+            }
+            return nodemap;
+        }
+
+        /**
+         * @return position and velocity of every node of graph that has them
+         */
+        Map<Graph.Node<Object>, float[]> layout() {
+            Map<Graph.Node<Object>, float[]> layout = new HashMap<>();
+            restored.forEach((node, simNode) -> {
+                if (graph.contains(node)) {
+                    layout.put(node, App.layout(simNode));
+                }
+            });
+            for (int id = 0; id < simulated.length; id++) {
+                if (simulated[id] != null && graph.contains(simulated[id].getNode())) {
+                    layout.put(simulated[id].getNode(), Arrays.copyOfRange(values, LAYOUT * id, LAYOUT * (id + 1)));
+                }
+            }
+            return layout;
+        }
+    }
 }
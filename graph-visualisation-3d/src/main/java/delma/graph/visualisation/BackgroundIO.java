@@ -0,0 +1,205 @@
+package delma.graph.visualisation;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This runs saving and loading on its own thread so that frame loop never
+ * waits for disk. Jobs run one at a time in order they are submitted. Result
+ * of finished job is handed back to frame loop, which applies it between
+ * frames when it calls {@link #runFinished()}.
+ *
+ * @author delma
+ */
+public class BackgroundIO {
+
+    private final ExecutorService executor;
+    private final Queue<Runnable> finished;
+    private volatile Progress progress;
+
+    public BackgroundIO() {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "graph-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+        finished = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Work done on I/O thread.
+     *
+     * @param <T> result
+     */
+    @FunctionalInterface
+    public interface Job<T> {
+
+        /**
+         * @param progress progress to report to
+         * @return result to hand to frame loop
+         * @throws IOException if job fails
+         */
+        T run(Progress progress) throws IOException;
+    }
+
+    /**
+     * @param <T> result of job
+     * @param name what job does, shown while it runs
+     * @param job work to do on I/O thread
+     * @param onFrame what to do with result on frame loop, not called if job
+     * fails
+     */
+    public <T> void submit(String name, Job<T> job, Consumer<T> onFrame) {
+        executor.execute(() -> {
+            Progress current = new Progress(name);
+            progress = current;
+            try {
+                T result = job.run(current);
+                finished.add(() -> onFrame.accept(result));
+            } catch (IOException | RuntimeException ex) {
+                Logger.getLogger(BackgroundIO.class.getName()).log(Level.SEVERE, name + " failed", ex);
+            } finally {
+                progress = null;
+            }
+        });
+    }
+
+    /**
+     * Applies results of finished jobs. Has to be called on frame loop.
+     */
+    public void runFinished() {
+        Runnable next;
+        while ((next = finished.poll()) != null) {
+            next.run();
+        }
+    }
+
+    /**
+     * @return progress of running job or null if there is none
+     */
+    public Progress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Waits for submitted jobs to finish, without applying their results.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This tells how far job is. Jobs that stream their files count bytes
+     * through {@link #count(InputStream)} or {@link #count(OutputStream)},
+     * others only report how long they have taken.
+     */
+    public static class Progress {
+
+        private final String name;
+        private final long start;
+        private volatile long done;
+        private volatile long total = -1;
+
+        Progress(String name) {
+            this.name = name;
+            start = System.nanoTime();
+        }
+
+        /**
+         * @param total how many bytes job will handle
+         */
+        public void setTotal(long total) {
+            this.total = total;
+        }
+
+        /**
+         * Only I/O thread writes progress so volatile is enough.
+         */
+        private void add(long bytes) {
+            done += bytes;
+        }
+
+        /**
+         * @param in stream to count
+         * @return stream that adds bytes read from it to progress
+         */
+        public InputStream count(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        add(1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) throws IOException {
+                    int read = super.read(bytes, offset, length);
+                    if (read > 0) {
+                        add(read);
+                    }
+                    return read;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    long skipped = super.skip(n);
+                    add(skipped);
+                    return skipped;
+                }
+            };
+        }
+
+        /**
+         * @param out stream to count
+         * @return stream that adds bytes written to it to progress
+         */
+        public OutputStream count(OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    add(1);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                    add(length);
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(name);
+            long bytes = done;
+            long all = total;
+            if (all > 0) {
+                builder.append(' ').append(Math.min(100, bytes * 100 / all)).append('%');
+            } else if (bytes > 0) {
+                builder.append(' ').append(bytes >> 20).append(" MB");
+            }
+            builder.append(" (").append((System.nanoTime() - start) / 1000000000).append(" s)");
+            return builder.toString();
+        }
+    }
+}
@@ -1,13 +1,26 @@
 package delma.graph.visualisation;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import delma.graph.CsrGraph;
 import delma.graph.Graph;
+import delma.graph.LabelCodec;
 import delma.graph.VisualisableGraph;
 import delma.graph.visualisation.entity.Node;
 import delma.util.FunctionalUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -27,6 +40,7 @@ public class GraphCoarcer {
     private final Map<Graph.Node, Graph.Node> childToParentMap;
     private final Map<Graph.Node, Node> nodeToNodeMap;
     private final App context;
+    private Graph<Object, Object> current;
 
     public GraphCoarcer(App context) {
         this.context = context;
@@ -36,23 +50,44 @@ public class GraphCoarcer {
     }
 
     public void coarce(Graph<Object, Object> graph) {
+        build(graph);
+        start();
+    }
+
+    /**
+     * Adds simulated nodes of coarsest level to context. Has to be called on
+     * frame loop, but levels can be built with {@link #build(Graph)} on any
+     * thread before, as long as this coarcer isn't used elsewhere meanwhile.
+     */
+    void start() {
+        Graph<Object, Object> snapshot = new CsrGraph<>(current);
+        for (Graph.Node node : current) {
+            Node simNode = new Node(context, snapshot, node);
+            simNode.create();
+            simNode.setTemperature(graphStack.size());
+            nodeToNodeMap.put(node, simNode);
+            context.addEntity(simNode);
+        }
+    }
+
+    /**
+     * Builds stack of coarser and coarser graphs without simulating them.
+     *
+     * @param graph original graph
+     * @return coarsest graph, which is taken from stack
+     */
+    Graph<Object, Object> build(Graph<Object, Object> graph) {
         graphStack.clear();
         childToParentMap.clear();
         nodeToNodeMap.clear();
 
         graphStack.push(graph);
-        int subGraphs = graph.getSubgraphs().size();
+        int subGraphs = graph.componentCount();
         while (graphStack.peekFirst().size() > subGraphs) {
             graphStack.push(createCoarced(graphStack.peekFirst().getSubgraphs()));
         }
-        graph = graphStack.pop();
-        for (Graph.Node node : graph) {
-            Node simNode = new Node(context, graph, node);
-            simNode.create();
-            simNode.setTemperature(graphStack.size());
-            nodeToNodeMap.put(node, simNode);
-            context.addEntity(simNode);
-        }
+        current = graphStack.pop();
+        return current;
     }
 
     private Graph<Object, Object> createCoarced(Collection<Graph<Object, Object>> graphs) {
@@ -136,8 +171,10 @@ public class GraphCoarcer {
 
     public Graph<Object, Object> uncoarce() {
         Graph<Object, Object> graph = graphStack.pop();
+        current = graph;
+        Graph<Object, Object> snapshot = new CsrGraph<>(graph);
         for (Graph.Node node : graph) {
-            Node simNode = new Node(context, graph, node, findParent(node).getPosition());
+            Node simNode = new Node(context, snapshot, node, findParent(node).getPosition());
             simNode.create();
             simNode.setTemperature(graphStack.size());
             nodeToNodeMap.put(node, simNode);
@@ -146,10 +183,336 @@ public class GraphCoarcer {
         return graph;
     }
 
+    /**
+     * @return graphs from original one to currently simulated one, empty if
+     * nothing has been coarced
+     */
+    List<Graph<Object, Object>> levels() {
+        List<Graph<Object, Object>> levels = new ArrayList<>(graphStack.size() + 1);
+        graphStack.descendingIterator().forEachRemaining(levels::add);
+        if (current != null) {
+            levels.add(current);
+        }
+        return levels;
+    }
+
+    /**
+     * Copies state of simulated nodes. Original graph is taken as it is, so
+     * if it can still change it has to be replaced with immutable copy using
+     * {@link Checkpoint#withOriginal(Graph)} before checkpoint is written on
+     * other thread. Coarser levels are built by this coarcer and aren't
+     * changed afterwards.
+     *
+     * @return checkpoint of current layout
+     */
+    public Checkpoint checkpoint() {
+        List<Graph<Object, Object>> levels = levels();
+        Map<Graph.Node<Object>, Integer> indices = new HashMap<>(current == null ? 0 : current.size() * 2);
+        ByteArrayOutputStream state = new ByteArrayOutputStream(current == null ? 0 : current.size() * Node.STATE_BYTES);
+        try (DataOutputStream out = new DataOutputStream(state)) {
+            if (current != null) {
+                for (Graph.Node<Object> node : current) {
+                    indices.put(node, indices.size());
+                    context.getNode(node).writeState(out);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return new Checkpoint(levels, indices, state.toByteArray());
+    }
+
+    /**
+     * Replaces layout with checkpoint and adds its simulated nodes to
+     * context. Has to be called on frame loop.
+     *
+     * @param checkpoint checkpoint to continue from
+     * @return original graph or null if nothing was coarced
+     */
+    public Graph<Object, Object> restore(Checkpoint checkpoint) {
+        restore(checkpoint.levels);
+        start(checkpoint);
+        return checkpoint.getOriginal();
+    }
+
+    /**
+     * Adds simulated nodes of checkpoint to context after its levels have
+     * been restored with {@link #restore(List)}, which can be done on any
+     * thread before. Has to be called on frame loop.
+     *
+     * @param checkpoint checkpoint whose levels were restored
+     */
+    void start(Checkpoint checkpoint) {
+        if (current == null) {
+            return;
+        }
+        Graph<Object, Object> snapshot = new CsrGraph<>(current);
+        try {
+            for (Graph.Node<Object> node : current) {
+                Node simNode = new Node(context, snapshot, node);
+                simNode.create();
+                simNode.readState(checkpoint.state(node));
+                nodeToNodeMap.put(node, simNode);
+                context.addEntity(simNode);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Replaces stack with given levels and rebuilds parents of nodes from
+     * their labels.
+     *
+     * @param levels graphs from original one to one to simulate, empty if
+     * nothing should be simulated
+     */
+    void restore(List<Graph<Object, Object>> levels) {
+        graphStack.clear();
+        childToParentMap.clear();
+        nodeToNodeMap.clear();
+        for (int l = 0; l < levels.size() - 1; l++) {
+            graphStack.push(levels.get(l));
+        }
+        current = levels.isEmpty() ? null : levels.get(levels.size() - 1);
+        for (int l = 1; l < levels.size(); l++) {
+            for (Graph.Node<Object> node : levels.get(l)) {
+                for (Graph.Node<Object> child : children(node)) {
+                    childToParentMap.put(child, node);
+                }
+            }
+        }
+    }
+
+    private static List<Graph.Node<Object>> children(Graph.Node<Object> node) {
+        Object label = node.getLabel();
+        if (label instanceof Combiner) {
+            return Arrays.asList(((Combiner) label).first, ((Combiner) label).second);
+        }
+        if (label instanceof Wrapper) {
+            return Collections.singletonList(((Wrapper) label).node);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Original graph is written with labels encoded by codec. Nodes of
+     * coarser graphs are written as indices of their children in previous
+     * level instead of their nested labels.
+     *
+     * @param out output to write to
+     * @param levels graphs from original one to coarsest one
+     * @param codec encodes labels of original graph
+     * @throws IOException if writing fails
+     */
+    static void writeLevels(DataOutput out, List<Graph<Object, Object>> levels, LabelCodec codec) throws IOException {
+        out.writeInt(levels.size());
+        Map<Graph.Node<Object>, Integer> previous = null;
+        for (Graph<Object, Object> level : levels) {
+            Map<Graph.Node<Object>, Integer> indices = new HashMap<>(level.size() * 2);
+            out.writeInt(level.size());
+            for (Graph.Node<Object> node : level) {
+                indices.put(node, indices.size());
+                if (previous == null) {
+                    writeString(out, codec.encode(node.getLabel()));
+                    continue;
+                }
+                List<Graph.Node<Object>> children = children(node);
+                out.writeByte(children.size());
+                for (Graph.Node<Object> child : children) {
+                    out.writeInt(previous.get(child));
+                }
+            }
+            out.writeInt(level.getEdges().size());
+            for (Graph.Edge<Object, Object> edge : level.getEdges()) {
+                out.writeInt(indices.get(edge.getFrom()));
+                out.writeInt(indices.get(edge.getTo()));
+                writeString(out, codec.encode(edge.getLabel()));
+            }
+            previous = indices;
+        }
+    }
+
+    /**
+     * @param in input to read from
+     * @param codec codec labels were written with
+     * @return graphs from original one to coarsest one
+     * @throws IOException if reading fails or levels aren't valid
+     */
+    static List<Graph<Object, Object>> readLevels(DataInput in, LabelCodec codec) throws IOException {
+        return readLevels(in, codec.forLoad(), new ArrayList<>());
+    }
+
+    /**
+     * @param in input to read from
+     * @param codec codec for this load
+     * @param last list to add nodes of coarsest level to in order they were
+     * written
+     * @return graphs from original one to coarsest one
+     * @throws IOException if reading fails or levels aren't valid
+     */
+    private static List<Graph<Object, Object>> readLevels(DataInput in, LabelCodec codec,
+            List<Graph.Node<Object>> last) throws IOException {
+        int count = in.readInt();
+        List<Graph<Object, Object>> levels = new ArrayList<>(count);
+        List<Graph.Node<Object>> previous = null;
+        for (int l = 0; l < count; l++) {
+            Graph<Object, Object> level = new VisualisableGraph();
+            int size = in.readInt();
+            List<Graph.Node<Object>> nodes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                Graph.Node<Object> node;
+                if (previous == null) {
+                    node = new Graph.Node<>(codec.decode(readString(in)));
+                } else {
+                    int children = in.readByte();
+                    if (children == 2) {
+                        node = new Graph.Node<>(new Combiner(child(in, previous), child(in, previous)));
+                    } else if (children == 1) {
+                        node = new Graph.Node<>(new Wrapper(child(in, previous)));
+                    } else {
+                        throw new IOException("Coarced node has to have one or two children");
+                    }
+                }
+                nodes.add(node);
+                level.add(node);
+            }
+            int edges = in.readInt();
+            for (int i = 0; i < edges; i++) {
+                Graph.Node<Object> from = child(in, nodes);
+                Graph.Node<Object> to = child(in, nodes);
+                level.add(new Graph.Edge<>(from, to, codec.decode(readString(in))));
+            }
+            levels.add(level);
+            previous = nodes;
+        }
+        if (previous != null) {
+            last.addAll(previous);
+        }
+        return levels;
+    }
+
+    private static Graph.Node<Object> child(DataInput in, List<Graph.Node<Object>> nodes) throws IOException {
+        int index = in.readInt();
+        if (index < 0 || index >= nodes.size()) {
+            throw new IOException("Node index " + index + " is out of range");
+        }
+        return nodes.get(index);
+    }
+
+    private static void writeString(DataOutput out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
     private Node findParent(Graph.Node node) {
         return Objects.requireNonNull(nodeToNodeMap.get(childToParentMap.get(node)));
     }
 
+    /**
+     * This is copy of layout: every level from original graph to simulated
+     * one and state of simulated nodes. State is kept with order of nodes it
+     * was copied in, so it is matched to nodes even if graph with them
+     * iterates in other order.
+     */
+    public static final class Checkpoint {
+
+        private final List<Graph<Object, Object>> levels;
+        private final Map<Graph.Node<Object>, Integer> indices;
+        private final byte[] state;
+
+        private Checkpoint(List<Graph<Object, Object>> levels, Map<Graph.Node<Object>, Integer> indices, byte[] state) {
+            this.levels = levels;
+            this.indices = indices;
+            this.state = state;
+        }
+
+        /**
+         * @return graphs from original one to simulated one
+         */
+        List<Graph<Object, Object>> getLevels() {
+            return levels;
+        }
+
+        /**
+         * @return original graph or null if nothing was coarced
+         */
+        Graph<Object, Object> getOriginal() {
+            return levels.isEmpty() ? null : levels.get(0);
+        }
+
+        /**
+         * @param original graph with same nodes and edges as original graph
+         * of this checkpoint
+         * @return checkpoint that continues layout of given graph
+         */
+        Checkpoint withOriginal(Graph<Object, Object> original) {
+            if (levels.isEmpty()) {
+                return this;
+            }
+            List<Graph<Object, Object>> replaced = new ArrayList<>(levels);
+            replaced.set(0, original);
+            return new Checkpoint(replaced, indices, state);
+        }
+
+        /**
+         * @param node simulated node
+         * @return input to read state of node from
+         * @throws IllegalArgumentException if node isn't simulated in this
+         * checkpoint
+         */
+        DataInput state(Graph.Node<Object> node) {
+            Integer index = indices.get(node);
+            if (index == null) {
+                throw new IllegalArgumentException("Checkpoint has no state for " + node);
+            }
+            return new DataInputStream(new ByteArrayInputStream(state, index * Node.STATE_BYTES, Node.STATE_BYTES));
+        }
+
+        /**
+         * State is written in order simulated graph is written in, so it is
+         * read back in order of nodes read.
+         *
+         * @param out output to write to
+         * @param codec encodes labels of original graph
+         * @throws IOException if writing fails
+         */
+        void write(DataOutput out, LabelCodec codec) throws IOException {
+            writeLevels(out, levels, codec);
+            if (levels.isEmpty()) {
+                return;
+            }
+            for (Graph.Node<Object> node : levels.get(levels.size() - 1)) {
+                out.write(state, indices.get(node) * Node.STATE_BYTES, Node.STATE_BYTES);
+            }
+        }
+
+        /**
+         * @param in input to read from
+         * @param codec codec labels of original graph were written with
+         * @return read checkpoint
+         * @throws IOException if reading fails or checkpoint isn't valid
+         */
+        static Checkpoint read(DataInput in, LabelCodec codec) throws IOException {
+            List<Graph.Node<Object>> simulated = new ArrayList<>();
+            List<Graph<Object, Object>> levels = readLevels(in, codec.forLoad(), simulated);
+            Map<Graph.Node<Object>, Integer> indices = new HashMap<>(simulated.size() * 2);
+            for (Graph.Node<Object> node : simulated) {
+                indices.put(node, indices.size());
+            }
+            byte[] state = new byte[simulated.size() * Node.STATE_BYTES];
+            in.readFully(state);
+            return new Checkpoint(levels, indices, state);
+        }
+    }
+
     private static class Combiner {
 
         private final Graph.Node<Object> first;
@@ -0,0 +1,259 @@
+package delma.graph.visualisation;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import delma.graph.Graph;
+import delma.graph.VisualisableGraph;
+import delma.graph.visualisation.entity.Node;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This saves and loads graphs with their simulated nodes as JSON one token at
+ * a time. Nodes and edges go straight between file and graph without building
+ * intermediate document, so loading needs little more memory than the loaded
+ * graph itself. Read edges are only collected to list so that they are added
+ * with {@link Graph#addAll(java.util.Collection)} as one batch.
+ *
+ * Files are same as those written by data binding of {@link App#MAPPER}:
+ * object with fields "graph" and "nodemap", where graph has its class, array
+ * of nodes and array of edges.
+ *
+ * @author delma
+ */
+public enum JsonGraphIO {
+
+    INSTANCE;
+
+    private static final ObjectReader LABEL_READER = App.MAPPER.reader(Object.class);
+    private static final ObjectReader ENTITY_READER = App.MAPPER.reader(Node.class);
+    private static final ObjectWriter LABEL_WRITER = App.MAPPER.writerWithType(Object.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    private static final ObjectWriter ENTITY_WRITER = App.MAPPER.writerWithType(Node.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    /**
+     * Adds nodes and edges in file to graph and simulated nodes to nodemap.
+     *
+     * @param file file to read
+     * @param graph graph to add to
+     * @param nodemap map to put simulated nodes to
+     * @throws IOException if file can't be read or isn't valid
+     */
+    public static void read(File file, Graph<Object, Object> graph, Map<Graph.Node<Object>, Node> nodemap) throws IOException {
+        read(new FileInputStream(file), graph, nodemap);
+    }
+
+    /**
+     * Does the same as {@link #read(File, Graph, Map)} but reads stream,
+     * which is closed afterwards.
+     *
+     * @param in stream to read
+     * @param graph graph to add to
+     * @param nodemap map to put simulated nodes to
+     * @throws IOException if stream can't be read or isn't valid
+     */
+    public static void read(InputStream in, Graph<Object, Object> graph, Map<Graph.Node<Object>, Node> nodemap) throws IOException {
+        try (JsonParser parser = App.MAPPER.getFactory().createParser(in)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (field.equals("graph") && token != JsonToken.VALUE_NULL) {
+                    readGraph(parser, graph);
+                } else if (field.equals("nodemap") && token != JsonToken.VALUE_NULL) {
+                    readNodemap(parser, nodemap);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static void readGraph(JsonParser parser, Graph<Object, Object> graph) throws IOException {
+        expect(parser, parser.getCurrentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (field.equals("nodes") && token != JsonToken.VALUE_NULL) {
+                expect(parser, token, JsonToken.START_ARRAY);
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    graph.add(readNode(parser));
+                }
+            } else if (field.equals("edges") && token != JsonToken.VALUE_NULL) {
+                expect(parser, token, JsonToken.START_ARRAY);
+                List<Graph.Edge<Object, Object>> edges = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    edges.add(readEdge(parser));
+                }
+                graph.addAll(edges);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static Graph.Node<Object> readNode(JsonParser parser) throws IOException {
+        expect(parser, parser.getCurrentToken(), JsonToken.START_OBJECT);
+        Object label = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals("label")) {
+                label = readLabel(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new Graph.Node<>(label);
+    }
+
+    private static Graph.Edge<Object, Object> readEdge(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException("Edge has to be object, references to earlier edges aren't supported",
+                    parser.getCurrentLocation());
+        }
+        Graph.Node<Object> from = null;
+        Graph.Node<Object> to = null;
+        Object label = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "from":
+                    from = readNode(parser);
+                    break;
+                case "to":
+                    to = readNode(parser);
+                    break;
+                case "label":
+                    label = readLabel(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (from == null || to == null) {
+            throw new JsonParseException("Edge has to have both ends", parser.getCurrentLocation());
+        }
+        return new Graph.Edge<>(from, to, label);
+    }
+
+    private static Object readLabel(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            default:
+                return LABEL_READER.readValue(parser);
+        }
+    }
+
+    private static void readNodemap(JsonParser parser, Map<Graph.Node<Object>, Node> nodemap) throws IOException {
+        expect(parser, parser.getCurrentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            Graph.Node<Object> key = new Graph.Node<>(parser.getCurrentName());
+            parser.nextToken();
+            nodemap.put(key, ENTITY_READER.readValue(parser));
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken token, JsonToken expected) throws JsonParseException {
+        if (token != expected) {
+            throw new JsonParseException("Expected " + expected + " but got " + token, parser.getCurrentLocation());
+        }
+    }
+
+    /**
+     * Writes graph and simulated nodes to file, replacing its contents.
+     *
+     * @param file file to write
+     * @param graph graph to write
+     * @param nodemap simulated nodes to write
+     * @throws IOException if file can't be written
+     */
+    public static void write(File file, Graph<Object, Object> graph, Map<Graph.Node<Object>, Node> nodemap) throws IOException {
+        write(new FileOutputStream(file), graph, nodemap);
+    }
+
+    /**
+     * Does the same as {@link #write(File, Graph, Map)} but writes to stream,
+     * which is closed afterwards.
+     *
+     * @param out stream to write to
+     * @param graph graph to write
+     * @param nodemap simulated nodes to write
+     * @throws IOException if stream can't be written
+     */
+    public static void write(OutputStream out, Graph<Object, Object> graph, Map<Graph.Node<Object>, Node> nodemap) throws IOException {
+        try (JsonGenerator generator = App.MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("graph");
+            generator.writeStringField("@class", VisualisableGraph.class.getName());
+            generator.writeArrayFieldStart("nodes");
+            for (Graph.Node<Object> node : graph.getNodes()) {
+                writeNode(generator, node);
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("edges");
+            int id = 1;
+            for (Graph.Edge<Object, Object> edge : graph.getEdges()) {
+                generator.writeStartObject();
+                generator.writeNumberField("@id", id++);
+                generator.writeFieldName("from");
+                writeNode(generator, edge.getFrom());
+                generator.writeFieldName("to");
+                writeNode(generator, edge.getTo());
+                generator.writeFieldName("label");
+                writeLabel(generator, edge.getLabel());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeObjectFieldStart("nodemap");
+            for (Map.Entry<Graph.Node<Object>, Node> entry : nodemap.entrySet()) {
+                generator.writeFieldName(entry.getKey().toString());
+                ENTITY_WRITER.writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeNode(JsonGenerator generator, Graph.Node<Object> node) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName("label");
+        writeLabel(generator, node.getLabel());
+        generator.writeEndObject();
+    }
+
+    private static void writeLabel(JsonGenerator generator, Object label) throws IOException {
+        if (label == null) {
+            generator.writeNull();
+        } else if (label instanceof String) {
+            generator.writeString((String) label);
+        } else if (label instanceof Integer) {
+            generator.writeNumber((Integer) label);
+        } else if (label instanceof Long) {
+            generator.writeNumber((Long) label);
+        } else {
+            LABEL_WRITER.writeValue(generator, label);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package delma.graph.visualisation;
+
+import delma.graph.JsonLabelCodec;
+import delma.graph.LabelCodec;
+import delma.graph.io.BlockCompression;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * This saves whole state of layout so that it can be continued after restart:
+ * every level of {@link GraphCoarcer}, which of them is simulated and
+ * position, velocity and temperature of every simulated node.
+ *
+ * Checkpoint is first written next to target and then moved over it, so
+ * crash while saving leaves previous checkpoint intact. CRC32 of contents is
+ * at end of file and checked before anything is read.
+ *
+ * Checkpoints whose name ends with {@link BlockCompression#EXTENSION} are
+ * same file compressed. Their CRC32 is checked after reading, because blocks
+ * have their own checksums.
+ *
+ * @author delma
+ */
+public enum LayoutCheckpoint {
+
+    INSTANCE;
+
+    private static final int MAGIC = 0x4756434b;
+    private static final int VERSION = 1;
+
+    /**
+     * Writes checkpoint with labels encoded by {@link JsonLabelCodec}.
+     *
+     * @param path file to write
+     * @param checkpoint checkpoint of layout
+     * @throws IOException if file can't be written
+     */
+    public static void write(Path path, GraphCoarcer.Checkpoint checkpoint) throws IOException {
+        write(path, checkpoint, JsonLabelCodec.INSTANCE);
+    }
+
+    /**
+     * @param path file to write
+     * @param checkpoint checkpoint of layout
+     * @param codec encodes labels of original graph
+     * @throws IOException if file can't be written
+     */
+    public static void write(Path path, GraphCoarcer.Checkpoint checkpoint, LabelCodec codec) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32 checksum = new CRC32();
+        OutputStream file = Files.newOutputStream(temp);
+        if (BlockCompression.isCompressed(path)) {
+            file = BlockCompression.compress(file);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(file, checksum), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            checkpoint.write(out, codec);
+            out.flush();
+            out.writeLong(checksum.getValue());
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads checkpoint written with {@link JsonLabelCodec}.
+     *
+     * @param path file to read
+     * @return read checkpoint
+     * @throws IOException if file can't be read or is corrupted
+     */
+    public static GraphCoarcer.Checkpoint read(Path path) throws IOException {
+        return read(path, JsonLabelCodec.INSTANCE);
+    }
+
+    /**
+     * Reads checkpoint without touching current layout, so that it can be
+     * done on other thread. Layout continues from it after
+     * {@link GraphCoarcer#restore(GraphCoarcer.Checkpoint)}.
+     *
+     * @param path file to read
+     * @param codec codec labels of original graph were written with
+     * @return read checkpoint
+     * @throws IOException if file can't be read or is corrupted
+     */
+    public static GraphCoarcer.Checkpoint read(Path path, LabelCodec codec) throws IOException {
+        boolean compressed = BlockCompression.isCompressed(path);
+        if (!compressed) {
+            verify(path);
+        }
+        CRC32 checksum = new CRC32();
+        InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+        if (compressed) {
+            file = new CheckedInputStream(new BufferedInputStream(BlockCompression.decompress(file), 1 << 16), checksum);
+        }
+        try (DataInputStream in = new DataInputStream(file)) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(path + " isn't layout checkpoint");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            GraphCoarcer.Checkpoint checkpoint = GraphCoarcer.Checkpoint.read(in, codec);
+            long expected = checksum.getValue();
+            if (compressed && in.readLong() != expected) {
+                throw new IOException(path + " is corrupted");
+            }
+            return checkpoint;
+        }
+    }
+
+    /**
+     * Checks whole file before anything is read from it.
+     */
+    private static void verify(Path path) throws IOException {
+        long length = Files.size(path) - Long.BYTES;
+        if (length < 0) {
+            throw new IOException(path + " isn't layout checkpoint");
+        }
+        CRC32 checksum = new CRC32();
+        byte[] buffer = new byte[1 << 16];
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            for (long left = length; left > 0;) {
+                int read = (int) Math.min(buffer.length, left);
+                in.readFully(buffer, 0, read);
+                checksum.update(buffer, 0, read);
+                left -= read;
+            }
+            if (in.readLong() != checksum.getValue()) {
+                throw new IOException(path + " is corrupted");
+            }
+        }
+    }
+}
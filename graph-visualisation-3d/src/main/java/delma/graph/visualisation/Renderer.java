@@ -46,10 +46,25 @@ public class Renderer implements Startable {
     private int lineVaoID;
     private static final int MAX_LINES = 200000;
 
+    private String status;
+
     public Renderer(App context) {
         this.context = context;
     }
 
+    /**
+     * Shows status in title of window.
+     *
+     * @param status status to show or null to show only title
+     */
+    public void setStatus(Object status) {
+        String text = status == null ? null : status.toString();
+        if (text == null ? this.status != null : !text.equals(this.status)) {
+            this.status = text;
+            Display.setTitle(text == null ? WINDOW_TITLE : WINDOW_TITLE + " - " + text);
+        }
+    }
+
     @Override
     public void create() {
         camera = new Camera();
@@ -192,25 +207,10 @@ public class Renderer implements Startable {
         lineBuffer.clear();
         context.getEntities().forEach(entity -> {
             FunctionalUtil.acceptIfCan(Node.class, entity, node -> {
-                context.getGraph()
-                        .getNeighbourEdges(node.getNode())
-                        .forEach(edge -> {
-                            edge.getOther(node.getNode()).ifPresent(otherEdge -> {
-                                Vector3f pos = new Vector3f(node.getPosition());
-                                pos.scale(0.5f);
-                                Vector3f opos = new Vector3f(context.getNode(otherEdge).getPosition());
-                                opos.scale(0.5f);
-
-                                Vertex[] vertices = new Vertex[]{
-                                    new Vertex(pos),
-                                    new Vertex(opos)
-                                };
-                                for (Vertex vertex : vertices) {
-                                    lineBuffer.put(vertex.getCoord());
-                                    lineBuffer.put(vertex.getColor());
-                                }
-                            });
-                        });
+                node.getGraph().forEachNeighbour(node.getId(), other -> {
+                    putLinePoint(node.getPosition());
+                    putLinePoint(context.getNode(other).getPosition());
+                });
             });
         });
         lineBuffer.flip();
@@ -246,6 +246,15 @@ public class Renderer implements Startable {
         Display.update();
     }
 
+    /**
+     * Puts point of line to buffer the same way as colorless vertex would be
+     * put, without creating one.
+     */
+    private void putLinePoint(Vector3f position) {
+        lineBuffer.put(position.x * 0.5f).put(position.y * 0.5f).put(position.z * 0.5f).put(1);
+        lineBuffer.put(0).put(0).put(0).put(0);
+    }
+
     @Override
     public void destroy() {
         // Delete the shaders
@@ -0,0 +1,130 @@
+package delma.graph.visualisation;
+
+import static delma.graph.visualisation.TrajectoryRecorder.FLOATS;
+import static delma.graph.visualisation.TrajectoryRecorder.FRAME;
+import static delma.graph.visualisation.TrajectoryRecorder.FRAME_HEADER;
+import static delma.graph.visualisation.TrajectoryRecorder.HEADER;
+import static delma.graph.visualisation.TrajectoryRecorder.MAGIC;
+import static delma.graph.visualisation.TrajectoryRecorder.VERSION;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This plays back file written by {@link TrajectoryRecorder}. Frames are
+ * found when file is opened, so that any of them can be read in any order.
+ *
+ * @author delma
+ */
+public class TrajectoryReader implements Closeable {
+
+    private final FileChannel channel;
+    private long[] offsets;
+    private int size;
+
+    /**
+     * @param path recorded file
+     * @throws IOException if file can't be read or isn't recording
+     */
+    public TrajectoryReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(0, HEADER);
+            if (header == null || header.getInt() != MAGIC) {
+                throw new IOException(path + " isn't trajectory");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported trajectory version " + version);
+            }
+            offsets = new long[64];
+            for (long position = HEADER;;) {
+                ByteBuffer frameHeader = read(position, FRAME_HEADER);
+                if (frameHeader == null || frameHeader.getInt() != FRAME) {
+                    break;
+                }
+                int count = frameHeader.getInt();
+                long end = position + FRAME_HEADER + (long) FLOATS * Float.BYTES * count;
+                if (count < 0 || end > channel.size()) {
+                    break;
+                }
+                if (size == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, 2 * size);
+                }
+                offsets[size++] = position;
+                position = end;
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return bytes at position or null if file ends before them
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        if (position + length > channel.size()) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return number of whole frames
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index index of frame
+     * @return read frame
+     * @throws IOException if frame can't be read
+     */
+    public TrajectoryRecorder.Frame read(int index) throws IOException {
+        return read(index, null);
+    }
+
+    /**
+     * Reads frame reusing earlier one, so that playing back doesn't allocate
+     * new frame every time.
+     *
+     * @param index index of frame
+     * @param reuse earlier frame whose positions can be reused, or null
+     * @return read frame
+     * @throws IOException if frame can't be read
+     */
+    public TrajectoryRecorder.Frame read(int index, TrajectoryRecorder.Frame reuse) throws IOException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Frame " + index + " of " + size);
+        }
+        ByteBuffer frameHeader = read(offsets[index], FRAME_HEADER);
+        frameHeader.getInt();
+        int count = frameHeader.getInt();
+        TrajectoryRecorder.Frame frame = reuse == null ? new TrajectoryRecorder.Frame() : reuse;
+        frame.set(frameHeader.getInt(), frameHeader.getLong(), count);
+        ByteBuffer positions = read(offsets[index] + FRAME_HEADER, FLOATS * Float.BYTES * count);
+        if (positions == null) {
+            throw new IOException("Frame " + index + " is cut short");
+        }
+        positions.asFloatBuffer().get(frame.getPositions(), 0, FLOATS * count);
+        return frame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,260 @@
+package delma.graph.visualisation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.IntFunction;
+import org.lwjgl.util.vector.Vector3f;
+
+/**
+ * This records positions of simulated nodes every frame so that layout can
+ * be played back and post-processed offline. Frame loop copies positions to
+ * one of preallocated frames and hands it to writer thread, which copies it
+ * to memory mapped file. When writer falls behind and every frame is in
+ * queue, frames are dropped instead of waiting for it.
+ *
+ * File starts with {@link #MAGIC} and {@link #VERSION}. Every frame has
+ * {@link #FRAME}, number of nodes, generation and nanoseconds since recording
+ * started, followed by x, y and z of every node in order of
+ * {@link delma.graph.visualisation.entity.Node#getId()}. Nodes that aren't
+ * simulated have NaN as position. Generation changes when ids start to mean
+ * other nodes, like when layout moves to finer level. File is mapped in large
+ * regions ahead of writing, so unused space after last frame is zeroes until
+ * recorder is closed. {@link TrajectoryReader} stops at first thing that
+ * isn't whole frame, so recordings cut by crash can be read too.
+ *
+ * @author delma
+ */
+public class TrajectoryRecorder implements Closeable {
+
+    static final int MAGIC = 0x47565452;
+    static final int VERSION = 1;
+    static final int HEADER = 2 * Integer.BYTES;
+    static final int FRAME = 0x46524d45;
+    static final int FRAME_HEADER = 3 * Integer.BYTES + Long.BYTES;
+    static final int FLOATS = 3;
+    private static final long REGION = 64 << 20;
+    private static final int FRAMES = 8;
+
+    private final FileChannel channel;
+    private final BlockingQueue<Frame> free;
+    private final BlockingQueue<Frame> queued;
+    private final Thread writer;
+    private final long start;
+    private MappedByteBuffer region;
+    private long position;
+    private volatile IOException failure;
+    private volatile int dropped;
+    private volatile boolean closed;
+
+    /**
+     * Creates or replaces file and starts writer thread.
+     *
+     * @param path file to record to
+     * @throws IOException if file can't be created
+     */
+    public TrajectoryRecorder(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        free = new ArrayBlockingQueue<>(FRAMES);
+        queued = new ArrayBlockingQueue<>(FRAMES + 1);
+        for (int i = 0; i < FRAMES; i++) {
+            free.add(new Frame());
+        }
+        try {
+            region(HEADER).putInt(MAGIC).putInt(VERSION);
+            position = HEADER;
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        start = System.nanoTime();
+        writer = new Thread(this::write, "trajectory-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Copies positions of nodes to free frame and queues it for writing.
+     * Never waits for writer.
+     *
+     * @param generation changes when ids start to mean other nodes
+     * @param count number of ids
+     * @param position gives position of node with id, or null if it isn't
+     * simulated
+     * @return whether frame was recorded, false if it was dropped
+     */
+    public boolean record(int generation, int count, IntFunction<Vector3f> position) {
+        Frame frame = closed || failure != null ? null : free.poll();
+        if (frame == null) {
+            dropped++;
+            return false;
+        }
+        frame.set(generation, System.nanoTime() - start, count);
+        for (int id = 0, i = 0; id < count; id++) {
+            Vector3f pos = position.apply(id);
+            frame.positions[i++] = pos == null ? Float.NaN : pos.x;
+            frame.positions[i++] = pos == null ? Float.NaN : pos.y;
+            frame.positions[i++] = pos == null ? Float.NaN : pos.z;
+        }
+        queued.add(frame);
+        return true;
+    }
+
+    /**
+     * @return how many frames have been dropped because writer fell behind
+     */
+    public int getDropped() {
+        return dropped;
+    }
+
+    private void write() {
+        try {
+            for (Frame frame; (frame = queued.take()) != Frame.END;) {
+                if (failure == null) {
+                    try {
+                        write(frame);
+                    } catch (IOException ex) {
+                        failure = ex;
+                    }
+                }
+                free.add(frame);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Frame frame) throws IOException {
+        int floats = FLOATS * frame.size;
+        ByteBuffer out = region(FRAME_HEADER + (long) floats * Float.BYTES);
+        out.putInt(FRAME).putInt(frame.size).putInt(frame.generation).putLong(frame.time);
+        FloatBuffer positions = out.asFloatBuffer();
+        positions.put(frame.positions, 0, floats);
+        out.position(out.position() + floats * Float.BYTES);
+        position += FRAME_HEADER + floats * Float.BYTES;
+    }
+
+    /**
+     * @return mapped buffer at end of file with at least given bytes left
+     */
+    private ByteBuffer region(long bytes) throws IOException {
+        if (region == null || region.remaining() < bytes) {
+            if (region != null) {
+                region.force();
+            }
+            region = channel.map(MapMode.READ_WRITE, position, Math.max(REGION, bytes));
+        }
+        return region;
+    }
+
+    /**
+     * Waits for queued frames to be written and cuts unused space from end of
+     * file.
+     *
+     * @throws IOException if some frame couldn't be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queued.add(Frame.END);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            region.force();
+            try {
+                channel.truncate(position);
+            } catch (IOException ex) {
+                // Some platforms can't truncate mapped files, reader stops at unused space anyway
+            }
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Positions of nodes at one moment.
+     */
+    public static class Frame {
+
+        private static final Frame END = new Frame();
+
+        private int generation;
+        private long time;
+        private int size;
+        private float[] positions = new float[0];
+
+        Frame() {
+        }
+
+        void set(int generation, long time, int count) {
+            this.generation = generation;
+            this.time = time;
+            size = count;
+            if (positions.length < FLOATS * count) {
+                positions = new float[FLOATS * count];
+            }
+        }
+
+        float[] getPositions() {
+            return positions;
+        }
+
+        /**
+         * @return generation of ids
+         */
+        public int getGeneration() {
+            return generation;
+        }
+
+        /**
+         * @return nanoseconds since recording started
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return number of ids
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param id id of node
+         * @return whether node was simulated
+         */
+        public boolean contains(int id) {
+            return !Float.isNaN(positions[FLOATS * id]);
+        }
+
+        /**
+         * @param id id of node
+         * @param into vector to set
+         * @return given vector set to position of node
+         */
+        public Vector3f getPosition(int id, Vector3f into) {
+            int i = FLOATS * id;
+            into.set(positions[i], positions[i + 1], positions[i + 2]);
+            return into;
+        }
+    }
+}
@@ -6,10 +6,16 @@ import delma.graph.visualisation.App;
 import delma.graph.visualisation.Model;
 import delma.graph.visualisation.Renderer;
 import delma.graph.visualisation.Vertex;
+import delma.tree.Octree;
 import delma.util.MathUtil;
-import java.util.ArrayList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.util.vector.Vector3f;
 
@@ -19,9 +25,21 @@ import org.lwjgl.util.vector.Vector3f;
  */
 public class Node implements Entity {
 
-    private static final Model model;
+    /**
+     * How many bytes {@link #writeState(DataOutput)} writes.
+     */
+    public static final int STATE_BYTES = 7 * Float.BYTES + 2;
 
-    static {
+    /**
+     * Model is created when it is needed first time, so that nodes can be
+     * created and read without GL context.
+     */
+    private static class Shared {
+
+        private static final Model MODEL = createModel();
+    }
+
+    private static Model createModel() {
         int rings = 10;
         int sectors = 10;
         Vertex[] vertices = new Vertex[rings * sectors];
@@ -83,12 +101,13 @@ public class Node implements Entity {
 //            0, 1, 2,
 //            2, 3, 0
 //        };
-        model = Renderer.createModel(vertices, indices);
+        return Renderer.createModel(vertices, indices);
     }
 
     private Random rand;
     private Graph<Object, Object> graph;
     private Graph.Node<Object> node;
+    private int id = -1;
     private App context;
     private float temperature = 1;
     private boolean halt;
@@ -101,6 +120,11 @@ public class Node implements Entity {
     private Vector3f velocity;
     private Vector3f acceleration;
 
+    private final Vector3f force = new Vector3f();
+    private final Vector3f velocityDiff = new Vector3f();
+    private final Consumer<Octree.Node<Entity>> repulse = this::repulse;
+    private final IntConsumer spring = this::spring;
+
     public Node() {
         halt = true;
         pos = new Vector3f();
@@ -110,6 +134,7 @@ public class Node implements Entity {
         this.context = app;
         this.graph = graph;
         this.node = node;
+        this.id = graph.getId(node);
         this.pos = new Vector3f();
     }
 
@@ -117,16 +142,25 @@ public class Node implements Entity {
         this.context = app;
         this.graph = graph;
         this.node = node;
+        this.id = graph.getId(node);
         this.pos = new Vector3f(pos);
     }
 
+    /**
+     * @return model shared by all nodes, created with GL context of calling
+     * thread when nodes are used first time
+     */
+    public static Model getSharedModel() {
+        return Shared.MODEL;
+    }
+
     public void setTemperature(float temperature) {
         this.temperature = temperature;
     }
 
     @Override
     public Model getModel() {
-        return model;
+        return Shared.MODEL;
     }
 
     @Override
@@ -150,15 +184,25 @@ public class Node implements Entity {
         return modelMatrix;
     }
 
+    /**
+     * Does nothing if node is already created so that state read by
+     * {@link #readState(DataInput)} survives adding node to pool. Velocity set
+     * before creating is kept.
+     */
     @Override
     public void create() {
+        if (rand != null) {
+            return;
+        }
         rand = new Random();
 
         scale = new Vector3f(0.5f, 0.5f, 0.5f);
         angle = new Vector3f(0, 0, 0);
         start = true;
 
-        velocity = new Vector3f();
+        if (velocity == null) {
+            velocity = new Vector3f();
+        }
         acceleration = new Vector3f();
     }
 
@@ -191,41 +235,48 @@ public class Node implements Entity {
     private final float tressHold = 0.9f;
 
     private void repulsion() {
-        context.getOctree().forEach(pos, tressHold, n -> {
-            List<Vector3f> positions = new ArrayList<>();
-            if (n.getData().isEmpty()) {
-                positions.add(n.getMassCenter());
-            } else {
-                n.getData()
-                        .stream()
-                        .map(e -> e.getPosition())
-                        .forEach(positions::add);
+        context.getOctree().forEach(pos, tressHold, repulse);
+    }
+
+    private void repulse(Octree.Node<Entity> n) {
+        List<Entity> data = n.getData();
+        if (data.isEmpty()) {
+            repulse(n.getMassCenter());
+        } else {
+            for (int i = 0; i < data.size(); i++) {
+                repulse(data.get(i).getPosition());
             }
-            positions.forEach(vec -> {
-                Vector3f force = Vector3f.sub(vec, pos, null);
-                float dist = normalise(force);
-                force.scale((float) (MathUtil.Ke * 0.001f) / (dist * dist));
-                Vector3f.add(force, acceleration, acceleration);
-            });
-        });
+        }
     }
 
+    private void repulse(Vector3f vec) {
+        Vector3f.sub(vec, pos, force);
+        float dist = normalise(force);
+        force.scale((float) (MathUtil.Ke * 0.001f) / (dist * dist));
+        Vector3f.add(force, acceleration, acceleration);
+    }
+
+    /**
+     * Neighbours are walked by id and forces are computed in reused vectors
+     * so that layout doesn't create garbage every frame.
+     */
     private void springs() {
-        graph.getNeighbourNodes(node)
-                .forEach(n -> {
-                    Node simNode = context.getNode(n);
-                    Vector3f force = Vector3f.sub(simNode.getPosition(), pos, null);
-                    float dist = normalise(force);
-                    float springyness = 100000f;
-                    float springLength = 2000;
-                    force.scale(-springyness * (dist - springLength));
+        graph.forEachNeighbour(id, spring);
+    }
 
-                    Vector3f velocityDiff = Vector3f.sub(velocity, simNode.getVelocity(), null);
-                    velocityDiff.scale(0.5f);
-                    Vector3f.sub(force, velocityDiff, force);
+    private void spring(int other) {
+        Node simNode = context.getNode(other);
+        Vector3f.sub(simNode.getPosition(), pos, force);
+        float dist = normalise(force);
+        float springyness = 100000f;
+        float springLength = 2000;
+        force.scale(-springyness * (dist - springLength));
 
-                    Vector3f.add(force, acceleration, acceleration);
-                });
+        Vector3f.sub(velocity, simNode.getVelocity(), velocityDiff);
+        velocityDiff.scale(0.5f);
+        Vector3f.sub(force, velocityDiff, force);
+
+        Vector3f.add(force, acceleration, acceleration);
     }
 
     private float normalise(Vector3f localVector) {
@@ -252,6 +303,19 @@ public class Node implements Entity {
         return node;
     }
 
+    /**
+     * @return id of simulated node in its graph
+     */
+    @JsonIgnore()
+    public int getId() {
+        return id;
+    }
+
+    @JsonIgnore()
+    public Graph<Object, Object> getGraph() {
+        return graph;
+    }
+
     @Override
     public void run() {
     }
@@ -261,8 +325,82 @@ public class Node implements Entity {
         return velocity;
     }
 
+    public void setVelocity(Vector3f velocity) {
+        this.velocity = new Vector3f(velocity);
+    }
+
     @JsonIgnore()
     public boolean isReady() {
         return halt;
     }
+
+    /**
+     * Copies position and velocity to array, so that state of many nodes can
+     * be copied at once without creating objects.
+     *
+     * @param into array to copy to
+     * @param offset index of x of position, velocity follows position
+     */
+    public void copyLayout(float[] into, int offset) {
+        into[offset] = pos.x;
+        into[offset + 1] = pos.y;
+        into[offset + 2] = pos.z;
+        if (velocity != null) {
+            into[offset + 3] = velocity.x;
+            into[offset + 4] = velocity.y;
+            into[offset + 5] = velocity.z;
+        } else {
+            Arrays.fill(into, offset + 3, offset + 6, 0);
+        }
+    }
+
+    /**
+     * Can be called on other thread than one simulating this node.
+     *
+     * @param layout array written by {@link #copyLayout(float[], int)}
+     * @param offset offset that was given to it
+     * @return halted copy of this node with copied position and velocity
+     */
+    public Node snapshot(float[] layout, int offset) {
+        Node copy = new Node();
+        copy.node = node;
+        copy.id = id;
+        copy.pos.set(layout[offset], layout[offset + 1], layout[offset + 2]);
+        copy.velocity = new Vector3f(layout[offset + 3], layout[offset + 4], layout[offset + 5]);
+        return copy;
+    }
+
+    /**
+     * Writes everything that changes while simulating so that
+     * {@link #readState(DataInput)} can continue from same point.
+     *
+     * @param out output to write to
+     * @throws IOException if writing fails
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeFloat(pos.x);
+        out.writeFloat(pos.y);
+        out.writeFloat(pos.z);
+        out.writeFloat(velocity.x);
+        out.writeFloat(velocity.y);
+        out.writeFloat(velocity.z);
+        out.writeFloat(temperature);
+        out.writeBoolean(halt);
+        out.writeBoolean(start);
+    }
+
+    /**
+     * Reads state written by {@link #writeState(DataOutput)}. Node has to be
+     * created first.
+     *
+     * @param in input to read from
+     * @throws IOException if reading fails
+     */
+    public void readState(DataInput in) throws IOException {
+        pos.set(in.readFloat(), in.readFloat(), in.readFloat());
+        velocity.set(in.readFloat(), in.readFloat(), in.readFloat());
+        temperature = in.readFloat();
+        halt = in.readBoolean();
+        start = in.readBoolean();
+    }
 }
@@ -1,12 +1,19 @@
 package delma.set;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
+ * This is union-find structure with union by rank and path compression.
+ *
+ * Removed elements stay in the forest as ghosts so that their descendants keep
+ * their roots. Members of each set are also kept in circular list so that set
+ * can be enumerated and has live representative even if its root is removed.
  *
  * @author delma
  * @param <T>
@@ -14,11 +21,10 @@ import java.util.Set;
 public class DisjointSet<T> implements Iterable<Set<T>> {
 
     private final Map<T, Node<T>> nodes;
-    private final Map<T, Set<T>> sets;
+    private int count;
 
     public DisjointSet() {
         nodes = new HashMap<>();
-        sets = new HashMap<>();
     }
 
     public boolean add(T object) {
@@ -26,30 +32,34 @@ public class DisjointSet<T> implements Iterable<Set<T>> {
             return false;
         }
         nodes.put(object, new Node<>(object));
+        count++;
         return true;
     }
 
+    /**
+     * @param object element to look for
+     * @return representative of set element belongs to or null if it isn't in
+     * this structure
+     */
     public T find(T object) {
         Node<T> node = nodes.get(object);
-        if (node == null || node.removed) {
+        if (node == null) {
             return null;
         }
-        return findInter(node).data;
+        return findRoot(node).member.data;
     }
 
-    private Node<T> findInter(Node<T> node) {
-        if (node.parent == node) {
-            if (node.removed) {
-                return node.next;
-            }
-            return node;
+    private Node<T> findRoot(Node<T> node) {
+        Node<T> root = node;
+        while (root.parent != root) {
+            root = root.parent;
         }
-        get(node.parent).remove(node.data);
-        node.parent = findInter(node);
-        if (!get(node).isEmpty() || !node.removed) {
-            get(node.parent).add(node.data);
+        while (node.parent != root) {
+            Node<T> next = node.parent;
+            node.parent = root;
+            node = next;
         }
-        return node.parent;
+        return root;
     }
 
     public void union(T first, T second) {
@@ -58,9 +68,9 @@ public class DisjointSet<T> implements Iterable<Set<T>> {
         if (firstNode == null || secondNode == null) {
             return;
         }
-        Node<T> firstRoot = findInter(firstNode);
-        Node<T> secondRoot = findInter(secondNode);
-        if (firstRoot == null || secondRoot == null) {
+        Node<T> firstRoot = findRoot(firstNode);
+        Node<T> secondRoot = findRoot(secondNode);
+        if (firstRoot == secondRoot) {
             return;
         }
         if (firstRoot.rank < secondRoot.rank) {
@@ -73,35 +83,70 @@ public class DisjointSet<T> implements Iterable<Set<T>> {
         unionRoot(secondRoot, firstRoot);
     }
 
-    private void unionRoot(Node<T> first, Node<T> second) {
-        first.parent = second;
-        get(second).add(first.data);
-        first.next = second.next;
-        second.next = first;
-        first.prev = second;
+    private void unionRoot(Node<T> child, Node<T> root) {
+        child.parent = root;
+        Node<T> first = root.member;
+        Node<T> second = child.member;
+        Node<T> firstNext = first.next;
+        Node<T> secondNext = second.next;
+        first.next = secondNext;
+        secondNext.prev = first;
+        second.next = firstNext;
+        firstNext.prev = second;
+        root.size += child.size;
+        child.member = null;
+        count--;
     }
 
     public boolean remove(T object) {
-        Node<T> node = nodes.get(object);
+        Node<T> node = nodes.remove(object);
         if (node == null) {
             return false;
         }
+        Node<T> root = findRoot(node);
+        root.size--;
+        if (root.size == 0) {
+            root.member = null;
+            count--;
+        } else if (root.member == node) {
+            root.member = node.next;
+        }
         node.prev.next = node.next;
         node.next.prev = node.prev;
-        node.removed = true;
-        if (get(node).isEmpty()) {
-            get(node.parent).remove(node.data);
-        }
+        node.next = node;
+        node.prev = node;
         return true;
     }
 
-    @Override
-    public Iterator<Set<T>> iterator() {
-        return sets.values().iterator();
+    /**
+     * @return how many disjoint sets there are
+     */
+    public int count() {
+        return count;
+    }
+
+    public void clear() {
+        nodes.clear();
+        count = 0;
     }
 
-    private Set<T> get(Node<T> node) {
-        return sets.computeIfAbsent(node.data, k -> new HashSet<>());
+    @Override
+    public Iterator<Set<T>> iterator() {
+        List<Set<T>> result = new ArrayList<>(count);
+        Set<Node<T>> roots = new HashSet<>();
+        nodes.values().forEach(node -> {
+            Node<T> root = findRoot(node);
+            if (roots.add(root)) {
+                Set<T> set = new HashSet<>(root.size * 2);
+                Node<T> cur = root.member;
+                do {
+                    set.add(cur.data);
+                    cur = cur.next;
+                } while (cur != root.member);
+                result.add(set);
+            }
+        });
+        return result.iterator();
     }
 
     int size() {
@@ -110,11 +155,12 @@ public class DisjointSet<T> implements Iterable<Set<T>> {
 
     private static class Node<T> {
 
-        private Node parent;
-        private Node prev;
-        private Node next;
-        private boolean removed;
+        private Node<T> parent;
+        private Node<T> prev;
+        private Node<T> next;
+        private Node<T> member;
         private int rank;
+        private int size;
         private final T data;
 
         Node(T object) {
@@ -122,8 +168,9 @@ public class DisjointSet<T> implements Iterable<Set<T>> {
             next = this;
             prev = this;
             parent = this;
+            member = this;
             rank = 0;
-            removed = false;
+            size = 1;
         }
     }
 }
@@ -0,0 +1,150 @@
+package delma.set;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * This is set that keeps its elements in dense array so that they can be
+ * accessed by index and sampled in constant time. Removal moves last element
+ * to the place of removed one so order of elements isn't stable.
+ *
+ * @author delma
+ * @param <T>
+ */
+public class IndexedSet<T> extends AbstractSet<T> {
+
+    private final ArrayList<T> elements;
+    private Map<T, Integer> indices;
+    private int capacity;
+
+    public IndexedSet() {
+        this(16);
+    }
+
+    public IndexedSet(int expectedSize) {
+        elements = new ArrayList<>(expectedSize);
+        indices = new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+        capacity = expectedSize;
+    }
+
+    /**
+     * Makes room for given amount of elements so that adding them doesn't
+     * rehash more than once.
+     *
+     * @param expectedSize how many elements set is going to have
+     */
+    public void ensureCapacity(int expectedSize) {
+        if (expectedSize <= capacity) {
+            return;
+        }
+        elements.ensureCapacity(expectedSize);
+        Map<T, Integer> resized = new HashMap<>((int) (expectedSize / 0.75f) + 1);
+        resized.putAll(indices);
+        indices = resized;
+        capacity = expectedSize;
+    }
+
+    @Override
+    public boolean add(T object) {
+        if (indices.containsKey(object)) {
+            return false;
+        }
+        indices.put(object, elements.size());
+        elements.add(object);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        Integer index = indices.remove(object);
+        if (index == null) {
+            return false;
+        }
+        T last = elements.remove(elements.size() - 1);
+        if (index < elements.size()) {
+            elements.set(index, last);
+            indices.put(last, index);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return indices.containsKey(object);
+    }
+
+    /**
+     * @param object element to look up
+     * @return current index of element or -1 if it isn't in this set
+     */
+    public int indexOf(Object object) {
+        Integer index = indices.get(object);
+        return index == null ? -1 : index;
+    }
+
+    public T get(int index) {
+        return elements.get(index);
+    }
+
+    /**
+     * Gets uniformly random element.
+     *
+     * @param rand source of randomness
+     * @return random element
+     * @throws NoSuchElementException if set is empty
+     */
+    public T getRandom(Random rand) {
+        if (elements.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return elements.get(rand.nextInt(elements.size()));
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+        indices.clear();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int cursor = 0;
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return cursor < elements.size();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = cursor;
+                return elements.get(cursor++);
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                IndexedSet.this.remove(elements.get(last));
+                cursor = last;
+                last = -1;
+            }
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author delma
+ */
+public class AdjacencyTest {
+
+    private Node<Object> hub;
+    private List<Edge<Object, Object>> edges;
+    private Adjacency<Object, Object> adjacency;
+
+    @Before
+    public void setUp() {
+        hub = new Node<>(0);
+        edges = new ArrayList<>();
+        for (int i = 1; i <= Adjacency.THRESHOLD * 2; i++) {
+            edges.add(new Edge<>(hub, new Node<>(i), null));
+        }
+        adjacency = new Adjacency<>();
+    }
+
+    @Test
+    public void testSwitchesToIndex() {
+        for (int i = 0; i < Adjacency.THRESHOLD; i++) {
+            adjacency.insert(edges.get(i));
+        }
+        assertFalse(adjacency.isIndexed());
+        adjacency.insert(edges.get(Adjacency.THRESHOLD));
+        assertTrue(adjacency.isIndexed());
+        assertEquals(Adjacency.THRESHOLD + 1, adjacency.size());
+        for (int i = 0; i <= Adjacency.THRESHOLD; i++) {
+            assertTrue(adjacency.contains(edges.get(i)));
+        }
+    }
+
+    @Test
+    public void testSwitchesBackToList() {
+        edges.forEach(adjacency::insert);
+        assertTrue(adjacency.isIndexed());
+        for (int i = 0; i < edges.size() - 1; i++) {
+            assertTrue(adjacency.delete(edges.get(i)));
+            assertFalse(adjacency.contains(edges.get(i)));
+        }
+        assertFalse(adjacency.isIndexed());
+        assertEquals(1, adjacency.size());
+        assertTrue(adjacency.get(0) == edges.get(edges.size() - 1));
+        assertFalse(adjacency.delete(edges.get(0)));
+    }
+
+    @Test
+    public void testHubInGraph() {
+        VisualisableGraph graph = new VisualisableGraph();
+        edges.forEach(graph::add);
+        assertEquals(edges.size(), graph.getNeighbourEdges(hub).size());
+        edges.forEach(e -> assertTrue(graph.remove(e)));
+        assertTrue(graph.getNeighbourEdges(hub).isEmpty());
+        assertEquals(0, graph.edgeCount());
+    }
+}
@@ -0,0 +1,66 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares loading edges one by one against bulk loading them.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=delma.graph.BulkLoadBenchmark -Dexec.args="nodes edges"
+ *
+ * @author delma
+ */
+public class BulkLoadBenchmark {
+
+    public static void main(String[] args) {
+        int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 300000;
+        int edgeCount = args.length > 1 ? Integer.parseInt(args[1]) : 1200000;
+        Random rand = new Random(1);
+        List<Node<Object>> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(new Node<>(i));
+        }
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        List<Edge<Object, Object>> edges = new ArrayList<>(edgeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            from[i] = rand.nextInt(nodeCount);
+            to[i] = rand.nextInt(nodeCount);
+            edges.add(new Edge<>(nodes.get(from[i]), nodes.get(to[i]), null));
+        }
+        System.out.println("nodes " + nodeCount + ", edges " + edgeCount + ", cores " + Runtime.getRuntime().availableProcessors());
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            Graph<Object, Object> graph = new VisualisableGraph();
+            edges.forEach(graph::add);
+            long single = millis(start);
+
+            start = System.nanoTime();
+            graph = new VisualisableGraph();
+            graph.addAll(edges);
+            long collection = millis(start);
+
+            start = System.nanoTime();
+            graph = new VisualisableGraph();
+            graph.addAll(nodes, from, to, null);
+            long arrays = millis(start);
+
+            start = System.nanoTime();
+            graph = new VisualisableGraph();
+            graph.addAllParallel(nodes, from, to, null);
+            long parallel = millis(start);
+
+            System.out.println("round " + round + ": add " + single + " ms, addAll " + collection
+                    + " ms, arrays " + arrays + " ms, parallel " + parallel + " ms");
+        }
+    }
+
+    private static long millis(long start) {
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
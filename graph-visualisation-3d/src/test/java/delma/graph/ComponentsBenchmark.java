@@ -0,0 +1,76 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares parallel component labeling against single threaded depth first
+ * search over hashed adjacency that getSubgraphs used to do.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=delma.graph.ComponentsBenchmark -Dexec.args="nodes edges"
+ *
+ * @author delma
+ */
+public class ComponentsBenchmark {
+
+    public static void main(String[] args) {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        int edges = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+        Random rand = new Random(1);
+        Graph<Object, Object> graph = new VisualisableGraph();
+        for (int i = 0; i < nodes; i++) {
+            graph.add(new Node<>(i));
+        }
+        for (int i = 0; i < edges; i++) {
+            graph.add(new Edge<>(new Node<>(rand.nextInt(nodes)), new Node<>(rand.nextInt(nodes)), null));
+        }
+        System.out.println("nodes " + nodes + ", edges " + graph.edgeCount() + ", cores " + Runtime.getRuntime().availableProcessors());
+
+        long start = System.nanoTime();
+        CsrGraph<Object, Object> csr = new CsrGraph<>(graph);
+        System.out.println("csr build: " + millis(start) + " ms");
+
+        for (int round = 0; round < 5; round++) {
+            start = System.nanoTime();
+            int dfs = depthFirst(graph);
+            long dfsTime = millis(start);
+
+            start = System.nanoTime();
+            int parallel = Components.count(Components.componentOf(csr));
+            long parallelTime = millis(start);
+
+            System.out.println("round " + round + ": dfs " + dfsTime + " ms (" + dfs + "), parallel " + parallelTime + " ms (" + parallel + ")");
+        }
+    }
+
+    private static int depthFirst(Graph<Object, Object> graph) {
+        Set<Node<Object>> remaining = new HashSet<>(graph.getNodes());
+        Deque<Node<Object>> stack = new ArrayDeque<>();
+        int components = 0;
+        for (Node<Object> start : graph) {
+            if (!remaining.contains(start)) {
+                continue;
+            }
+            components++;
+            stack.push(start);
+            while (!stack.isEmpty()) {
+                Node<Object> cur = stack.pop();
+                if (!remaining.remove(cur)) {
+                    continue;
+                }
+                graph.getNeighbourEdges(cur).forEach(e -> stack.push(e.getOther(cur).get()));
+            }
+        }
+        return components;
+    }
+
+    private static long millis(long start) {
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
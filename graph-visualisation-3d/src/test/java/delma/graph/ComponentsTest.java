@@ -0,0 +1,49 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author delma
+ */
+public class ComponentsTest {
+
+    @Test
+    public void testComponentOf() {
+        Graph<Object, Object> graph = new VisualisableGraph();
+        graph.add(new Edge<>(new Node<>(0), new Node<>(1), null));
+        graph.add(new Node<>(2));
+        graph.add(new Edge<>(new Node<>(4), new Node<>(3), null));
+        graph.add(new Edge<>(new Node<>(3), new Node<>(0), null));
+        int[] componentOf = Components.componentOf(new CsrGraph<>(graph));
+        assertArrayEquals(new int[]{0, 0, 1, 0, 0}, componentOf);
+        assertEquals(2, Components.count(componentOf));
+    }
+
+    @Test
+    public void testAgreesWithIndexOnLargeGraph() {
+        Random rand = new Random(42);
+        int nodes = 20000;
+        Graph<Object, Object> graph = new VisualisableGraph();
+        for (int i = 0; i < nodes; i++) {
+            graph.add(new Node<>(i));
+        }
+        for (int i = 0; i < nodes; i++) {
+            graph.add(new Edge<>(new Node<>(rand.nextInt(nodes)), new Node<>(rand.nextInt(nodes)), null));
+        }
+        CsrGraph<Object, Object> csr = new CsrGraph<>(graph);
+        int[] componentOf = Components.componentOf(csr);
+        assertEquals(graph.componentCount(), Components.count(componentOf));
+        for (int i = 0; i < 1000; i++) {
+            int a = rand.nextInt(nodes);
+            int b = rand.nextInt(nodes);
+            boolean same = graph.getComponent(csr.getNode(a)).equals(graph.getComponent(csr.getNode(b)));
+            assertEquals(same, componentOf[a] == componentOf[b]);
+        }
+    }
+}
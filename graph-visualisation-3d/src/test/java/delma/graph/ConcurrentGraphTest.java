@@ -0,0 +1,140 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author delma
+ */
+public class ConcurrentGraphTest {
+
+    private ConcurrentGraph<Object, Object> graph;
+
+    @Before
+    public void setUp() {
+        graph = new ConcurrentGraph<>();
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        Node<Object> node1 = new Node<>(1);
+        Node<Object> node2 = new Node<>(2);
+        Edge<Object, Object> edge = new Edge<>(node1, node2, null);
+        graph.add(edge);
+        assertEquals(2, graph.size());
+        assertEquals(1, graph.edgeCount());
+        assertTrue(graph.getNeighbourNodes(node1).contains(node2));
+        assertEquals(node2, graph.getNode(graph.getId(node2)));
+
+        assertTrue(graph.remove(node2));
+        assertFalse(graph.contains(node2));
+        assertEquals(0, graph.edgeCount());
+        assertTrue(graph.getNeighbourEdges(node1).isEmpty());
+    }
+
+    @Test
+    public void testAddWhileIterating() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 20000;
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int offset = p * perProducer;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    graph.add(new Edge<>(new Node<>(offset + i), new Node<>(offset + i + 1), null));
+                }
+            }));
+        }
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                for (Node<Object> node : graph) {
+                    graph.getNeighbourNodes(node).size();
+                }
+            }
+        });
+        reader.start();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals(producers * perProducer, graph.edgeCount());
+        assertEquals(producers * perProducer + 1, graph.size());
+        assertEquals(1, graph.componentCount());
+    }
+
+    @Test
+    public void testAddAndRemoveConcurrently() throws InterruptedException {
+        int nodes = 8;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            threads.add(new Thread(() -> {
+                Random rand = new Random(seed);
+                for (int i = 0; i < 200000; i++) {
+                    Node<Object> from = new Node<>(rand.nextInt(nodes));
+                    Node<Object> to = new Node<>(rand.nextInt(nodes));
+                    switch (rand.nextInt(4)) {
+                        case 0:
+                            graph.remove(from);
+                            break;
+                        case 1:
+                            graph.remove(new Edge<>(from, to, null));
+                            break;
+                        default:
+                            graph.add(new Edge<>(from, to, null));
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Set<Edge<Object, Object>> edges = new HashSet<>(graph.getEdges());
+        for (Node<Object> node : graph) {
+            for (Edge<Object, Object> edge : graph.getNeighbourEdges(node)) {
+                assertTrue(edges.contains(edge));
+            }
+        }
+        for (Edge<Object, Object> edge : edges) {
+            assertTrue(graph.contains(edge.getFrom()));
+            assertTrue(graph.contains(edge.getTo()));
+            assertTrue(graph.getNeighbourEdges(edge.getFrom()).contains(edge));
+            assertTrue(graph.getNeighbourEdges(edge.getTo()).contains(edge));
+        }
+    }
+
+    @Test
+    public void testGetTranspose() {
+        Node<Object> a = new Node<>(1);
+        Node<Object> b = new Node<>(2);
+        graph.add(new Edge<>(a, b, "ab"));
+        graph.add(new Edge<>(b, b, "bb"));
+        Graph<Object, Object> transpose = graph.getTranspose();
+        assertTrue(transpose.getTranspose() == graph);
+        assertEquals(2, transpose.edgeCount());
+        assertTrue(transpose.getEdges().contains(new Edge<>(b, a, "ab")));
+        assertFalse(transpose.getEdges().contains(new Edge<>(a, b, "ab")));
+        assertEquals(0, transpose.getOutEdges(a).size());
+        assertEquals(new Edge<>(b, a, "ab"), transpose.getInEdges(a).iterator().next());
+        transpose.add(new Edge<>(a, b, "ba"));
+        assertTrue(graph.getEdges().contains(new Edge<>(b, a, "ba")));
+    }
+}
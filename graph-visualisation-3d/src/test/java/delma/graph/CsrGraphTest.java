@@ -0,0 +1,145 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author delma
+ */
+public class CsrGraphTest {
+
+    private Node<Object> a;
+    private Node<Object> b;
+    private Node<Object> c;
+    private Node<Object> d;
+    private CsrGraph<Object, Object> graph;
+
+    @Before
+    public void setUp() {
+        a = new Node<>(1);
+        b = new Node<>(2);
+        c = new Node<>(3);
+        d = new Node<>(4);
+        Graph<Object, Object> source = new VisualisableGraph();
+        source.add(new Edge<>(a, b, "ab"));
+        source.add(new Edge<>(a, c, "ac"));
+        source.add(new Edge<>(c, b, "cb"));
+        source.add(d);
+        graph = new CsrGraph<>(source);
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(4, graph.size());
+        assertEquals(3, graph.edgeCount());
+        assertEquals(3, graph.getEdges().size());
+    }
+
+    @Test
+    public void testIds() {
+        for (Node<Object> node : graph) {
+            assertEquals(node, graph.getNode(graph.getId(node)));
+        }
+        assertEquals(-1, graph.getId(new Node<>(5)));
+    }
+
+    @Test
+    public void testForEachNeighbour() {
+        Set<Integer> ids = new HashSet<>();
+        graph.forEachNeighbour(graph.getId(c), ids::add);
+        assertEquals(new HashSet<>(Arrays.asList(graph.getId(a), graph.getId(b))), ids);
+        Set<Node<Object>> nodes = new HashSet<>();
+        graph.forEachNeighbour(c, nodes::add);
+        assertEquals(new HashSet<>(Arrays.asList(a, b)), nodes);
+    }
+
+    @Test
+    public void testDegrees() {
+        assertEquals(2, graph.outDegree(graph.getId(a)));
+        assertEquals(0, graph.inDegree(graph.getId(a)));
+        assertEquals(2, graph.inDegree(graph.getId(b)));
+        assertEquals(2, graph.degree(graph.getId(c)));
+        assertEquals(0, graph.degree(graph.getId(d)));
+    }
+
+    @Test
+    public void testGetNeighbourEdges() {
+        Collection<Edge<Object, Object>> edges = graph.getNeighbourEdges(c);
+        assertEquals(2, edges.size());
+        assertTrue(edges.contains(new Edge<>(a, c, "ac")));
+        assertTrue(edges.contains(new Edge<>(c, b, "cb")));
+    }
+
+    @Test
+    public void testGetNeighbourNodes() {
+        Collection<Node<Object>> nodes = graph.getNeighbourNodes(b);
+        assertEquals(2, nodes.size());
+        assertTrue(nodes.contains(a));
+        assertTrue(nodes.contains(c));
+        assertTrue(graph.getNeighbourNodes(d).isEmpty());
+    }
+
+    @Test
+    public void testGetEdges() {
+        Collection<Edge<Object, Object>> edges = graph.getEdges();
+        assertTrue(edges.contains(new Edge<>(a, b, "ab")));
+        assertTrue(edges.contains(new Edge<>(a, c, "ac")));
+        assertTrue(edges.contains(new Edge<>(c, b, "cb")));
+    }
+
+    @Test
+    public void testGetTranspose() {
+        Graph<Object, Object> transpose = graph.getTranspose();
+        Collection<Edge<Object, Object>> edges = transpose.getEdges();
+        assertEquals(3, edges.size());
+        assertTrue(edges.contains(new Edge<>(b, a, "ab")));
+        assertTrue(edges.contains(new Edge<>(c, a, "ac")));
+        assertTrue(edges.contains(new Edge<>(b, c, "cb")));
+        assertTrue(transpose.getTranspose() == graph);
+    }
+
+    @Test
+    public void testGetSubgraphs() {
+        Collection<Graph<Object, Object>> subgraphs = graph.getSubgraphs();
+        assertEquals(2, subgraphs.size());
+        assertEquals(2, graph.componentCount());
+        assertEquals(graph.getComponent(a), graph.getComponent(b));
+        assertFalse(graph.getComponent(a).equals(graph.getComponent(d)));
+        for (Graph<Object, Object> subgraph : subgraphs) {
+            if (subgraph.contains(d)) {
+                assertEquals(1, subgraph.size());
+            } else {
+                assertEquals(3, subgraph.size());
+                assertEquals(3, subgraph.getEdges().size());
+            }
+        }
+    }
+
+    @Test
+    public void testGetRandomEdge() {
+        Random rand = new Random(0);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(graph.getRandomEdge(b, rand).get().contains(b));
+        }
+        assertFalse(graph.getRandomEdge(d, rand).isPresent());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(graph.getEdges().contains(graph.getRandomEdge(rand).get()));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        graph.add(new Node<>(5));
+    }
+}
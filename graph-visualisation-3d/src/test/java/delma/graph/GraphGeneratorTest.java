@@ -0,0 +1,126 @@
+package delma.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author delma
+ */
+public class GraphGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Long> edges(GraphModel model) {
+        List<Long> edges = new ArrayList<>();
+        GraphGenerator.generate(model, (from, to) -> {
+            assertTrue(from >= 0 && from < model.nodeCount());
+            assertTrue(to >= 0 && to < model.nodeCount());
+            edges.add((long) from << 32 | to);
+        });
+        assertEquals(model.edgeCount(), edges.size());
+        return edges;
+    }
+
+    @Test
+    public void testReproducible() {
+        assertEquals(edges(GraphGenerator.gnm(1000, 200000, 7)), edges(GraphGenerator.gnm(1000, 200000, 7)));
+        assertFalse(edges(GraphGenerator.gnm(1000, 200000, 7)).equals(edges(GraphGenerator.gnm(1000, 200000, 8))));
+        assertEquals(edges(GraphGenerator.rmat(10, 100000, 3)), edges(GraphGenerator.rmat(10, 100000, 3)));
+    }
+
+    @Test
+    public void testGnmHasNoSelfLoops() {
+        for (long edge : edges(GraphGenerator.gnm(3, 10000, 1))) {
+            assertFalse((edge >>> 32) == (edge & 0xffffffffL));
+        }
+    }
+
+    @Test
+    public void testGrid() {
+        assertEquals(2 * 4 * 5 - 4 - 5, edges(GraphGenerator.grid(4, 5, false)).size());
+        assertEquals(2 * 4 * 5, edges(GraphGenerator.grid(4, 5, true)).size());
+        assertEquals(1, new HashSet<>(edges(GraphGenerator.grid(2, 1, true))).size());
+    }
+
+    @Test
+    public void testBarabasiAlbert() {
+        List<Long> edges = edges(GraphGenerator.barabasiAlbert(500, 3, 5));
+        assertEquals((500 - 3) * 3, edges.size());
+        assertEquals(edges.size(), new HashSet<>(edges).size());
+        for (long edge : edges) {
+            assertTrue((edge >>> 32) > (edge & 0xffffffffL));
+        }
+    }
+
+    @Test
+    public void testWattsStrogatz() {
+        List<Long> ring = edges(GraphGenerator.wattsStrogatz(100, 4, 0, 1));
+        assertEquals(200, ring.size());
+        assertTrue(ring.contains(99L << 32 | 1));
+        List<Long> rewired = edges(GraphGenerator.wattsStrogatz(100, 4, 0.5, 1));
+        assertEquals(200, rewired.size());
+        assertFalse(ring.equals(rewired));
+    }
+
+    @Test
+    public void testGenerateGraph() {
+        Graph<Object, Object> graph = new VisualisableGraph();
+        GraphGenerator.generate(graph, GraphGenerator.recursiveTree(1000, 2), i -> i, null);
+        assertEquals(1000, graph.size());
+        assertEquals(999, graph.edgeCount());
+        assertEquals(1, graph.componentCount());
+        Set<Object> labels = new HashSet<>();
+        graph.getNodes().forEach(node -> labels.add(node.getLabel()));
+        assertTrue(labels.contains(0) && labels.contains(999));
+    }
+
+    @Test
+    public void testLegacyGenerate() {
+        Graph<Object, Object> graph = new VisualisableGraph();
+        GraphGenerator.generate(graph, true, 100, 300, i -> i, i -> i);
+        assertEquals(100, graph.size());
+        assertEquals(1, graph.componentCount());
+        assertTrue(graph.edgeCount() > 250);
+    }
+
+    @Test
+    public void testWriteText() throws IOException {
+        GraphModel model = GraphGenerator.rmat(12, 300000, 4);
+        Path path = folder.newFile().toPath();
+        GraphGenerator.write(model, path, EdgeListWriter.Format.TEXT);
+        List<Long> read = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.US_ASCII)) {
+            String[] ids = line.split("\t");
+            read.add(Long.parseLong(ids[0]) << 32 | Long.parseLong(ids[1]));
+        }
+        assertEquals(edges(model), read);
+    }
+
+    @Test
+    public void testWriteBinary() throws IOException {
+        GraphModel model = GraphGenerator.barabasiAlbert(2000, 4, 4);
+        Path path = folder.newFile().toPath();
+        GraphGenerator.write(model, path, EdgeListWriter.Format.BINARY);
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        List<Long> read = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            read.add((long) buffer.getInt() << 32 | buffer.getInt());
+        }
+        assertEquals(edges(model), read);
+    }
+}
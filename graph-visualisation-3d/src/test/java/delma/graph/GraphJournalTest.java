@@ -0,0 +1,161 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author delma
+ */
+public class GraphJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path snapshot;
+    private ObservableGraph<Object, Object> graph;
+    private List<GraphDelta<Object, Object>> deltas;
+
+    @Before
+    public void setUp() {
+        snapshot = folder.getRoot().toPath().resolve("graph.bin");
+        graph = new ObservableGraph<>(new VisualisableGraph());
+        deltas = new ArrayList<>();
+        graph.subscribe(deltas::add);
+        for (int i = 0; i < 10; i++) {
+            graph.add(new Edge<>(new Node<>(i), new Node<>(i + 1), "e" + i));
+        }
+        graph.flush();
+        deltas.clear();
+    }
+
+    private static float[] layout(Node<Object> node) {
+        int i = node.getLabel() instanceof Integer ? (Integer) node.getLabel() : -1;
+        return new float[]{i, 2 * i, 3 * i, 0, 0, 0};
+    }
+
+    private List<GraphDelta<Object, Object>> changes() {
+        graph.flush();
+        List<GraphDelta<Object, Object>> result = new ArrayList<>(deltas);
+        deltas.clear();
+        return result;
+    }
+
+    private Graph<Object, Object> reopen(Map<Node<Object>, float[]> layout) throws IOException {
+        Graph<Object, Object> result = new VisualisableGraph();
+        GraphJournal.open(snapshot, result, layout::put).close();
+        return result;
+    }
+
+    private static void assertSameGraph(Graph<Object, Object> expected, Graph<Object, Object> actual) {
+        assertEquals(new HashSet<>(expected.getNodes()), new HashSet<>(actual.getNodes()));
+        assertEquals(new HashSet<>(expected.getEdges()), new HashSet<>(actual.getEdges()));
+    }
+
+    @Test
+    public void testChangesAreAppended() throws IOException {
+        try (GraphJournal<Object, Object> journal = GraphJournal.create(snapshot, graph, GraphJournalTest::layout)) {
+            long snapshotSize = Files.size(snapshot);
+            graph.remove(new Node<>(3));
+            graph.add(new Edge<>(new Node<>("x"), new Node<>(0), null));
+            journal.append(changes(), Collections.singletonMap(new Node<>(0), new float[]{9, 9, 9, 1, 1, 1}));
+            assertEquals(snapshotSize, Files.size(snapshot));
+            assertTrue(journal.size() < snapshotSize);
+            assertFalse(journal.needsCompaction());
+        }
+        Map<Node<Object>, float[]> layout = new HashMap<>();
+        assertSameGraph(graph, reopen(layout));
+        assertArrayEquals(new float[]{9, 9, 9, 1, 1, 1}, layout.get(new Node<>(0)), 0);
+        assertArrayEquals(new float[]{5, 10, 15, 0, 0, 0}, layout.get(new Node<>(5)), 0);
+    }
+
+    @Test
+    public void testNodesWithoutLayoutGetNone() throws IOException {
+        GraphJournal.create(snapshot, graph, node -> node.equals(new Node<>(3)) ? null : layout(node)).close();
+        Map<Node<Object>, float[]> layout = new HashMap<>();
+        reopen(layout);
+        assertFalse(layout.containsKey(new Node<>(3)));
+        assertArrayEquals(new float[]{4, 8, 12, 0, 0, 0}, layout.get(new Node<>(4)), 0);
+    }
+
+    @Test
+    public void testTornFrameIsDropped() throws IOException {
+        Path journalPath;
+        try (GraphJournal<Object, Object> journal = GraphJournal.create(snapshot, graph, GraphJournalTest::layout)) {
+            journalPath = journal.getPath();
+            graph.add(new Node<>("kept"));
+            journal.append(changes(), Collections.emptyMap());
+            graph.add(new Node<>("lost"));
+            journal.append(changes(), Collections.emptyMap());
+        }
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+        Graph<Object, Object> reopened = new VisualisableGraph();
+        try (GraphJournal<Object, Object> journal = GraphJournal.open(snapshot, reopened, (node, values) -> {
+        })) {
+            assertTrue(reopened.contains(new Node<>("kept")));
+            assertFalse(reopened.contains(new Node<>("lost")));
+            graph.remove(new Node<>("lost"));
+            graph.add(new Node<>("after"));
+            journal.append(changes(), Collections.emptyMap());
+        }
+        assertSameGraph(graph, reopen(new HashMap<>()));
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        Path copy = folder.getRoot().toPath().resolve("copy");
+        try (GraphJournal<Object, Object> journal = GraphJournal.create(snapshot, graph, GraphJournalTest::layout)) {
+            for (int round = 0; !journal.needsCompaction(); round++) {
+                for (int i = 0; i < 1000; i++) {
+                    graph.add(new Edge<>(new Node<>(round), new Node<>("n" + i), round));
+                }
+                graph.remove(new Node<>(round));
+                journal.append(changes(), Collections.emptyMap());
+            }
+            Files.copy(journal.getPath(), copy);
+            journal.compact(graph, GraphJournalTest::layout);
+            assertFalse(journal.needsCompaction());
+            assertEquals(8, Files.size(journal.getPath()));
+            assertSameGraph(graph, reopen(new HashMap<>()));
+
+            // Crash after snapshot was replaced but before journal was emptied
+            Files.copy(copy, journal.getPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        assertSameGraph(graph, reopen(new HashMap<>()));
+    }
+
+    @Test
+    public void testOpenWithoutFiles() throws IOException {
+        Graph<Object, Object> empty = new VisualisableGraph();
+        try (GraphJournal<Object, Object> journal = GraphJournal.open(snapshot, empty, (node, values) -> {
+        })) {
+            assertEquals(0, empty.size());
+            empty.add(new Node<>(1));
+            List<GraphDelta<Object, Object>> none = new ArrayList<>();
+            journal.append(none, Collections.emptyMap());
+        }
+        assertFalse(Files.exists(snapshot));
+    }
+}
@@ -0,0 +1,73 @@
+package delma.graph;
+
+import delma.graph.visualisation.App;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author delma
+ */
+public class JsonLabelCodecTest {
+
+    private final LabelCodec codec = JsonLabelCodec.INSTANCE;
+
+    @Test
+    public void testWritesSameAsJackson() throws Exception {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        List<Object> labels = Arrays.asList(0, -17, Integer.MAX_VALUE, 1L << 40, Long.MIN_VALUE,
+                "plain", "", "quote\"d", "back\\slash", "new\nline", "ääkköset", 1.5, true, map, null);
+        for (Object label : labels) {
+            assertEquals(App.MAPPER.writeValueAsString(label), codec.encode(label));
+        }
+    }
+
+    @Test
+    public void testReadsSameAsJackson() throws Exception {
+        List<String> strings = Arrays.asList("0", "-17", "2147483647", "2147483648", "-9223372036854775808",
+                "123456789012345678901", "\"plain\"", "\"\"", "\"quote\\\"d\"", "\"new\\nline\"", "1.5", "true", "{\"a\":1}", "null");
+        for (String string : strings) {
+            Object expected = App.MAPPER.readValue(string, Object.class);
+            Object label = codec.decode(string);
+            assertEquals(string, expected, label);
+            assertEquals(string, expected == null ? null : expected.getClass(), label == null ? null : label.getClass());
+        }
+    }
+
+    @Test
+    public void testSharesStringsWithinLoad() {
+        LabelCodec load = codec.forLoad();
+        assertTrue(load.decode("\"label\"") == load.decode(new String("\"label\"")));
+        assertTrue(load.decode("label") == load.decode(new String("label")));
+        assertFalse(codec.decode("\"label\"") == codec.decode(new String("\"label\"")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLabelThatCantBeWrittenThrows() {
+        codec.encode(new Object());
+    }
+
+    @Test
+    public void testInvalidJsonIsString() {
+        assertEquals("test", codec.decode("test"));
+        assertEquals("007", codec.decode("007"));
+        assertEquals("", codec.decode(""));
+        assertNull(codec.decode("null"));
+    }
+
+    @Test
+    public void testNodeRoundTrip() {
+        for (Object label : Arrays.asList(5, 1L << 40, "five", "fi\"ve")) {
+            Graph.Node<Object> node = new Graph.Node<>(label);
+            assertEquals(node, new Graph.Node<>(node.toString()));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author delma
+ */
+public class MappedGraphTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Node<Object> a;
+    private Node<Object> b;
+    private Node<Object> c;
+    private Node<Object> d;
+    private Graph<Object, Object> source;
+    private MappedGraph<Object, Object> graph;
+
+    @Before
+    public void setUp() throws IOException {
+        a = new Node<>(1);
+        b = new Node<>(2);
+        c = new Node<>(3);
+        d = new Node<>(4);
+        source = new VisualisableGraph();
+        source.add(new Edge<>(a, b, "ab"));
+        source.add(new Edge<>(a, c, "ac"));
+        source.add(new Edge<>(c, b, null));
+        source.add(d);
+        Path path = folder.newFile("graph").toPath();
+        MappedGraph.write(source, path);
+        graph = MappedGraph.open(path);
+    }
+
+    @Test
+    public void testStructureSurvivesRoundTrip() {
+        assertEquals(4, graph.size());
+        assertEquals(3, graph.edgeCount());
+        assertEquals(new HashSet<>(source.getNodes()), new HashSet<>(graph.getNodes()));
+        assertEquals(new HashSet<>(source.getEdges()), new HashSet<>(graph.getEdges()));
+        assertEquals(new HashSet<>(source.getNeighbourEdges(b)), new HashSet<>(graph.getNeighbourEdges(b)));
+    }
+
+    @Test
+    public void testIds() {
+        for (Node<Object> node : graph) {
+            assertEquals(node, graph.getNode(graph.getId(node)));
+        }
+        assertTrue(graph.contains(a));
+        assertFalse(graph.contains(new Node<>(5)));
+        assertEquals(-1, graph.getId(new Node<>(5)));
+        assertEquals(2, graph.outDegree(graph.getId(a)));
+        assertEquals(2, graph.inDegree(graph.getId(b)));
+        assertEquals(0, graph.degree(graph.getId(d)));
+    }
+
+    @Test
+    public void testTranspose() {
+        Graph<Object, Object> transpose = graph.getTranspose();
+        assertTrue(transpose.getEdges().contains(new Edge<>(b, a, "ab")));
+        assertTrue(transpose.getEdges().contains(new Edge<>(b, c, null)));
+        assertTrue(transpose.getTranspose() == graph);
+    }
+
+    @Test
+    public void testComponents() {
+        assertEquals(2, graph.componentCount());
+        assertEquals(graph.getComponent(a), graph.getComponent(c));
+        assertEquals(2, graph.getSubgraphs().size());
+    }
+
+    @Test
+    public void testRandomEdge() {
+        Random rand = new Random(0);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(source.getEdges().contains(graph.getRandomEdge(rand).get()));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        Path path = folder.newFile("other").toPath();
+        Files.write(path, new byte[1024]);
+        MappedGraph.open(path);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        graph.add(new Node<>(5));
+    }
+
+    @Test
+    public void testEveryEdgeIsIterated() throws IOException {
+        for (int[] shape : new int[][]{{50, 400}, {400, 50}}) {
+            Random rand = new Random(shape[0]);
+            Graph<Object, Object> random = new VisualisableGraph();
+            for (int i = 0; i < shape[0]; i++) {
+                random.add(new Node<>(i));
+            }
+            for (int i = 0; i < shape[1]; i++) {
+                random.add(new Edge<>(new Node<>(rand.nextInt(shape[0])), new Node<>(rand.nextInt(shape[0])), i));
+            }
+            Path path = folder.newFile().toPath();
+            MappedGraph.write(random, path);
+            MappedGraph<Object, Object> mapped = MappedGraph.open(path);
+            assertEquals(new HashSet<>(random.getEdges()), new HashSet<>(mapped.getEdges()));
+            assertEquals(new HashSet<>(random.getNodes()), new HashSet<>(mapped.getNodes()));
+        }
+    }
+}
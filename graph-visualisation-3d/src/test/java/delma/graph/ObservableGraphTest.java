@@ -0,0 +1,92 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import delma.graph.GraphDelta.Type;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author delma
+ */
+public class ObservableGraphTest {
+
+    private ObservableGraph<Object, Object> graph;
+    private List<GraphDelta<Object, Object>> deltas;
+
+    @Before
+    public void setUp() {
+        graph = new ObservableGraph<>(new VisualisableGraph(), 8);
+        deltas = new ArrayList<>();
+        graph.subscribe(deltas::add);
+    }
+
+    @Test
+    public void testRecordsOnlyChanges() {
+        Node<Object> node1 = new Node<>(1);
+        Node<Object> node2 = new Node<>(2);
+        Edge<Object, Object> edge = new Edge<>(node1, node2, null);
+        graph.add(node1);
+        graph.add(edge);
+        graph.add(edge);
+        graph.remove(node1);
+        graph.flush();
+
+        assertEquals(1, deltas.size());
+        GraphDelta<Object, Object> delta = deltas.get(0);
+        assertEquals(5, delta.size());
+        assertEquals(Type.ADD_NODE, delta.getType(0));
+        assertEquals(Type.ADD_NODE, delta.getType(1));
+        assertEquals(node2, delta.getNode(1));
+        assertEquals(Type.ADD_EDGE, delta.getType(2));
+        assertEquals(Type.REMOVE_EDGE, delta.getType(3));
+        assertEquals(edge, delta.getEdge(3));
+        assertEquals(Type.REMOVE_NODE, delta.getType(4));
+    }
+
+    @Test
+    public void testReplay() {
+        Graph<Object, Object> replica = new VisualisableGraph();
+        graph.subscribe(d -> d.replay(replica));
+        for (int i = 0; i < 20; i++) {
+            graph.add(new Edge<>(new Node<>(i), new Node<>(i + 1), null));
+        }
+        graph.remove(new Node<>(5));
+        graph.flush();
+
+        assertTrue(deltas.size() > 1);
+        for (int i = 1; i < deltas.size(); i++) {
+            assertEquals(deltas.get(i - 1).getSequence() + 1, deltas.get(i).getSequence());
+        }
+        assertEquals(graph.size(), replica.size());
+        assertEquals(graph.edgeCount(), replica.edgeCount());
+        assertEquals(graph.componentCount(), replica.componentCount());
+    }
+
+    @Test
+    public void testChangesThroughTransposeAreRecorded() {
+        Node<Object> node1 = new Node<>(1);
+        Node<Object> node2 = new Node<>(2);
+        Graph<Object, Object> transpose = graph.getTranspose();
+        assertTrue(transpose.getTranspose() == graph);
+        transpose.add(new Edge<>(node1, node2, "e"));
+        transpose.remove(node1);
+        graph.flush();
+
+        Graph<Object, Object> replica = new VisualisableGraph();
+        deltas.forEach(d -> d.replay(replica));
+        assertEquals(new HashSet<>(graph.getNodes()), new HashSet<>(replica.getNodes()));
+        assertTrue(replica.contains(node2));
+        assertFalse(replica.contains(node1));
+        assertEquals(0, replica.edgeCount());
+        assertEquals(Type.ADD_EDGE, deltas.get(0).getType(2));
+        assertEquals(new Edge<>(node2, node1, "e"), deltas.get(0).getEdge(2));
+    }
+}
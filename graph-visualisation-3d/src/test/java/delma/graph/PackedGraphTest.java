@@ -0,0 +1,187 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author delma
+ */
+public class PackedGraphTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Node<Object> a;
+    private Node<Object> b;
+    private Node<Object> c;
+    private Node<Object> d;
+    private Graph<Object, Object> source;
+    private Path path;
+    private PackedGraph<Object, Object> graph;
+
+    @Before
+    public void setUp() throws IOException {
+        a = new Node<>(1);
+        b = new Node<>(2);
+        c = new Node<>(3);
+        d = new Node<>(4);
+        source = new VisualisableGraph();
+        source.add(new Edge<>(a, b, "ab"));
+        source.add(new Edge<>(a, c, "ac"));
+        source.add(new Edge<>(c, b, null));
+        source.add(new Edge<>(c, c, "ac"));
+        source.add(d);
+        path = folder.newFile("graph").toPath();
+        PackedGraph.write(source, path, node -> new float[]{(Integer) node.getLabel(), 0, 0, 0, 0, -1});
+        graph = PackedGraph.open(path);
+    }
+
+    @Test
+    public void testStructureSurvivesRoundTrip() {
+        assertEquals(4, graph.size());
+        assertEquals(4, graph.edgeCount());
+        assertEquals(new HashSet<>(source.getNodes()), new HashSet<>(graph.getNodes()));
+        assertEquals(new HashSet<>(source.getEdges()), new HashSet<>(graph.getEdges()));
+        assertEquals(new HashSet<>(source.getNeighbourEdges(b)), new HashSet<>(graph.getNeighbourEdges(b)));
+        assertEquals(new HashSet<>(source.getInEdges(c)), new HashSet<>(graph.getInEdges(c)));
+    }
+
+    @Test
+    public void testIds() {
+        for (Node<Object> node : graph) {
+            assertEquals(node, graph.getNode(graph.getId(node)));
+        }
+        assertTrue(graph.contains(a));
+        assertFalse(graph.contains(new Node<>(5)));
+        assertEquals(2, graph.outDegree(graph.getId(a)));
+        assertEquals(2, graph.inDegree(graph.getId(b)));
+        assertEquals(0, graph.degree(graph.getId(d)));
+    }
+
+    @Test
+    public void testNeighboursMatchCsr() throws IOException {
+        Graph<Object, Object> random = new VisualisableGraph();
+        GraphGenerator.generate(random, GraphGenerator.rmat(10, 20000, 1), i -> i, i -> i % 7);
+        CsrGraph<Object, Object> csr = new CsrGraph<>(random);
+        Path other = folder.newFile().toPath();
+        PackedGraph.write(csr, other);
+        PackedGraph<Object, Object> packed = PackedGraph.open(other);
+        assertFalse(packed.hasLayout());
+        for (int id = 0; id < csr.size(); id++) {
+            List<Integer> expected = new ArrayList<>();
+            csr.forEachNeighbour(id, expected::add);
+            List<Integer> actual = new ArrayList<>();
+            packed.forEachNeighbour(id, actual::add);
+            expected.sort(null);
+            actual.sort(null);
+            assertEquals(expected, actual);
+            for (int i = 0; i < packed.degree(id); i++) {
+                assertTrue(expected.contains(packed.neighbour(id, i)));
+            }
+        }
+        assertEquals(new HashSet<>(csr.getEdges()), new HashSet<>(packed.getEdges()));
+    }
+
+    @Test
+    public void testLayout() {
+        assertTrue(graph.hasLayout());
+        assertEquals(3f, graph.getLayout(graph.getId(c), 0), 0);
+        assertEquals(-1f, graph.getLayout(graph.getId(c), PackedGraph.LAYOUT_FLOATS - 1), 0);
+    }
+
+    @Test
+    public void testNodesWithoutLayout() throws IOException {
+        Path other = folder.newFile().toPath();
+        PackedGraph.write(source, other, node -> node.equals(b) ? null : new float[PackedGraph.LAYOUT_FLOATS]);
+        PackedGraph<Object, Object> packed = PackedGraph.open(other);
+        assertTrue(packed.hasLayout());
+        assertFalse(packed.hasLayout(packed.getId(b)));
+        assertTrue(packed.hasLayout(packed.getId(a)));
+        assertTrue(packed.hasLayout(packed.getId(d)));
+        assertTrue(graph.hasLayout(graph.getId(b)));
+    }
+
+    @Test
+    public void testLabelsUseGivenCodec() throws IOException {
+        LabelCodec prefixed = new LabelCodec() {
+            @Override
+            public String encode(Object label) {
+                return "L" + JsonLabelCodec.INSTANCE.encode(label);
+            }
+
+            @Override
+            public Object decode(String string) {
+                return JsonLabelCodec.INSTANCE.decode(string.substring(1));
+            }
+        };
+        Path other = folder.newFile().toPath();
+        PackedGraph.write(source, other, null, prefixed);
+        PackedGraph<Object, Object> packed = PackedGraph.open(other, prefixed);
+        assertEquals(new HashSet<>(source.getNodes()), new HashSet<>(packed.getNodes()));
+        assertEquals(new HashSet<>(source.getEdges()), new HashSet<>(packed.getEdges()));
+        assertFalse(PackedGraph.open(other).contains(a));
+    }
+
+    @Test
+    public void testParallelAddSharesEdgeLabels() throws IOException {
+        Graph<Object, Object> random = new VisualisableGraph();
+        GraphGenerator.generate(random, GraphGenerator.rmat(10, 20000, 1), i -> i, i -> "label" + i % 7);
+        Path other = folder.newFile().toPath();
+        PackedGraph.write(random, other);
+        Graph<Object, Object> copy = new VisualisableGraph();
+        PackedGraph.<Object, Object>open(other).addTo(copy);
+        assertEquals(new HashSet<>(random.getEdges()), new HashSet<>(copy.getEdges()));
+    }
+
+    @Test
+    public void testAddTo() {
+        Graph<Object, Object> copy = new VisualisableGraph();
+        graph.addTo(copy);
+        assertEquals(new HashSet<>(source.getNodes()), new HashSet<>(copy.getNodes()));
+        assertEquals(new HashSet<>(source.getEdges()), new HashSet<>(copy.getEdges()));
+    }
+
+    @Test
+    public void testTranspose() {
+        Graph<Object, Object> transpose = graph.getTranspose();
+        assertTrue(transpose.getEdges().contains(new Edge<>(b, a, "ab")));
+        assertTrue(transpose.getEdges().contains(new Edge<>(b, c, null)));
+        assertTrue(transpose.getTranspose() == graph);
+    }
+
+    @Test
+    public void testRandomEdge() {
+        Random rand = new Random(0);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(source.getEdges().contains(graph.getRandomEdge(rand).get()));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsCorruptedFile() throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(path, bytes);
+        PackedGraph.open(path);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        graph.add(new Node<>(5));
+    }
+}
@@ -0,0 +1,191 @@
+package delma.graph;
+
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author delma
+ */
+public class VersionedGraphTest {
+
+    private VersionedGraph<Object, Object> graph;
+    private Node<Object> node1;
+    private Node<Object> node2;
+    private Node<Object> node3;
+
+    @Before
+    public void setUp() {
+        graph = new VersionedGraph<>();
+        node1 = new Node<>(1);
+        node2 = new Node<>(2);
+        node3 = new Node<>(3);
+    }
+
+    @Test
+    public void testChangesAreInvisibleUntilPublished() {
+        graph.add(new Edge<>(node1, node2, null));
+        assertEquals(0, graph.current().size());
+        assertEquals(2, graph.size());
+
+        GraphVersion<Object, Object> version = graph.publish();
+        assertTrue(version == graph.current());
+        assertEquals(2, version.size());
+        assertEquals(1, version.edgeCount());
+        assertTrue(graph.publish() == version);
+    }
+
+    @Test
+    public void testPinnedVersionDoesNotChange() {
+        Edge<Object, Object> edge = new Edge<>(node1, node2, null);
+        graph.add(edge);
+        GraphVersion<Object, Object> pinned = graph.publish();
+
+        graph.add(new Edge<>(node2, node3, null));
+        graph.remove(edge);
+        GraphVersion<Object, Object> next = graph.publish();
+
+        assertEquals(2, pinned.size());
+        assertEquals(1, pinned.edgeCount());
+        assertTrue(pinned.getEdges().contains(edge));
+        assertEquals(1, pinned.getNeighbourEdges(node2).size());
+        assertFalse(pinned.contains(node3));
+
+        assertEquals(3, next.size());
+        assertEquals(1, next.edgeCount());
+        assertFalse(next.getEdges().contains(edge));
+        assertEquals(1, next.getNeighbourEdges(node2).size());
+        assertTrue(next.getNeighbourNodes(node2).contains(node3));
+        assertTrue(next.getVersion() > pinned.getVersion());
+    }
+
+    @Test
+    public void testIds() {
+        for (int i = 0; i < GraphVersion.CHUNK * 3; i++) {
+            graph.add(new Node<>(i));
+        }
+        GraphVersion<Object, Object> version = graph.publish();
+        graph.clear();
+        graph.add(new Node<>(-1));
+        graph.publish();
+        for (int i = 0; i < GraphVersion.CHUNK * 3; i++) {
+            Node<Object> node = new Node<>(i);
+            assertEquals(node, version.getNode(version.getId(node)));
+        }
+        assertEquals(GraphVersion.CHUNK * 3, version.size());
+        assertEquals(GraphVersion.CHUNK * 3, version.componentCount());
+    }
+
+    @Test
+    public void testGetTranspose() {
+        graph.add(new Edge<>(node1, node2, "12"));
+        graph.add(new Edge<>(node2, node2, "22"));
+        Graph<Object, Object> transpose = graph.getTranspose();
+        assertTrue(transpose.getTranspose() == graph);
+        assertEquals(2, transpose.edgeCount());
+        assertTrue(transpose.getEdges().contains(new Edge<>(node2, node1, "12")));
+        assertFalse(transpose.getEdges().contains(new Edge<>(node1, node2, "12")));
+        assertEquals(0, transpose.getOutEdges(node1).size());
+        assertEquals(new Edge<>(node2, node1, "12"), transpose.getInEdges(node1).iterator().next());
+        transpose.add(new Edge<>(node1, node3, "31"));
+        assertTrue(graph.getEdges().contains(new Edge<>(node3, node1, "31")));
+    }
+
+    @Test
+    public void testGetTransposeOfVersion() {
+        graph.add(new Edge<>(node1, node2, "12"));
+        graph.add(new Edge<>(node2, node2, "22"));
+        GraphVersion<Object, Object> version = graph.publish();
+        Graph<Object, Object> transpose = version.getTranspose();
+        assertTrue(version.getTranspose() == transpose);
+        assertEquals(2, transpose.edgeCount());
+        assertTrue(transpose.getEdges().contains(new Edge<>(node2, node1, "12")));
+        assertFalse(transpose.getEdges().contains(new Edge<>(node1, node2, "12")));
+        assertEquals(0, transpose.getOutEdges(node1).size());
+        assertEquals(new Edge<>(node2, node1, "12"), transpose.getInEdges(node1).iterator().next());
+        assertEquals(2, transpose.getOutEdges(node2).size());
+        assertEquals(1, transpose.getInEdges(node2).size());
+    }
+
+    @Test
+    public void testBulkAddsMatchSingleAdds() {
+        List<Node<Object>> nodes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            nodes.add(new Node<>(i % 250));
+        }
+        Random rand = new Random(3);
+        int[] from = new int[2000];
+        int[] to = new int[from.length];
+        List<Edge<Object, Object>> edges = new ArrayList<>();
+        for (int i = 0; i < from.length; i++) {
+            from[i] = rand.nextInt(nodes.size());
+            to[i] = i % 50 == 0 ? from[i] : rand.nextInt(nodes.size());
+            edges.add(new Edge<>(nodes.get(from[i]), nodes.get(to[i]), i % 3));
+        }
+        VisualisableGraph expected = new VisualisableGraph();
+        expected.add(new Edge<>(node1, node2, null));
+        nodes.forEach(expected::add);
+        edges.forEach(expected::add);
+
+        for (int variant = 0; variant < 3; variant++) {
+            VersionedGraph<Object, Object> actual = new VersionedGraph<>();
+            actual.add(new Edge<>(node1, node2, null));
+            actual.add(edges.get(1));
+            GraphVersion<Object, Object> pinned = actual.publish();
+            if (variant == 0) {
+                nodes.forEach(actual::add);
+                actual.addAll(edges);
+            } else if (variant == 1) {
+                actual.addAll(nodes, from, to, i -> i % 3);
+            } else {
+                actual.addAllParallel(nodes, from, to, i -> i % 3);
+            }
+            assertEquals(4, pinned.size());
+            assertEquals(2, pinned.edgeCount());
+            GraphVersion<Object, Object> version = actual.publish();
+            assertEquals(expected.size(), version.size());
+            assertEquals(expected.edgeCount(), version.edgeCount());
+            assertEquals(new HashSet<>(expected.getEdges()), new HashSet<>(version.getEdges()));
+            for (Node<Object> node : expected) {
+                assertEquals(expected.getNeighbourEdges(node).size(), version.getNeighbourEdges(node).size());
+                assertEquals(new HashSet<>(expected.getNeighbourEdges(node)), new HashSet<>(version.getNeighbourEdges(node)));
+                assertEquals(node, version.getNode(version.getId(node)));
+            }
+        }
+    }
+
+    @Test
+    public void testViewsIterateCopy() {
+        graph.add(new Edge<>(node1, node2, null));
+        Iterator<Node<Object>> nodes = graph.getNodes().iterator();
+        Iterator<Edge<Object, Object>> edges = graph.getNeighbourEdges(node2).iterator();
+        graph.add(new Edge<>(node2, node3, null));
+        int count = 0;
+        while (nodes.hasNext()) {
+            nodes.next();
+            count++;
+        }
+        assertEquals(2, count);
+        edges.next();
+        assertFalse(edges.hasNext());
+        assertEquals(3, graph.getNodes().size());
+        assertEquals(2, graph.getNeighbourEdges(node2).size());
+        assertTrue(graph.getEdges().contains(new Edge<>(node2, node3, null)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testViewsAreReadOnly() {
+        graph.add(new Edge<>(node1, node2, null));
+        graph.getEdges().clear();
+    }
+}
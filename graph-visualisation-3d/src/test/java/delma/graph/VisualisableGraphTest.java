@@ -2,7 +2,12 @@ package delma.graph;
 
 import delma.graph.Graph.Edge;
 import delma.graph.Graph.Node;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -76,6 +81,64 @@ public class VisualisableGraphTest {
         assertTrue(nodes.contains(node3));
     }
 
+    @Test
+    public void testAddAll_Collection() {
+        Node<Object> a = new Node<>(1);
+        Node<Object> b = new Node<>(2);
+        graph.add(a);
+        graph.addAll(Arrays.asList(new Edge<>(a, b, null), new Edge<>(b, new Node<>(1), null), new Edge<>(a, b, null), new Edge<>(b, b, null)));
+        assertEquals(2, graph.size());
+        assertEquals(3, graph.edgeCount());
+        assertEquals(3, graph.getNeighbourEdges(b).size());
+        assertEquals(1, graph.componentCount());
+    }
+
+    @Test
+    public void testAddAll_Arrays() {
+        List<Node<Object>> nodes = Arrays.asList(new Node<>(0), new Node<>(1), new Node<>(2), new Node<>(3));
+        int[] from = {0, 1, 2, 0};
+        int[] to = {1, 2, 0, 1};
+        graph.addAll(nodes, from, to, i -> i % 2);
+        VisualisableGraph parallel = new VisualisableGraph();
+        parallel.addAllParallel(nodes, from, to, i -> i % 2);
+        VisualisableGraph expected = new VisualisableGraph();
+        nodes.forEach(expected::add);
+        for (int i = 0; i < from.length; i++) {
+            expected.add(new Edge<>(nodes.get(from[i]), nodes.get(to[i]), i % 2));
+        }
+        for (VisualisableGraph result : Arrays.asList(graph, parallel)) {
+            assertEquals(new HashSet<>(expected.getNodes()), new HashSet<>(result.getNodes()));
+            assertEquals(new HashSet<>(expected.getEdges()), new HashSet<>(result.getEdges()));
+            assertEquals(3, result.getNeighbourEdges(nodes.get(0)).size());
+            assertEquals(2, result.componentCount());
+        }
+    }
+
+    @Test
+    public void testAddAllParallelMatchesSequential() {
+        Random rand = new Random(3);
+        List<Node<Object>> nodes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            nodes.add(new Node<>(i));
+        }
+        int[] from = new int[5000];
+        int[] to = new int[from.length];
+        for (int i = 0; i < from.length; i++) {
+            from[i] = rand.nextInt(i % 10 == 0 ? 5 : nodes.size());
+            to[i] = i % 50 == 0 ? from[i] : rand.nextInt(nodes.size());
+        }
+        VisualisableGraph parallel = new VisualisableGraph();
+        graph.add(new Edge<>(nodes.get(0), nodes.get(1), null));
+        parallel.add(new Edge<>(nodes.get(0), nodes.get(1), null));
+        graph.addAll(nodes, from, to, i -> i % 3 == 0 ? null : i % 4);
+        parallel.addAllParallel(nodes, from, to, i -> i % 3 == 0 ? null : i % 4);
+        assertEquals(graph.edgeCount(), parallel.edgeCount());
+        for (Node<Object> node : nodes) {
+            assertEquals(new ArrayList<>(graph.getOutEdges(node)), new ArrayList<>(parallel.getOutEdges(node)));
+            assertEquals(new ArrayList<>(graph.getInEdges(node)), new ArrayList<>(parallel.getInEdges(node)));
+        }
+    }
+
     /**
      * Test of remove method, of class VisualisableGraph.
      */
@@ -145,7 +208,32 @@ public class VisualisableGraphTest {
      */
     @Test
     public void testGetSubgraphs() {
-
+        Node<Object> node1 = new Node<>(1);
+        Node<Object> node2 = new Node<>(2);
+        Node<Object> node3 = new Node<>(3);
+        Node<Object> node4 = new Node<>(4);
+        Edge<Object, Object> edge = new Edge<>(node2, node3, "test");
+        graph.add(new Edge<>(node1, node2, "test"));
+        graph.add(edge);
+        graph.add(node4);
+        assertEquals(2, graph.componentCount());
+        assertEquals(graph.getComponent(node1), graph.getComponent(node3));
+        assertFalse(graph.getComponent(node1).equals(graph.getComponent(node4)));
+
+        graph.remove(edge);
+        assertEquals(3, graph.componentCount());
+        assertFalse(graph.getComponent(node1).equals(graph.getComponent(node3)));
+
+        Collection<Graph<Object, Object>> subgraphs = graph.getSubgraphs();
+        assertEquals(3, subgraphs.size());
+        for (Graph<Object, Object> subgraph : subgraphs) {
+            if (subgraph.contains(node1)) {
+                assertEquals(2, subgraph.size());
+                assertEquals(1, subgraph.edgeCount());
+            } else {
+                assertEquals(1, subgraph.size());
+            }
+        }
     }
 
     /**
@@ -153,7 +241,38 @@ public class VisualisableGraphTest {
      */
     @Test
     public void testGetTranspose() {
+        Node<Object> a = new Node<>(1);
+        Node<Object> b = new Node<>(2);
+        graph.add(new Edge<>(a, b, "ab"));
+        graph.add(new Edge<>(b, b, "bb"));
+        Graph<Object, Object> transpose = graph.getTranspose();
+        assertTrue(transpose.getTranspose() == graph);
+        assertEquals(2, transpose.edgeCount());
+        assertTrue(transpose.getEdges().contains(new Edge<>(b, a, "ab")));
+        assertFalse(transpose.getEdges().contains(new Edge<>(a, b, "ab")));
+        assertEquals(0, transpose.getOutEdges(a).size());
+        assertEquals(new Edge<>(b, a, "ab"), transpose.getInEdges(a).iterator().next());
+        transpose.add(new Edge<>(a, b, "ba"));
+        assertTrue(graph.getEdges().contains(new Edge<>(b, a, "ba")));
+    }
 
+    @Test
+    public void testGetOutAndInEdges() {
+        Node<Object> a = new Node<>(1);
+        Node<Object> b = new Node<>(2);
+        Node<Object> c = new Node<>(3);
+        graph.add(new Edge<>(a, b, null));
+        graph.add(new Edge<>(c, b, null));
+        graph.add(new Edge<>(b, b, null));
+        assertEquals(1, graph.getOutEdges(b).size());
+        assertEquals(3, graph.getInEdges(b).size());
+        assertEquals(3, graph.getNeighbourEdges(b).size());
+        assertEquals(new HashSet<>(graph.getEdges()), new HashSet<>(graph.getNeighbourEdges(b)));
+        graph.remove(new Edge<>(b, b, null));
+        assertEquals(0, graph.getOutEdges(b).size());
+        assertEquals(2, graph.getNeighbourEdges(b).size());
+        graph.remove(a);
+        assertEquals(1, graph.getInEdges(b).size());
     }
 
     /**
@@ -164,6 +283,25 @@ public class VisualisableGraphTest {
 
     }
 
+    /**
+     * Test of getId method, of class VisualisableGraph.
+     */
+    @Test
+    public void testGetId() {
+        Node<Object> node1 = new Node<>(1);
+        Node<Object> node2 = new Node<>(2);
+        graph.add(new Edge<>(node1, node2, "test"));
+        graph.add(new Node<>(1));
+        assertEquals(0, graph.getId(node1));
+        assertEquals(1, graph.getId(node2));
+        assertEquals(-1, graph.getId(new Node<>(3)));
+        assertTrue(graph.getNode(graph.getId(new Node<>(2))) == node2);
+
+        graph.remove(node1);
+        graph.add(node1);
+        assertEquals(0, graph.getId(node1));
+    }
+
     /**
      * Test of size method, of class VisualisableGraph.
      */
@@ -180,6 +318,24 @@ public class VisualisableGraphTest {
 
     }
 
+    @Test
+    public void testForEachNeighbour() {
+        Node<Object> a = new Node<>(1);
+        Node<Object> b = new Node<>(2);
+        Node<Object> c = new Node<>(3);
+        graph.add(new Edge<>(a, b, null));
+        graph.add(new Edge<>(c, a, null));
+        graph.add(new Edge<>(a, a, null));
+        List<Node<Object>> neighbours = new ArrayList<>();
+        graph.forEachNeighbour(a, neighbours::add);
+        assertEquals(3, neighbours.size());
+        assertEquals(new HashSet<>(Arrays.asList(a, b, c)), new HashSet<>(neighbours));
+        assertEquals(new HashSet<>(neighbours), new HashSet<>(graph.getNeighbourNodes(a)));
+        List<Integer> ids = new ArrayList<>();
+        graph.forEachNeighbour(graph.getId(b), ids::add);
+        assertEquals(Arrays.asList(graph.getId(a)), ids);
+    }
+
     /**
      * Test of getNodes method, of class VisualisableGraph.
      */
@@ -193,7 +349,21 @@ public class VisualisableGraphTest {
      */
     @Test
     public void testGetEdges() {
+        Node<Object> node1 = new Node<>(1);
+        Node<Object> node2 = new Node<>(2);
+        Edge<Object, Object> edge = new Edge<>(node1, node2, "test");
+        Collection<Edge<Object, Object>> edges = graph.getEdges();
+        assertTrue(edges.isEmpty());
+
+        graph.add(edge);
+        graph.add(new Edge<>(node1, node2, "test"));
+        assertEquals(1, graph.edgeCount());
+        assertEquals(1, edges.size());
+        assertTrue(edges.contains(edge));
 
+        graph.remove(node2);
+        assertEquals(0, graph.edgeCount());
+        assertTrue(edges.isEmpty());
     }
 
     /**
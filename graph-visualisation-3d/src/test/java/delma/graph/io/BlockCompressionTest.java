@@ -0,0 +1,100 @@
+package delma.graph.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author delma
+ */
+public class BlockCompressionTest {
+
+    private byte[] data;
+
+    @Before
+    public void setUp() {
+        Random rand = new Random(1);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 300000) {
+            builder.append("{\"label\":").append(rand.nextInt(1000)).append("},");
+        }
+        data = builder.toString().getBytes();
+    }
+
+    private static byte[] compress(byte[] data, int blockSize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = BlockCompression.compress(bytes, Deflater.DEFAULT_COMPRESSION, blockSize)) {
+            int split = Math.min(10, data.length);
+            for (int i = 0; i < split; i++) {
+                out.write(data[i]);
+            }
+            out.write(data, split, data.length - split);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[5000];
+            for (int n; (n = stream.read(buffer)) >= 0;) {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        return readAll(BlockCompression.decompress(new ByteArrayInputStream(compressed)));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (int blockSize : new int[]{100, 4096, 65536, BlockCompression.DEFAULT_BLOCK}) {
+            byte[] compressed = compress(data, blockSize);
+            assertArrayEquals(data, decompress(compressed));
+            assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+        }
+        assertArrayEquals(new byte[0], decompress(compress(new byte[0], 100)));
+    }
+
+    @Test
+    public void testPlainGzip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        assertArrayEquals(data, decompress(bytes.toByteArray()));
+    }
+
+    @Test
+    public void testDamageIsNoticed() throws IOException {
+        byte[] compressed = compress(data, 10000);
+        byte[] flipped = compressed.clone();
+        flipped[compressed.length / 2] ^= 1;
+        byte[][] damaged = {
+            Arrays.copyOf(compressed, compressed.length / 2),
+            Arrays.copyOf(compressed, compressed.length - 30),
+            flipped
+        };
+        for (byte[] bytes : damaged) {
+            try {
+                decompress(bytes);
+                fail("Damaged file was read");
+            } catch (IOException ex) {
+            }
+        }
+    }
+}
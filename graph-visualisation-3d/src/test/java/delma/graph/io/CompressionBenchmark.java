@@ -0,0 +1,100 @@
+package delma.graph.io;
+
+import delma.graph.Graph;
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import delma.graph.VisualisableGraph;
+import delma.graph.visualisation.JsonGraphIO;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares size of JSON graph files against time it takes to save and load
+ * them with different compression levels and block sizes. Plain gzip is
+ * included as single threaded baseline.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=delma.graph.io.CompressionBenchmark -Dexec.args="nodes edges"
+ *
+ * @author delma
+ */
+public class CompressionBenchmark {
+
+    private static final int[] LEVELS = {Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION};
+    private static final int[] BLOCKS = {1 << 16, BlockCompression.DEFAULT_BLOCK, 8 << 20};
+
+    @FunctionalInterface
+    private interface Codec<T> {
+
+        T wrap(T stream) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int edgeCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        Random rand = new Random(1);
+        Graph<Object, Object> graph = new VisualisableGraph();
+        for (int i = 0; i < edgeCount; i++) {
+            graph.add(new Edge<>(new Node<>(rand.nextInt(nodeCount)), new Node<>("n" + rand.nextInt(nodeCount)), null));
+        }
+        System.out.println("nodes " + graph.size() + ", edges " + graph.getEdges().size()
+                + ", cores " + Runtime.getRuntime().availableProcessors());
+
+        Path dir = Files.createTempDirectory("compression");
+        try {
+            run(dir.resolve("graph"), graph, "none", out -> out, in -> in);
+            run(dir.resolve("graph.gz"), graph, "gzip", GZIPOutputStream::new, in -> new GZIPInputStream(in, 1 << 16));
+            for (int level : LEVELS) {
+                for (int block : BLOCKS) {
+                    run(dir.resolve("graph.gz"), graph, "level " + level + ", block " + (block >> 10) + " KB",
+                            out -> BlockCompression.compress(out, level, block), BlockCompression::decompress);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(dir.resolve("graph"));
+            Files.deleteIfExists(dir.resolve("graph.gz"));
+            Files.delete(dir);
+        }
+    }
+
+    private static void run(Path file, Graph<Object, Object> graph, String name,
+            Codec<OutputStream> compress, Codec<InputStream> decompress) throws IOException {
+        long save = Long.MAX_VALUE;
+        long inflate = Long.MAX_VALUE;
+        long load = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            JsonGraphIO.write(compress.wrap(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)),
+                    graph, new HashMap<>());
+            save = Math.min(save, millis(start));
+
+            start = System.nanoTime();
+            try (InputStream in = decompress.wrap(Files.newInputStream(file))) {
+                byte[] buffer = new byte[1 << 16];
+                while (in.read(buffer) >= 0) {
+                }
+            }
+            inflate = Math.min(inflate, millis(start));
+
+            start = System.nanoTime();
+            Graph<Object, Object> loaded = new VisualisableGraph();
+            JsonGraphIO.read(decompress.wrap(Files.newInputStream(file)), loaded, new HashMap<>());
+            load = Math.min(load, millis(start));
+        }
+        System.out.println(name + ": " + (Files.size(file) >> 10) + " KB, save " + save + " ms, decompress "
+                + inflate + " ms, load " + load + " ms");
+    }
+
+    private static long millis(long start) {
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
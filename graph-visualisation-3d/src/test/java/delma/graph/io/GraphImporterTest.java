@@ -0,0 +1,200 @@
+package delma.graph.io;
+
+import delma.graph.Graph;
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import delma.graph.VisualisableGraph;
+import delma.graph.visualisation.App;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author delma
+ */
+public class GraphImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Graph<Object, Object> graph;
+
+    @Before
+    public void setUp() {
+        graph = new VisualisableGraph();
+    }
+
+    private Path file(String name, String... lines) throws IOException {
+        Path path = folder.newFile(name).toPath();
+        Files.write(path, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return path;
+    }
+
+    private static Edge<Object, Object> edge(Object from, Object to, Object label) {
+        return new Edge<>(new Node<>(from), new Node<>(to), label);
+    }
+
+    @Test
+    public void testEdgeList() throws IOException {
+        Path path = file("graph.tsv",
+                "# comment",
+                "1\t2",
+                "2 3 heavy",
+                "",
+                "3,-4\r",
+                "alone",
+                "x\t1");
+        GraphImporter.read(path, graph);
+        assertEquals(new HashSet<>(Arrays.asList(new Node<>(1), new Node<>(2), new Node<>(3),
+                new Node<>(-4), new Node<>("alone"), new Node<>("x"))), new HashSet<>(graph.getNodes()));
+        assertEquals(new HashSet<>(Arrays.asList(edge(1, 2, null), edge(2, 3, "heavy"), edge(3, -4, null),
+                edge("x", 1, null))), new HashSet<>(graph.getEdges()));
+    }
+
+    @Test
+    public void testLargeEdgeListIsSplit() throws IOException {
+        Path path = folder.newFile("large.tsv").toPath();
+        int nodes = 1000;
+        int edges = 200000;
+        Set<Edge<Object, Object>> expected = new HashSet<>();
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < edges; i++) {
+                int from = i % nodes;
+                int to = (int) ((i * 31L + i / nodes) % nodes);
+                writer.write(from + "\t" + to + "\n");
+                expected.add(edge(from, to, null));
+            }
+        }
+        ChunkedReader.read(path, EdgeListParser.INSTANCE, graph, 1 << 16);
+        assertEquals(nodes, graph.size());
+        assertEquals(expected, new HashSet<>(graph.getEdges()));
+    }
+
+    @Test
+    public void testSparseAndMixedLabelsAcrossChunks() throws IOException {
+        Path path = folder.newFile("sparse.tsv").toPath();
+        int nodes = 500;
+        Set<Node<Object>> expectedNodes = new HashSet<>();
+        Set<Edge<Object, Object>> expected = new HashSet<>();
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 20000; i++) {
+                int from = (i % nodes - nodes / 2) * 3999999;
+                Object to = i % 3 == 0 ? "s" + (i * 7 % nodes) : (Object) (i * 7 % nodes);
+                writer.write(from + " " + to + " " + (i % 5) + "\n");
+                expectedNodes.add(new Node<>(from));
+                expectedNodes.add(new Node<>(to));
+                expected.add(edge(from, to, i % 5));
+            }
+        }
+        ChunkedReader.read(path, EdgeListParser.INSTANCE, graph, 1 << 12);
+        assertEquals(expectedNodes, new HashSet<>(graph.getNodes()));
+        assertEquals(expected, new HashSet<>(graph.getEdges()));
+    }
+
+    @Test
+    public void testIntegerLabelsMatchJson() throws IOException {
+        for (String token : new String[]{"0", "-0", "7", "-12", "123456789", "1234567890", "2147483647",
+            "-2147483648", "2147483648", "-2147483649", "99999999999", "007", "-01", "-", "1e3", "12a"}) {
+            Object json;
+            try {
+                json = App.MAPPER.readValue(token, Object.class);
+            } catch (IOException ex) {
+                json = null;
+            }
+            Object expected = json instanceof Integer ? json : token;
+            assertEquals(token, expected, ChunkedReader.label(token));
+        }
+    }
+
+    @Test
+    public void testDot() throws IOException {
+        Path path = file("graph.dot",
+                "strict digraph G {",
+                "  rankdir=LR;",
+                "  node [shape=box];",
+                "  // comment",
+                "  a -> b -> c [label=\"path\", color=red];",
+                "  \"say \\\"hi\\\"\" -> 7; d",
+                "  subgraph cluster {",
+                "    c -- a",
+                "  }",
+                "}");
+        GraphImporter.read(path, graph);
+        assertEquals(new HashSet<>(Arrays.asList(new Node<>("a"), new Node<>("b"), new Node<>("c"),
+                new Node<>("say \"hi\""), new Node<>(7), new Node<>("d"))), new HashSet<>(graph.getNodes()));
+        assertEquals(new HashSet<>(Arrays.asList(edge("a", "b", "path"), edge("b", "c", "path"),
+                edge("say \"hi\"", 7, null), edge("c", "a", null))), new HashSet<>(graph.getEdges()));
+    }
+
+    @Test
+    public void testDotLinksOnlyAcrossEdgeOperators() throws IOException {
+        Path path = file("groups.dot",
+                "digraph {",
+                "  x y",
+                "  a -> {b c} -> d [label=l]",
+                "  {rank=same e f}",
+                "  g -> {h; i [color=red]}; j",
+                "}");
+        GraphImporter.read(path, graph);
+        assertEquals(new HashSet<>(Arrays.asList(new Node<>("x"), new Node<>("y"), new Node<>("a"), new Node<>("b"),
+                new Node<>("c"), new Node<>("d"), new Node<>("e"), new Node<>("f"), new Node<>("g"), new Node<>("h"),
+                new Node<>("i"), new Node<>("j"))),
+                new HashSet<>(graph.getNodes()));
+        assertEquals(new HashSet<>(Arrays.asList(edge("a", "b", "l"), edge("a", "c", "l"), edge("b", "d", "l"),
+                edge("c", "d", "l"), edge("g", "h", null), edge("g", "i", null))), new HashSet<>(graph.getEdges()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testDotRejectsSubgraphBeforeEdgeOperator() throws IOException {
+        GraphImporter.read(file("tail.dot", "digraph {", "  {a b} -> c", "}"), graph);
+    }
+
+    @Test(expected = IOException.class)
+    public void testDotRejectsEdgesInsideGroup() throws IOException {
+        GraphImporter.read(file("nested.dot", "a -> {b -> c}"), graph);
+    }
+
+    @Test
+    public void testGraphML() throws IOException {
+        Path path = file("graph.graphml",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+                "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">",
+                "  <key id=\"d0\" for=\"node\" attr.name=\"label\" attr.type=\"string\"/>",
+                "  <key id=\"d1\" for=\"edge\" attr.name=\"label\" attr.type=\"string\"/>",
+                "  <key id=\"d2\" for=\"edge\" attr.name=\"weight\" attr.type=\"double\"/>",
+                "  <graph id=\"G\" edgedefault=\"directed\">",
+                "    <node id=\"n0\"><data key=\"d0\">ignored</data></node>",
+                "    <node id=\"1\"/>",
+                "    <node id=\"lonely\"/>",
+                "    <edge source=\"n0\" target=\"1\"><data key=\"d2\">2.5</data><data key=\"d1\">first</data></edge>",
+                "    <edge source=\"1\" target=\"n0\"/>",
+                "    <edge source=\"1\" target=\"lonely\"><data key=\"d1\">7</data></edge>",
+                "  </graph>",
+                "</graphml>");
+        GraphImporter.read(path, graph);
+        assertEquals(new HashSet<>(Arrays.asList(new Node<>("n0"), new Node<>(1), new Node<>("lonely"))),
+                new HashSet<>(graph.getNodes()));
+        assertEquals(new HashSet<>(Arrays.asList(edge("n0", 1, "first"), edge(1, "n0", null), edge(1, "lonely", 7))),
+                new HashSet<>(graph.getEdges()));
+    }
+
+    @Test
+    public void testIsImportable() {
+        assertTrue(GraphImporter.isImportable(folder.getRoot().toPath().resolve("a.TSV")));
+        assertTrue(GraphImporter.isImportable(folder.getRoot().toPath().resolve("a.gv")));
+        assertFalse(GraphImporter.isImportable(folder.getRoot().toPath().resolve("graph1")));
+    }
+}
@@ -0,0 +1,86 @@
+package delma.graph.io;
+
+import delma.graph.Graph;
+import delma.graph.VisualisableGraph;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how throughput of importing edge list grows with cores. Import is
+ * run in pools of growing parallelism, so that parsing, merging and adding to
+ * graph all use only that many threads. One run uses integer labels and other
+ * string labels, which can't use direct id table when merging.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=delma.graph.io.ImportBenchmark -Dexec.args="nodes edges"
+ *
+ * @author delma
+ */
+public class ImportBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int edgeCount = args.length > 1 ? Integer.parseInt(args[1]) : 10000000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("nodes " + nodeCount + ", edges " + edgeCount + ", cores " + cores);
+
+        Path file = Files.createTempFile("import", ".tsv");
+        try {
+            for (String prefix : new String[]{"", "n"}) {
+                write(file, prefix, nodeCount, edgeCount);
+                System.out.println((prefix.isEmpty() ? "integer" : "string") + " labels, "
+                        + (Files.size(file) >> 20) + " MB");
+                long baseline = 0;
+                for (int parallelism = 1; parallelism <= cores; parallelism = next(parallelism, cores)) {
+                    long time = run(file, parallelism);
+                    baseline = parallelism == 1 ? time : baseline;
+                    System.out.println(parallelism + " threads: " + time / 1000000 + " ms, "
+                            + edgeCount * 1000L / Math.max(1, time / 1000) + " edges/ms, speedup "
+                            + String.format("%.2f", (double) baseline / time));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static int next(int parallelism, int cores) {
+        return parallelism < cores && parallelism * 2 > cores ? cores : parallelism * 2;
+    }
+
+    private static void write(Path file, String prefix, int nodeCount, int edgeCount) throws IOException {
+        Random rand = new Random(1);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < edgeCount; i++) {
+                writer.write(prefix + rand.nextInt(nodeCount) + "\t" + prefix + rand.nextInt(nodeCount) + "\n");
+            }
+        }
+    }
+
+    /**
+     * @return best time of three imports in nanoseconds
+     */
+    private static long run(Path file, int parallelism) throws InterruptedException, ExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < 3; round++) {
+                best = Math.min(best, pool.submit(() -> {
+                    Graph<Object, Object> graph = new VisualisableGraph();
+                    long start = System.nanoTime();
+                    GraphImporter.read(file, graph);
+                    return System.nanoTime() - start;
+                }).get());
+            }
+            return best;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
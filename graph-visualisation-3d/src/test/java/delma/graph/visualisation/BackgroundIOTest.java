@@ -0,0 +1,114 @@
+package delma.graph.visualisation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author delma
+ */
+public class BackgroundIOTest {
+
+    private final Logger logger = Logger.getLogger(BackgroundIO.class.getName());
+    private final List<LogRecord> logged = new CopyOnWriteArrayList<>();
+    private final Handler handler = new Handler() {
+
+        @Override
+        public void publish(LogRecord record) {
+            logged.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    private BackgroundIO io;
+
+    /**
+     * Failures are collected instead of being printed to console.
+     */
+    @Before
+    public void setUp() {
+        logger.addHandler(handler);
+        logger.setUseParentHandlers(false);
+        io = new BackgroundIO();
+    }
+
+    @After
+    public void tearDown() {
+        io.shutdown();
+        logger.removeHandler(handler);
+        logger.setUseParentHandlers(true);
+    }
+
+    @Test
+    public void testResultsAreAppliedOnlyBetweenFrames() throws InterruptedException {
+        List<String> applied = new ArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        io.submit("first", progress -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            return "a";
+        }, applied::add);
+        io.submit("second", progress -> "b", applied::add);
+        io.<String>submit("failing", progress -> {
+            throw new IOException("expected");
+        }, applied::add);
+        io.runFinished();
+        assertTrue(applied.isEmpty());
+        assertTrue(io.getProgress() == null || io.getProgress().toString().startsWith("first"));
+        release.countDown();
+        io.shutdown();
+        assertTrue(applied.isEmpty());
+        io.runFinished();
+        assertEquals(2, applied.size());
+        assertEquals("a", applied.get(0));
+        assertEquals("b", applied.get(1));
+        assertTrue(io.getProgress() == null);
+        assertEquals(1, logged.size());
+        assertEquals(Level.SEVERE, logged.get(0).getLevel());
+        assertEquals("expected", logged.get(0).getThrown().getMessage());
+    }
+
+    @Test
+    public void testProgressCountsBytes() throws IOException {
+        BackgroundIO.Progress progress = new BackgroundIO.Progress("Loading");
+        progress.setTotal(200);
+        try (InputStream in = progress.count(new ByteArrayInputStream(new byte[100]))) {
+            assertEquals(50, in.read(new byte[50]));
+            in.read();
+        }
+        assertTrue(progress.toString().startsWith("Loading 25%"));
+
+        BackgroundIO.Progress saving = new BackgroundIO.Progress("Saving");
+        try (OutputStream out = saving.count(new ByteArrayOutputStream())) {
+            out.write(new byte[3 << 20]);
+        }
+        assertTrue(saving.toString().startsWith("Saving 3 MB"));
+        assertFalse(saving.toString().contains("%"));
+    }
+}
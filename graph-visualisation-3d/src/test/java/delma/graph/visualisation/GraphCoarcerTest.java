@@ -0,0 +1,147 @@
+package delma.graph.visualisation;
+
+import delma.graph.Graph;
+import delma.graph.Graph.Edge;
+import delma.graph.Graph.Node;
+import delma.graph.JsonLabelCodec;
+import delma.graph.VersionedGraph;
+import delma.graph.VisualisableGraph;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author delma
+ */
+public class GraphCoarcerTest {
+
+    private Graph<Object, Object> graph;
+
+    @Before
+    public void setUp() {
+        graph = new VisualisableGraph();
+        for (int i = 0; i < 12; i++) {
+            graph.add(new Edge<>(new Node<>(i), new Node<>((i * 5 + 1) % 12), "e" + i));
+        }
+        graph.add(new Edge<>(new Node<>("a"), new Node<>("b"), null));
+        graph.add(new Node<>("alone"));
+    }
+
+    private static List<Graph<Object, Object>> roundTrip(List<Graph<Object, Object>> levels) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            GraphCoarcer.writeLevels(out, levels, JsonLabelCodec.INSTANCE);
+        }
+        return GraphCoarcer.readLevels(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                JsonLabelCodec.INSTANCE);
+    }
+
+    private static void assertSameLevels(List<Graph<Object, Object>> expected, List<Graph<Object, Object>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int l = 0; l < expected.size(); l++) {
+            assertEquals(new HashSet<>(expected.get(l).getNodes()), new HashSet<>(actual.get(l).getNodes()));
+            assertEquals(new HashSet<>(expected.get(l).getEdges()), new HashSet<>(actual.get(l).getEdges()));
+        }
+    }
+
+    @Test
+    public void testLevelsSurviveRoundTrip() throws IOException {
+        GraphCoarcer coarcer = new GraphCoarcer(null);
+        Graph<Object, Object> coarsest = coarcer.build(graph);
+        List<Graph<Object, Object>> levels = coarcer.levels();
+        assertTrue(levels.size() > 2);
+        assertTrue(levels.get(0) == graph);
+        assertTrue(levels.get(levels.size() - 1) == coarsest);
+        assertSameLevels(levels, roundTrip(levels));
+    }
+
+    @Test
+    public void testRestoredCoarcerContinues() throws IOException {
+        GraphCoarcer coarcer = new GraphCoarcer(null);
+        coarcer.build(graph);
+        List<Graph<Object, Object>> levels = coarcer.levels();
+
+        GraphCoarcer restored = new GraphCoarcer(null);
+        restored.restore(roundTrip(levels));
+        assertSameLevels(levels, restored.levels());
+        assertFalse(restored.ready());
+    }
+
+    @Test
+    public void testCheckpointWithOriginal() throws IOException {
+        GraphCoarcer coarcer = new GraphCoarcer(null);
+        Graph<Object, Object> coarsest = coarcer.build(graph);
+        List<Graph<Object, Object>> levels = coarcer.levels();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            GraphCoarcer.writeLevels(out, levels, JsonLabelCodec.INSTANCE);
+            out.write(new byte[coarsest.size() * delma.graph.visualisation.entity.Node.STATE_BYTES]);
+        }
+        GraphCoarcer.Checkpoint checkpoint = GraphCoarcer.Checkpoint.read(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), JsonLabelCodec.INSTANCE);
+
+        VersionedGraph<Object, Object> original = new VersionedGraph<>();
+        original.add(checkpoint.getOriginal());
+        GraphCoarcer.Checkpoint replaced = checkpoint.withOriginal(original);
+        assertTrue(replaced.getOriginal() == original);
+        GraphCoarcer restored = new GraphCoarcer(null);
+        restored.restore(replaced.getLevels());
+        assertTrue(restored.levels().get(0) == original);
+        assertSameLevels(levels, restored.levels());
+    }
+
+    @Test
+    public void testStateFollowsNodesOfReplacedOriginal() throws IOException {
+        Graph<Object, Object> single = new VisualisableGraph();
+        for (int i = 0; i < 20; i++) {
+            single.add(new Edge<>(new Node<>(i), new Node<>(19 - i), null));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            GraphCoarcer.writeLevels(out, Collections.singletonList(single), JsonLabelCodec.INSTANCE);
+            for (Node<Object> node : single) {
+                byte[] state = new byte[delma.graph.visualisation.entity.Node.STATE_BYTES];
+                Arrays.fill(state, (byte) (int) (Integer) node.getLabel());
+                out.write(state);
+            }
+        }
+        GraphCoarcer.Checkpoint checkpoint = GraphCoarcer.Checkpoint.read(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), JsonLabelCodec.INSTANCE);
+
+        VersionedGraph<Object, Object> original = new VersionedGraph<>();
+        for (int i = 19; i >= 0; i--) {
+            original.add(new Node<>(i));
+        }
+        original.add(checkpoint.getOriginal());
+        bytes.reset();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            checkpoint.withOriginal(original.publish()).write(out, JsonLabelCodec.INSTANCE);
+        }
+        GraphCoarcer.Checkpoint reread = GraphCoarcer.Checkpoint.read(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), JsonLabelCodec.INSTANCE);
+        for (Node<Object> node : single) {
+            assertEquals(node.getLabel(), (int) reread.state(node).readByte());
+        }
+    }
+
+    @Test
+    public void testEmptyLevels() throws IOException {
+        GraphCoarcer coarcer = new GraphCoarcer(null);
+        assertTrue(coarcer.levels().isEmpty());
+        coarcer.restore(roundTrip(coarcer.levels()));
+        assertTrue(coarcer.levels().isEmpty());
+        assertTrue(coarcer.ready());
+    }
+}
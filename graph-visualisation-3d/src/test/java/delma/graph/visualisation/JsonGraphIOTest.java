@@ -0,0 +1,151 @@
+package delma.graph.visualisation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Iterator;
+import delma.graph.Graph;
+import delma.graph.Graph.Edge;
+import delma.graph.VisualisableGraph;
+import delma.graph.visualisation.entity.Node;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lwjgl.util.vector.Vector3f;
+
+/**
+ *
+ * @author delma
+ */
+public class JsonGraphIOTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Graph<Object, Object> graph;
+    private Map<Graph.Node<Object>, Node> nodemap;
+
+    @Before
+    public void setUp() {
+        graph = new VisualisableGraph();
+        nodemap = new HashMap<>();
+        Graph.Node<Object> a = new Graph.Node<>(1);
+        Graph.Node<Object> b = new Graph.Node<>("b");
+        Graph.Node<Object> c = new Graph.Node<>(Arrays.asList(1, 2));
+        graph.add(new Edge<>(a, b, "ab"));
+        graph.add(new Edge<>(b, c, null));
+        graph.add(new Edge<>(c, c, 3000000000L));
+        graph.add(new Graph.Node<>(4));
+    }
+
+    private static void assertSameGraph(Graph<Object, Object> expected, Graph<Object, Object> actual) {
+        assertEquals(new HashSet<>(expected.getNodes()), new HashSet<>(actual.getNodes()));
+        assertEquals(new HashSet<>(expected.getEdges()), new HashSet<>(actual.getEdges()));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File file = folder.newFile();
+        JsonGraphIO.write(file, graph, nodemap);
+        Graph<Object, Object> read = new VisualisableGraph();
+        JsonGraphIO.read(file, read, nodemap);
+        assertSameGraph(graph, read);
+        assertTrue(nodemap.isEmpty());
+    }
+
+    @Test
+    public void testWrittenFileReadsWithDataBinding() throws IOException {
+        File file = folder.newFile();
+        JsonGraphIO.write(file, graph, nodemap);
+        JsonNode tree = App.MAPPER.readTree(file);
+        assertSameGraph(graph, App.MAPPER.treeToValue(tree.get("graph"), Graph.class));
+        assertEquals(0, tree.get("nodemap").size());
+    }
+
+    @Test
+    public void testReadsDataBoundFile() throws IOException {
+        File file = folder.newFile();
+        String json = "{\"graph\":" + App.MAPPER.writerWithType(Graph.class).writeValueAsString(graph)
+                + ",\"nodemap\":{}}";
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        Graph<Object, Object> read = new VisualisableGraph();
+        JsonGraphIO.read(file, read, nodemap);
+        assertSameGraph(graph, read);
+    }
+
+    /**
+     * Puts simulated nodes with labels that need escaping or codec to
+     * nodemap.
+     */
+    private void simulate() {
+        Object[] labels = {1, "b", Arrays.asList(1, 2), "q\"u\\o\u00e4\n"};
+        graph.add(new Graph.Node<>(labels[3]));
+        for (int i = 0; i < labels.length; i++) {
+            Graph.Node<Object> node = new Graph.Node<>(labels[i]);
+            nodemap.put(node, new Node(null, graph, node, new Vector3f(i, -i, 0.5f * i)));
+        }
+    }
+
+    private void assertSameNodemap(Map<Graph.Node<Object>, Node> actual) {
+        assertEquals(nodemap.keySet(), actual.keySet());
+        for (Map.Entry<Graph.Node<Object>, Node> entry : nodemap.entrySet()) {
+            assertEquals(entry.getValue().getPosition(), actual.get(entry.getKey()).getPosition());
+        }
+    }
+
+    @Test
+    public void testNodemapRoundTrip() throws IOException {
+        simulate();
+        File file = folder.newFile();
+        JsonGraphIO.write(file, graph, nodemap);
+        Graph<Object, Object> read = new VisualisableGraph();
+        Map<Graph.Node<Object>, Node> readNodemap = new HashMap<>();
+        JsonGraphIO.read(file, read, readNodemap);
+        assertSameGraph(graph, read);
+        assertSameNodemap(readNodemap);
+    }
+
+    @Test
+    public void testWrittenNodemapReadsWithDataBinding() throws IOException {
+        simulate();
+        File file = folder.newFile();
+        JsonGraphIO.write(file, graph, nodemap);
+        JsonNode tree = App.MAPPER.readTree(file);
+        Map<Graph.Node<Object>, Node> readNodemap = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = tree.get("nodemap").fields(); it.hasNext();) {
+            Map.Entry<String, JsonNode> field = it.next();
+            readNodemap.put(new Graph.Node<>(field.getKey()), App.MAPPER.treeToValue(field.getValue(), Node.class));
+        }
+        assertSameNodemap(readNodemap);
+    }
+
+    @Test
+    public void testReadsDataBoundNodemap() throws IOException {
+        simulate();
+        File file = folder.newFile();
+        StringBuilder json = new StringBuilder("{\"graph\":")
+                .append(App.MAPPER.writerWithType(Graph.class).writeValueAsString(graph))
+                .append(",\"nodemap\":{");
+        String separator = "";
+        for (Map.Entry<Graph.Node<Object>, Node> entry : nodemap.entrySet()) {
+            json.append(separator).append(App.MAPPER.writeValueAsString(entry.getKey().toString()))
+                    .append(':').append(App.MAPPER.writerWithType(Node.class).writeValueAsString(entry.getValue()));
+            separator = ",";
+        }
+        Files.write(file.toPath(), json.append("}}").toString().getBytes(StandardCharsets.UTF_8));
+        Graph<Object, Object> read = new VisualisableGraph();
+        Map<Graph.Node<Object>, Node> readNodemap = new HashMap<>();
+        JsonGraphIO.read(file, read, readNodemap);
+        assertSameGraph(graph, read);
+        assertSameNodemap(readNodemap);
+    }
+}
@@ -0,0 +1,101 @@
+package delma.graph.visualisation;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lwjgl.util.vector.Vector3f;
+
+/**
+ *
+ * @author delma
+ */
+public class TrajectoryRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+
+    @Before
+    public void setUp() {
+        path = folder.getRoot().toPath().resolve("graph.frames");
+    }
+
+    private static Vector3f position(int frame, int id) {
+        return id == 2 ? null : new Vector3f(frame, id, frame * id);
+    }
+
+    /**
+     * Waits for free frame whenever recorder drops one, so that every frame
+     * is recorded.
+     */
+    private void record(int frames) throws IOException {
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder(path)) {
+            for (int f = 0; f < frames; f++) {
+                int frame = f;
+                while (!recorder.record(frame / 10, 5 + frame, id -> position(frame, id))) {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    private static void assertFrame(int f, TrajectoryRecorder.Frame frame) {
+        assertEquals(f / 10, frame.getGeneration());
+        assertEquals(5 + f, frame.size());
+        Vector3f position = new Vector3f();
+        for (int id = 0; id < frame.size(); id++) {
+            assertEquals(id != 2, frame.contains(id));
+            if (id != 2) {
+                assertEquals(position(f, id), frame.getPosition(id, position));
+            }
+        }
+    }
+
+    @Test
+    public void testPlayback() throws IOException {
+        int frames = 30;
+        record(frames);
+        try (TrajectoryReader reader = new TrajectoryReader(path)) {
+            assertEquals(frames, reader.size());
+            TrajectoryRecorder.Frame frame = null;
+            long time = -1;
+            for (int f = frames - 1; f >= 0; f--) {
+                frame = reader.read(f, frame);
+                assertFrame(f, frame);
+                assertTrue(time == -1 || frame.getTime() <= time);
+                time = frame.getTime();
+            }
+        }
+    }
+
+    @Test
+    public void testCutRecordingIsRead() throws IOException {
+        int frames = 20;
+        record(frames);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        try (TrajectoryReader reader = new TrajectoryReader(path)) {
+            assertEquals(frames - 1, reader.size());
+            assertFrame(frames - 2, reader.read(frames - 2));
+        }
+    }
+
+    @Test
+    public void testEmptyRecording() throws IOException {
+        record(0);
+        assertEquals(8, Files.size(path));
+        try (TrajectoryReader reader = new TrajectoryReader(path)) {
+            assertEquals(0, reader.size());
+        }
+    }
+}
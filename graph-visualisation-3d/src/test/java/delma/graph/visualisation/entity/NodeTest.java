@@ -0,0 +1,45 @@
+package delma.graph.visualisation.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.lwjgl.util.vector.Vector3f;
+
+/**
+ *
+ * @author delma
+ */
+public class NodeTest {
+
+    @Test
+    public void testVelocityIsKeptWhenCreated() {
+        Node node = new Node();
+        node.setPosition(new Vector3f(1, 2, 3));
+        node.setVelocity(new Vector3f(4, 5, 6));
+        node.create();
+        assertEquals(new Vector3f(1, 2, 3), node.getPosition());
+        assertEquals(new Vector3f(4, 5, 6), node.getVelocity());
+    }
+
+    @Test
+    public void testStateRoundTrip() throws IOException {
+        Node node = new Node();
+        node.setPosition(new Vector3f(1, 2, 3));
+        node.setVelocity(new Vector3f(4, 5, 6));
+        node.create();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        node.writeState(new DataOutputStream(bytes));
+        assertEquals(Node.STATE_BYTES, bytes.size());
+
+        Node read = new Node();
+        read.create();
+        read.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(node.getPosition(), read.getPosition());
+        assertEquals(node.getVelocity(), read.getVelocity());
+        assertEquals(node.isReady(), read.isReady());
+    }
+}
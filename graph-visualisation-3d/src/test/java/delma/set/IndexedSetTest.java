@@ -0,0 +1,80 @@
+package delma.set;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author delma
+ */
+public class IndexedSetTest {
+
+    private IndexedSet<String> set;
+
+    @Before
+    public void setUp() {
+        set = new IndexedSet<>();
+    }
+
+    @Test
+    public void testAdd() {
+        assertTrue(set.add("a"));
+        assertTrue(set.add("b"));
+        assertFalse(set.add("a"));
+        assertEquals(2, set.size());
+        assertEquals("a", set.get(set.indexOf("a")));
+        assertEquals("b", set.get(set.indexOf("b")));
+    }
+
+    @Test
+    public void testRemove() {
+        set.add("a");
+        set.add("b");
+        set.add("c");
+        assertTrue(set.remove("a"));
+        assertFalse(set.remove("a"));
+        assertEquals(2, set.size());
+        assertFalse(set.contains("a"));
+        assertEquals(-1, set.indexOf("a"));
+        assertEquals("b", set.get(set.indexOf("b")));
+        assertEquals("c", set.get(set.indexOf("c")));
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        set.add("a");
+        set.add("b");
+        set.add("c");
+        Set<String> seen = new HashSet<>();
+        Iterator<String> it = set.iterator();
+        while (it.hasNext()) {
+            String s = it.next();
+            seen.add(s);
+            if (!s.equals("c")) {
+                it.remove();
+            }
+        }
+        assertEquals(3, seen.size());
+        assertEquals(1, set.size());
+        assertTrue(set.contains("c"));
+    }
+
+    @Test
+    public void testGetRandom() {
+        set.add("a");
+        set.add("b");
+        Random rand = new Random(0);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            seen.add(set.getRandom(rand));
+        }
+        assertEquals(set, seen);
+    }
+}